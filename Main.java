@@ -1,20 +1,78 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import planner.CommandRunner;
+import planner.MenuController;
+import planner.MenuRepository;
+
 /**
  * Главный класс приложения, содержащий точку входа.
- * Отвечает за запуск графического интерфейса пользователя.
+ * Отвечает за запуск графического интерфейса пользователя
+ * или выполнение команд без него.
  */
 public class Main {
   /**
    * Точка входа в приложение.
    * Запускает графический интерфейс в потоке обработки событий Swing.
-   * 
+   * Окно показывается сразу, данные загружаются в фоне. Выгрузка метрик
+   * включается свойствами {@code planner.metrics.file} и {@code planner.metrics.port}.
+   * Механизм хранения данных выбирается свойствами {@code planner.storage}
+   * и {@code planner.jdbc.url}, см. {@link planner.StorageEngine#open(String)}.
+   * Свойство {@code planner.edt.watchdog} включает запись зависаний интерфейса,
+   * см. {@link gui.EdtWatchdog#installFromSystemProperties()}. Вкладку диагностики
+   * показывает свойство {@code planner.diagnostics=true}.
+   *
+   * <p>С первым аргументом {@code --batch} выполняет команды без графического
+   * интерфейса: {@code --batch -f сценарий} читает команды из файла ("-" — стандартный
+   * ввод), иначе каждый следующий аргумент — отдельная команда. Список команд выводит
+   * {@code --batch help}. Код завершения 1 означает ошибку в команде.
    */
   public static void main(String[] args) {
+    planner.StartupProfile.mark("main");
+    planner.PrometheusExporter.startFromSystemProperties();
+    if (args.length > 0 && args[0].equals("--batch")) {
+      System.exit(runBatch(Arrays.copyOfRange(args, 1, args.length)) ? 0 : 1);
+    }
+    gui.EdtWatchdog.installFromSystemProperties();
     javax.swing.SwingUtilities.invokeLater(() -> {
       try {
-        new gui.MainFrame().setVisible(true);
+        gui.MainFrame frame = new gui.MainFrame();
+        frame.setVisible(true);
+        planner.StartupProfile.mark("frame-visible");
+        frame.loadDataInBackground();
       } catch (Exception e) {
         e.printStackTrace();
+        javax.swing.JOptionPane.showMessageDialog(null, e.getMessage(), "Ошибка запуска",
+            javax.swing.JOptionPane.ERROR_MESSAGE);
       }
     });
   }
+
+  /**
+   * Загружает данные и выполняет команды, не инициализируя AWT. Результаты команд
+   * печатаются в стандартный вывод, сообщения о загрузке и сохранении — в поток ошибок.
+   */
+  private static boolean runBatch(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    PrintStream results = System.out;
+    System.setOut(System.err);
+    MenuRepository repository = new MenuRepository(false);
+    MenuController controller = new MenuController(repository);
+    repository.autoLoad();
+    CommandRunner runner = new CommandRunner(controller, results);
+    if (args.length == 2 && args[0].equals("-f")) {
+      try (InputStream in = args[1].equals("-") ? System.in : new FileInputStream(args[1])) {
+        return runner.run(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+      } catch (IOException e) {
+        System.err.println("Ошибка чтения сценария: " + e.getMessage());
+        return false;
+      }
+    }
+    return runner.run(Arrays.asList(args.length > 0 ? args : new String[] {"help"}));
+  }
 }
@@ -0,0 +1,107 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Простой измеритель производительности без внешних зависимостей.
+ * Выполняет прогрев и замер по времени и, как профилировщик gc в JMH,
+ * считает выделенную память на операцию, число и длительность сборок мусора.
+ */
+public class BenchmarkRunner {
+  private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+  private final long warmupMillis;
+  private final long measureMillis;
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * Результат замера одного сценария.
+   */
+  public static class Result {
+    public final String name;
+    public final long operations;
+    public final double nanosPerOp;
+    public final double bytesPerOp;
+    public final long gcCount;
+    public final long gcMillis;
+
+    Result(String name, long operations, double nanosPerOp, double bytesPerOp,
+        long gcCount, long gcMillis) {
+      this.name = name;
+      this.operations = operations;
+      this.nanosPerOp = nanosPerOp;
+      this.bytesPerOp = bytesPerOp;
+      this.gcCount = gcCount;
+      this.gcMillis = gcMillis;
+    }
+  }
+
+  public BenchmarkRunner(long warmupMillis, long measureMillis) {
+    this.warmupMillis = warmupMillis;
+    this.measureMillis = measureMillis;
+  }
+
+  /**
+   * Замеряет операцию. Результат операции сохраняется, чтобы JIT не удалил вызов.
+   * Вывод в консоль на время замера подавляется.
+   */
+  public Result run(String name, Supplier<Object> operation) {
+    PrintStream out = System.out;
+    System.setOut(NULL_OUT);
+    try {
+      loop(operation, warmupMillis);
+      System.gc();
+
+      long threadId = Thread.currentThread().getId();
+      long gcCountBefore = gcCount();
+      long gcTimeBefore = gcMillis();
+      long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      long operations = loop(operation, measureMillis);
+      long elapsed = System.nanoTime() - start;
+      long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+      return new Result(name, operations, (double) elapsed / operations,
+          (double) allocated / operations,
+          gcCount() - gcCountBefore, gcMillis() - gcTimeBefore);
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  private static long loop(Supplier<Object> operation, long millis) {
+    long deadline = System.nanoTime() + millis * 1_000_000L;
+    long operations = 0;
+    int sink = 0;
+    do {
+      Object result = operation.get();
+      sink += result != null ? 1 : 0;
+      operations++;
+    } while (System.nanoTime() < deadline);
+    if (sink < 0) {
+      throw new IllegalStateException();
+    }
+    return operations;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return time;
+  }
+}
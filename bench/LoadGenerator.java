@@ -0,0 +1,412 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+import planner.Dish;
+import planner.MenuController;
+import planner.MenuRepository;
+import planner.Metrics;
+import planner.ProductUnit;
+
+/**
+ * Нагрузочный прогон без графического интерфейса: заполняет репозиторий
+ * синтетическими данными и из нескольких потоков с заданной частотой выполняет
+ * смесь операций {@link MenuController}. В конце печатает пропускную способность,
+ * перцентили задержек, объём записанных данных и использование кучи.
+ *
+ * <p>Пример: {@code java -cp out bench.LoadGenerator --dishes 20000 --products 2000
+ * --threads 4 --rate 50 --duration 60 --csv bench/capacity.csv}.
+ *
+ * <p>Операции над репозиторием выполняются под общей блокировкой, как в приложении,
+ * где все изменения идут через поток обработки событий. Задержка отсчитывается от
+ * запланированного времени запуска, поэтому ожидание в очереди тоже учитывается.
+ */
+public class LoadGenerator {
+  private static final String DEFAULT_MIX = "addMeal=30,removeMeal=10,getMenu=10,"
+      + "findDish=15,searchDishes=15,addProduct=8,updateProduct=5,nextWeek=1,"
+      + "exportMenu=3,exportProducts=3";
+
+  private final MenuController controller;
+  private final List<Dish> dishes;
+  private final List<String> products;
+  private final File directory;
+  private final String[] operations;
+  private final int[] cumulativeWeights;
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Metrics.Timer saves = Metrics.registry().timer(
+      "planner_save_seconds", "Длительность автосохранения");
+  private final Metrics.Counter savedBytes = Metrics.registry().counter(
+      "planner_save_bytes_total", "Объём данных, записанных автосохранением");
+  private double elapsedSeconds;
+  private long savesBefore;
+  private double saveSecondsBefore;
+  private long savedBytesBefore;
+
+  /**
+   * Задержки одной операции, собранные одним потоком.
+   */
+  private static class Samples {
+    private long[] nanos = new long[1024];
+    private int size;
+    private long errors;
+
+    private void add(long value) {
+      if (size == nanos.length) {
+        nanos = Arrays.copyOf(nanos, size * 2);
+      }
+      nanos[size++] = value;
+    }
+
+    private void addAll(Samples other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.nanos[i]);
+      }
+      errors += other.errors;
+    }
+
+    private double percentileMillis(double percentile) {
+      if (size == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile / 100 * size) - 1;
+      return nanos[Math.max(0, Math.min(size - 1, index))] / 1e6;
+    }
+  }
+
+  public LoadGenerator(MenuController controller, MenuRepository repository, File directory,
+      String mix) {
+    this.controller = controller;
+    this.dishes = repository.getDishes();
+    this.products = new ArrayList<>(repository.getProducts().keySet());
+    this.directory = directory;
+
+    Map<String, Integer> weights = parseMix(mix);
+    this.operations = weights.keySet().toArray(new String[0]);
+    this.cumulativeWeights = new int[operations.length];
+    int total = 0;
+    for (int i = 0; i < operations.length; i++) {
+      total += weights.get(operations[i]);
+      cumulativeWeights[i] = total;
+    }
+  }
+
+  /**
+   * Точка входа нагрузочного прогона.
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("java.awt.headless", "true");
+    Map<String, String> options = parseOptions(args);
+    int dishCount = Integer.parseInt(options.getOrDefault("dishes", "20000"));
+    int productCount = Integer.parseInt(options.getOrDefault("products", "2000"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+    double rate = Double.parseDouble(options.getOrDefault("rate", "50"));
+    long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+    long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+    String mix = options.getOrDefault("mix", DEFAULT_MIX);
+
+    File directory = Files.createTempDirectory("planner-load").toFile();
+    PrintStream out = System.out;
+    try {
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+      long populateStart = System.nanoTime();
+      MenuRepository repository = new MenuRepository(
+          new File(directory, "menu_data.dat").getPath(), false);
+      new SyntheticData(seed).populate(repository, dishCount, productCount);
+      repository.completeLoad();
+      long populateMillis = (System.nanoTime() - populateStart) / 1_000_000;
+
+      MenuController controller = new MenuController(repository);
+      LoadGenerator generator = new LoadGenerator(controller, repository, directory, mix);
+      Map<String, Samples> results = generator.run(threads, rate, durationSeconds, seed);
+      System.setOut(out);
+
+      out.println(String.format("Данные: %d блюд, %d продуктов, заполнение %d мс",
+          dishCount, productCount, populateMillis));
+      out.println(String.format("Нагрузка: %d потоков, цель %.1f оп/с, %d с, смесь %s",
+          threads, rate, durationSeconds, mix));
+      List<String> rows = generator.report(results, out);
+      if (options.containsKey("csv")) {
+        appendCsv(options.get("csv"), dishCount, productCount, threads, rate, rows);
+      }
+    } finally {
+      System.setOut(out);
+      deleteRecursively(directory);
+    }
+  }
+
+  /**
+   * Запускает потоки нагрузки и возвращает задержки по операциям. Если система
+   * не успевает за целевой частотой, прогон длится дольше заданного времени.
+   */
+  private Map<String, Samples> run(int threads, double rate, long durationSeconds, long seed)
+      throws InterruptedException {
+    resetPeakUsage();
+    savesBefore = saves.getCount();
+    saveSecondsBefore = saves.getSumSeconds();
+    savedBytesBefore = savedBytes.get();
+    long intervalNanos = (long) (threads * 1e9 / rate);
+    long start = System.nanoTime() + 10_000_000L;
+    long deadline = start + durationSeconds * 1_000_000_000L;
+    List<Map<String, Samples>> perThread = new ArrayList<>();
+    CountDownLatch done = new CountDownLatch(threads);
+
+    for (int t = 0; t < threads; t++) {
+      Map<String, Samples> samples = new HashMap<>();
+      perThread.add(samples);
+      Random random = new Random(seed + t);
+      long offset = intervalNanos * t / threads;
+      Thread worker = new Thread(() -> {
+        try {
+          long intended = start + offset;
+          while (intended < deadline) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+              Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            String operation = pickOperation(random);
+            Samples operationSamples = samples.computeIfAbsent(operation, k -> new Samples());
+            try {
+              execute(operation, random);
+            } catch (RuntimeException e) {
+              operationSamples.errors++;
+            }
+            operationSamples.add(System.nanoTime() - intended);
+            intended += intervalNanos;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }, "load-" + t);
+      worker.start();
+    }
+    done.await();
+    elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+    Map<String, Samples> merged = new LinkedHashMap<>();
+    for (String operation : operations) {
+      Samples total = new Samples();
+      for (Map<String, Samples> samples : perThread) {
+        Samples part = samples.get(operation);
+        if (part != null) {
+          total.addAll(part);
+        }
+      }
+      Arrays.sort(total.nanos, 0, total.size);
+      merged.put(operation, total);
+    }
+    return merged;
+  }
+
+  private String pickOperation(Random random) {
+    int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    return operations[operations.length - 1];
+  }
+
+  /**
+   * Выполняет одну операцию через контроллер, как её выполняет интерфейс.
+   */
+  private void execute(String operation, Random random) {
+    String day = SyntheticData.DAYS[random.nextInt(SyntheticData.DAYS.length)];
+    String mealType = SyntheticData.MEAL_TYPES[random.nextInt(SyntheticData.MEAL_TYPES.length)];
+    Dish dish = dishes.get(random.nextInt(dishes.size()));
+    String product = products.get(random.nextInt(products.size()));
+
+    lock.lock();
+    try {
+      switch (operation) {
+        case "addMeal":
+          controller.addMealToDay(day, mealType, dish);
+          break;
+        case "removeMeal":
+          controller.removeMealFromDay(day, mealType);
+          break;
+        case "getMenu":
+          controller.getMenuForDay(day, mealType);
+          break;
+        case "findDish":
+          controller.findDishByName(dish.getName());
+          break;
+        case "searchDishes":
+          controller.searchDishes(dish.getName().substring(0, Math.min(4,
+              dish.getName().length())), 100);
+          break;
+        case "addProduct":
+          controller.addProduct(product, 1 + random.nextInt(500), ProductUnit.GRAMS);
+          break;
+        case "updateProduct":
+          controller.updateProduct(product, 1 + random.nextInt(5000));
+          break;
+        case "nextWeek":
+          planNextWeek(random);
+          break;
+        case "exportMenu":
+          controller.exportMenuToFile(new File(directory, "menu.txt").getPath());
+          break;
+        case "exportProducts":
+          controller.exportProductsToFile(new File(directory, "products.txt").getPath());
+          break;
+        default:
+          throw new IllegalArgumentException("Неизвестная операция: " + operation);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Переходит к следующей неделе: очищает меню и планирует все приёмы пищи заново.
+   */
+  private void planNextWeek(Random random) {
+    for (String day : SyntheticData.DAYS) {
+      controller.clearDayMenu(day);
+      for (String mealType : SyntheticData.MEAL_TYPES) {
+        controller.addMealToDay(day, mealType, dishes.get(random.nextInt(dishes.size())));
+      }
+    }
+  }
+
+  private List<String> report(Map<String, Samples> results, PrintStream out) {
+    List<String> rows = new ArrayList<>();
+    out.println(String.format("%-16s %8s %7s %9s %9s %9s %9s %9s %9s", "operation", "count",
+        "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+    long totalCount = 0;
+    for (Map.Entry<String, Samples> entry : results.entrySet()) {
+      Samples samples = entry.getValue();
+      totalCount += samples.size;
+      String row = String.format("%-16s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+          entry.getKey(), samples.size, samples.errors, samples.size / elapsedSeconds,
+          samples.percentileMillis(50), samples.percentileMillis(90),
+          samples.percentileMillis(99), samples.percentileMillis(99.9),
+          samples.percentileMillis(100));
+      out.println(row);
+      rows.add(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+          entry.getKey(), samples.size, samples.errors, samples.size / elapsedSeconds,
+          samples.percentileMillis(50), samples.percentileMillis(90),
+          samples.percentileMillis(99), samples.percentileMillis(99.9),
+          samples.percentileMillis(100)));
+    }
+    out.println(String.format("Итого: %d операций за %.1f с, %.2f оп/с", totalCount,
+        elapsedSeconds, totalCount / elapsedSeconds));
+
+    long saveCount = saves.getCount() - savesBefore;
+    double saveSeconds = saves.getSumSeconds() - saveSecondsBefore;
+    out.println(String.format("Сохранения: %d, записано %.1f МБ, в среднем %.1f мс",
+        saveCount, (savedBytes.get() - savedBytesBefore) / 1048576.0,
+        saveCount == 0 ? 0 : saveSeconds * 1000 / saveCount));
+
+    long gcCount = 0;
+    long gcMillis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += Math.max(0, gc.getCollectionCount());
+      gcMillis += Math.max(0, gc.getCollectionTime());
+    }
+    Runtime runtime = Runtime.getRuntime();
+    out.println(String.format("Куча: занято %.1f МБ, пик %.1f МБ, максимум %.1f МБ; "
+        + "сборок мусора %d (%d мс)", (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0,
+        peakHeapUsage() / 1048576.0, runtime.maxMemory() / 1048576.0, gcCount, gcMillis));
+    return rows;
+  }
+
+  private static void appendCsv(String path, int dishes, int products, int threads,
+      double rate, List<String> rows) throws IOException {
+    boolean header = !new File(path).exists();
+    String prefix = LocalDateTime.now().withNano(0) + ","
+        + System.getProperty("java.version") + "," + dishes + "," + products + ","
+        + threads + "," + String.format(Locale.ROOT, "%.1f", rate);
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path, true))) {
+      if (header) {
+        writer.write("time,java,dishes,products,threads,rate,operation,count,errors,"
+            + "ops_per_s,p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+        writer.newLine();
+      }
+      for (String row : rows) {
+        writer.write(prefix + "," + row);
+        writer.newLine();
+      }
+    }
+  }
+
+  private static void resetPeakUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private static long peakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static Map<String, Integer> parseMix(String mix) {
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    for (String part : mix.split(",")) {
+      String[] pair = part.split("=");
+      if (pair.length != 2) {
+        throw new IllegalArgumentException("Неверный формат смеси операций: " + part);
+      }
+      int weight = Integer.parseInt(pair[1].trim());
+      if (weight > 0) {
+        weights.put(pair[0].trim(), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("Смесь операций пуста");
+    }
+    return weights;
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
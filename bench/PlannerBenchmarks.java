@@ -0,0 +1,253 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import planner.Dish;
+import planner.MenuController;
+import planner.MenuRepository;
+import planner.NumberParser;
+
+/**
+ * Замеры горячих путей планировщика: автосохранение, поиск блюд, списание
+ * продуктов, добавление блюда в меню, экспорт и разбор чисел.
+ *
+ * <p>Запуск из корня проекта после компиляции исходников и каталога bench:
+ * {@code java -cp out bench.PlannerBenchmarks --dishes 100,1000,10000,100000
+ * --products 100,1000 --baseline bench/baseline.txt}. Параметр
+ * {@code --save-baseline файл} записывает результаты как новую базовую линию.
+ */
+public class PlannerBenchmarks {
+  private static final String HEADER = String.format("%-36s %8s %8s %14s %14s %6s %6s",
+      "benchmark", "dishes", "products", "ns/op", "B/op", "gc", "gc.ms");
+
+  private final BenchmarkRunner runner;
+  private final List<Row> rows = new ArrayList<>();
+
+  private static class Row {
+    private final BenchmarkRunner.Result result;
+    private final int dishes;
+    private final int products;
+
+    private Row(BenchmarkRunner.Result result, int dishes, int products) {
+      this.result = result;
+      this.dishes = dishes;
+      this.products = products;
+    }
+
+    private String key() {
+      return result.name + "|" + dishes + "|" + products;
+    }
+
+    private String format() {
+      return String.format("%-36s %8d %8d %14.1f %14.1f %6d %6d", result.name, dishes, products,
+          result.nanosPerOp, result.bytesPerOp, result.gcCount, result.gcMillis);
+    }
+  }
+
+  public PlannerBenchmarks(BenchmarkRunner runner) {
+    this.runner = runner;
+  }
+
+  /**
+   * Точка входа набора замеров.
+   */
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = parseOptions(args);
+    int[] dishCounts = parseSizes(options.getOrDefault("dishes", "100,1000,10000,100000"));
+    int[] productCounts = parseSizes(options.getOrDefault("products", "100,1000"));
+    BenchmarkRunner runner = new BenchmarkRunner(
+        Long.parseLong(options.getOrDefault("warmup", "1000")),
+        Long.parseLong(options.getOrDefault("measure", "2000")));
+
+    PlannerBenchmarks benchmarks = new PlannerBenchmarks(runner);
+    System.out.println(HEADER);
+    benchmarks.runNumberParser();
+    for (int products : productCounts) {
+      for (int dishes : dishCounts) {
+        benchmarks.runRepository(dishes, products);
+      }
+    }
+
+    if (options.containsKey("baseline")) {
+      benchmarks.compare(loadBaseline(options.get("baseline")));
+    }
+    if (options.containsKey("save-baseline")) {
+      benchmarks.saveBaseline(options.get("save-baseline"));
+    }
+  }
+
+  private void runNumberParser() {
+    String[] inputs = new SyntheticData(1).numberInputs(1024);
+    int[] next = { 0 };
+    record(runner.run("NumberParser.parse", () -> {
+      try {
+        return NumberParser.parse(inputs[next[0]++ & 1023]);
+      } catch (ParseException e) {
+        return e;
+      }
+    }), 0, 0);
+  }
+
+  private void runRepository(int dishCount, int productCount) throws IOException {
+    File directory = Files.createTempDirectory("planner-bench").toFile();
+    try {
+      MenuRepository repository = new MenuRepository(
+          new File(directory, "menu_data.dat").getPath(), false);
+      SyntheticData data = new SyntheticData(dishCount * 31L + productCount);
+      runQuietly(() -> data.populate(repository, dishCount, productCount));
+      MenuController controller = new MenuController(repository);
+
+      List<Dish> dishes = repository.getDishes();
+      Dish lastDish = dishes.get(dishes.size() - 1);
+      Dish first = dishes.get(0);
+      Dish second = dishes.get(1);
+      List<String> products = new ArrayList<>(repository.getProducts().keySet());
+      products.sort(Comparator.naturalOrder());
+      int[] next = { 0 };
+      String menuFile = new File(directory, "menu.txt").getPath();
+      String productsFile = new File(directory, "products.txt").getPath();
+
+      measure("MenuRepository.autoSave", dishCount, productCount, () -> {
+        repository.saveAll();
+        return repository;
+      });
+      measure("MenuRepository.updateProduct", dishCount, productCount, () -> {
+        String product = products.get(next[0]++ % products.size());
+        repository.updateProduct(product, repository.getProducts().get(product));
+        return product;
+      });
+      measure("DishService.findDishByName", dishCount, productCount,
+          () -> controller.getDishService().findDishByName(lastDish.getName()));
+      measure("DishService.findDishesByIngredient", dishCount, productCount,
+          () -> controller.getDishService()
+              .findDishesByIngredient(products.get(next[0]++ % products.size())));
+      measure("ProductInventory.deduct+return", dishCount, productCount, () -> {
+        controller.getProductInventoryService().deductProducts(first);
+        controller.getProductInventoryService().returnProducts(first);
+        return first;
+      });
+      measure("MenuPlanning.addMealToDay", dishCount, productCount,
+          () -> controller.getMenuPlanningService().addMealToDay(
+              "Понедельник", "Завтрак", (next[0]++ & 1) == 0 ? first : second));
+      measure("ExportService.exportMenuToFile", dishCount, productCount, () -> {
+        controller.exportMenuToFile(menuFile);
+        return menuFile;
+      });
+      measure("ExportService.exportProductsToFile", dishCount, productCount, () -> {
+        controller.exportProductsToFile(productsFile);
+        return productsFile;
+      });
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  private void measure(String name, int dishes, int products, Supplier<Object> operation) {
+    record(runner.run(name, operation), dishes, products);
+  }
+
+  private void record(BenchmarkRunner.Result result, int dishes, int products) {
+    Row row = new Row(result, dishes, products);
+    rows.add(row);
+    System.out.println(row.format());
+  }
+
+  private void compare(Map<String, Double> baseline) {
+    System.out.println();
+    System.out.println(String.format("%-36s %8s %8s %14s %14s %8s",
+        "benchmark", "dishes", "products", "baseline", "ns/op", "change"));
+    for (Row row : rows) {
+      Double base = baseline.get(row.key());
+      if (base == null) {
+        continue;
+      }
+      double change = (row.result.nanosPerOp - base) / base * 100;
+      System.out.println(String.format("%-36s %8d %8d %14.1f %14.1f %+7.1f%%",
+          row.result.name, row.dishes, row.products, base, row.result.nanosPerOp, change));
+    }
+  }
+
+  private void saveBaseline(String path) throws IOException {
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))) {
+      writer.write("# " + System.getProperty("java.vm.name") + " "
+          + System.getProperty("java.version") + ", "
+          + Runtime.getRuntime().availableProcessors() + " cpu");
+      writer.newLine();
+      writer.write("# " + HEADER);
+      writer.newLine();
+      for (Row row : rows) {
+        writer.write(row.format());
+        writer.newLine();
+      }
+    }
+  }
+
+  private static Map<String, Double> loadBaseline(String path) throws IOException {
+    Map<String, Double> baseline = new HashMap<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank() || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.trim().split("\\s+");
+        baseline.put(parts[0] + "|" + parts[1] + "|" + parts[2], Double.parseDouble(parts[3]));
+      }
+    }
+    return baseline;
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+
+  private static int[] parseSizes(String value) {
+    String[] parts = value.split(",");
+    int[] sizes = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      sizes[i] = Integer.parseInt(parts[i].trim());
+    }
+    return sizes;
+  }
+
+  private static void runQuietly(Runnable action) {
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      action.run();
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
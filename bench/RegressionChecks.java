@@ -0,0 +1,215 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import planner.ConsumptionStats;
+import planner.Dish;
+import planner.LotInventory;
+import planner.MenuController;
+import planner.MenuRepository;
+import planner.PriceLedger;
+import planner.ProductQuantity;
+import planner.ProductUnit;
+
+/**
+ * Проверки исправленных ошибок без графического интерфейса. Каждая проверка работает
+ * с пустым репозиторием во временном каталоге и выполняет операции через
+ * {@link MenuController}, как интерфейс.
+ *
+ * <p>Пример: {@code java -cp out bench.RegressionChecks}. Код завершения 1 означает,
+ * что хотя бы одна проверка не прошла.
+ */
+public class RegressionChecks {
+  /**
+   * Проверка над контроллером; несоответствие сообщается исключением.
+   */
+  private interface Check {
+    void run(MenuController controller, MenuRepository repository) throws Exception;
+  }
+
+  private final PrintStream out;
+  private int passed;
+  private int failed;
+
+  private RegressionChecks(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Точка входа.
+   */
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    PrintStream out = System.out;
+    RegressionChecks checks = new RegressionChecks(out);
+    try {
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+      checks.run("докупка с датой прибавляется к запасу", RegressionChecks::datedPurchase);
+      checks.run("удаление неизвестного продукта не пополняет словарь",
+          RegressionChecks::unknownProductRemoval);
+      checks.run("смена цены пересчитывает блюда с продуктом", RegressionChecks::priceChange);
+      checks.run("возврат отменяет только списанное", RegressionChecks::consumptionReturn);
+      checks.run("слияние ингредиентов не зависит от порядка",
+          RegressionChecks::ingredientMerge);
+      checks.run("короткое слово поиска совпадает с началом слова",
+          RegressionChecks::shortSearchTerm);
+    } finally {
+      System.setOut(out);
+    }
+    out.println(String.format("Пройдено %d, не пройдено %d", checks.passed, checks.failed));
+    if (checks.failed > 0) {
+      System.exit(1);
+    }
+  }
+
+  private void run(String name, Check check) throws IOException {
+    File directory = Files.createTempDirectory("planner-regression").toFile();
+    try {
+      MenuRepository repository = new MenuRepository(
+          new File(directory, "menu_data.dat").getPath(), false);
+      MenuController controller = new MenuController(repository);
+      repository.autoLoad();
+      check.run(controller, repository);
+      passed++;
+      out.println("  ok   " + name);
+    } catch (Exception | AssertionError e) {
+      failed++;
+      out.println("  FAIL " + name + ": " + e);
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  /**
+   * Продукт уже есть в запасе; докупка с датой прибавляет количество и создаёт
+   * одну партию купленного количества с этим сроком.
+   */
+  private static void datedPurchase(MenuController controller, MenuRepository repository) {
+    LocalDate expires = LocalDate.now().plusDays(2);
+    controller.addProduct("Молоко", 1, ProductUnit.LITERS);
+    controller.addProduct("Молоко", 500, ProductUnit.MILLILITERS, expires);
+    expect(new ProductQuantity(1.5, ProductUnit.LITERS), repository.getProduct("Молоко"),
+        "запас");
+    List<LotInventory.Lot> expiring = controller.getExpiringLots(3);
+    expect(1, expiring.size(), "истекающих партий");
+    expect(500.0, ProductUnit.LITERS.convertToBaseUnit(
+        expiring.get(0).getQuantity().getAmount()), "партия, мл");
+    expect(expires, expiring.get(0).getExpires(), "срок");
+    expect(2, controller.getProductInventoryService().getLotInventory().getLots("Молоко")
+        .size(), "партий молока");
+  }
+
+  /**
+   * Удаление и обнуление продукта под неизвестным названием не регистрируют название.
+   */
+  private static void unknownProductRemoval(MenuController controller,
+      MenuRepository repository) {
+    controller.addProduct("Молоко", 1, ProductUnit.LITERS);
+    int size = repository.getProductDictionary().size();
+    controller.removeProduct("Малоко");
+    controller.updateProduct("Малако", 0);
+    expect(size, repository.getProductDictionary().size(), "словарь");
+    expect(null, repository.findProductName("Малоко"), "Малоко");
+    controller.updateProduct("Молоко", 0);
+    expect(null, repository.getProduct("Молоко"), "молоко");
+  }
+
+  /**
+   * Смена цены одного продукта меняет стоимость блюд с ним и не трогает остальные.
+   */
+  private static void priceChange(MenuController controller, MenuRepository repository) {
+    PriceLedger prices = controller.getPriceLedger();
+    prices.setPrice("Мука", 100, ProductUnit.KILOGRAMS);
+    prices.setPrice("Молоко", 80, ProductUnit.LITERS);
+    Dish pancakes = dish("Блины", "Мука", 200, ProductUnit.GRAMS);
+    Dish cocoa = dish("Какао", "Молоко", 250, ProductUnit.MILLILITERS);
+    expect(20.0, prices.getDishCost(pancakes).getAmount(), "блины");
+    expect(20.0, prices.getDishCost(cocoa).getAmount(), "какао");
+    prices.setPrice("Мука", 150, ProductUnit.KILOGRAMS);
+    expect(30.0, prices.getDishCost(pancakes).getAmount(), "блины после смены цены");
+    expect(20.0, prices.getDishCost(cocoa).getAmount(), "какао после смены цены");
+  }
+
+  /**
+   * Возврат больше списанного обнуляет расход, но не уводит его в минус: следующее
+   * списание учитывается полностью.
+   */
+  private static void consumptionReturn(MenuController controller,
+      MenuRepository repository) {
+    controller.addProduct("Мука", 1, ProductUnit.KILOGRAMS);
+    ConsumptionStats stats = controller.getProductInventoryService().getConsumptionStats();
+    stats.record("Мука", 200);
+    stats.record("Мука", -100);
+    expect(0.1, stats.getForecast("Мука").getWindowAmount(), "после частичного возврата");
+    stats.record("Мука", -500);
+    expect(0.0, stats.getForecast("Мука").getWindowAmount(), "после полного возврата");
+    expect(0.0, stats.getForecast("Мука").getDailyRate(), "расход в день");
+    expect(null, stats.getForecast("Мука").getDepletionDate(), "дата окончания");
+    stats.record("Мука", 300);
+    expect(0.3, stats.getForecast("Мука").getWindowAmount(), "после нового списания");
+  }
+
+  /**
+   * Ингредиенты, совпавшие после приведения названий, дают одно и то же блюдо
+   * при любом порядке обхода.
+   */
+  private static void ingredientMerge(MenuController controller, MenuRepository repository) {
+    Map<String, ProductQuantity> forward = new LinkedHashMap<>();
+    forward.put("сахар", new ProductQuantity(200, ProductUnit.GRAMS));
+    forward.put("Сахар", new ProductQuantity(1, ProductUnit.KILOGRAMS));
+    Map<String, ProductQuantity> backward = new LinkedHashMap<>();
+    backward.put("Сахар", new ProductQuantity(1, ProductUnit.KILOGRAMS));
+    backward.put("сахар", new ProductQuantity(200, ProductUnit.GRAMS));
+    Dish first = new Dish("Сироп", "", forward);
+    Dish second = new Dish("Сироп", "", backward);
+    expect(first, second, "блюдо");
+    expect(1, first.getIngredientCount(), "ингредиентов");
+    expect(ProductUnit.KILOGRAMS, first.getUnit(0), "единица");
+    expect(1.2, first.getAmount(0), "количество");
+  }
+
+  /**
+   * Короткое слово запроса находит только блюда, где с него начинается слово, даже
+   * если отбор кандидатов шёл по другому слову запроса.
+   */
+  private static void shortSearchTerm(MenuController controller, MenuRepository repository) {
+    Dish porridge = dish("Каша молочная", "Молоко", 200, ProductUnit.MILLILITERS);
+    Dish soup = dish("Молочный суп", "Шампиньоны", 100, ProductUnit.GRAMS);
+    repository.addDish(porridge);
+    repository.addDish(soup);
+    repository.addDish(dish("Шарлотка", "Яблоки", 300, ProductUnit.GRAMS));
+    repository.addDish(dish("Шаурма", "Лаваш", 1, ProductUnit.PIECES));
+    expect(List.of(soup), controller.searchDishes("мол ша", 10), "мол ша");
+    expect(List.of(porridge), controller.searchDishes("ка", 10), "ка");
+  }
+
+  private static Dish dish(String name, String product, double amount, ProductUnit unit) {
+    Map<String, ProductQuantity> ingredients = new HashMap<>();
+    ingredients.put(product, new ProductQuantity(amount, unit));
+    return new Dish(name, "", ingredients);
+  }
+
+  private static void expect(Object expected, Object actual, String what) {
+    if (expected == null ? actual != null : !expected.equals(actual)) {
+      throw new AssertionError(what + ": ожидалось " + expected + ", получено " + actual);
+    }
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
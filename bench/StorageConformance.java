@@ -0,0 +1,304 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import planner.Dish;
+import planner.JdbcStorageEngine;
+import planner.MenuRepository;
+import planner.ProductQuantity;
+import planner.ProductUnit;
+import planner.SnapshotStore;
+import planner.StorageEngine;
+
+/**
+ * Общие проверки механизмов хранения. Каждый механизм должен прочитать то, что записал
+ * целиком и по изменённым ключам, не находить отсутствующие сегменты и удалять всё
+ * по {@link StorageEngine#deleteAll()}. Отдельно проверяется, что репозиторий
+ * не перезаписывает сохранённый сегмент, который не удалось прочитать.
+ * Проверки выполняются для файлов снимков и, если драйвер базы есть в classpath,
+ * для хранилища JDBC.
+ *
+ * <p>Пример: {@code java -cp out:h2.jar bench.StorageConformance --jdbc jdbc:h2:mem:check}.
+ * Код завершения 1 означает, что хотя бы одна проверка не прошла.
+ */
+public class StorageConformance {
+  private static final String DEFAULT_JDBC_URL = "jdbc:h2:mem:planner-conformance";
+  private static final String EXTRA_SEGMENT = "conformance";
+
+  /**
+   * Открывает пустое хранилище в каталоге проверки.
+   */
+  private interface Factory {
+    StorageEngine open(File directory) throws IOException;
+  }
+
+  /**
+   * Проверка над открытым хранилищем; несоответствие сообщается исключением.
+   */
+  private interface Check {
+    void run(StorageEngine store, File directory) throws Exception;
+  }
+
+  private final PrintStream out;
+  private int passed;
+  private int failed;
+
+  private StorageConformance(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Точка входа: {@code --jdbc адрес} задаёт базу для проверки хранилища JDBC.
+   */
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    String url = args.length == 2 && args[0].equals("--jdbc") ? args[1] : DEFAULT_JDBC_URL;
+    PrintStream out = System.out;
+    StorageConformance suite = new StorageConformance(out);
+    try {
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+      suite.runAll("Файлы снимков",
+          directory -> new SnapshotStore(new File(directory, "menu_data").getPath()));
+      suite.runAll("База данных " + url, directory -> {
+        StorageEngine store = new JdbcStorageEngine(url);
+        store.deleteAll();
+        return store;
+      });
+    } finally {
+      System.setOut(out);
+    }
+    out.println(String.format("Пройдено %d, не пройдено %d", suite.passed, suite.failed));
+    if (suite.failed > 0) {
+      System.exit(1);
+    }
+  }
+
+  private void runAll(String title, Factory factory) throws IOException {
+    out.println(title);
+    File probe = Files.createTempDirectory("planner-conformance").toFile();
+    try {
+      factory.open(probe).close();
+    } catch (IOException e) {
+      out.println("  пропущено: " + e.getMessage());
+      return;
+    } finally {
+      deleteRecursively(probe);
+    }
+    run(factory, "отсутствующий сегмент", StorageConformance::missingSegment);
+    run(factory, "запись целиком", StorageConformance::wholeRoundTrip);
+    run(factory, "запас по ключам", StorageConformance::productKeys);
+    run(factory, "каталог по ключам", StorageConformance::catalogKeys);
+    run(factory, "меню по ключам", StorageConformance::menuKeys);
+    run(factory, "удаление всех данных", StorageConformance::deleteAll);
+    run(factory, "непрочитанный сегмент не перезаписывается",
+        (store, directory) -> unreadableKept(store, directory, false));
+    run(factory, "сегмент не перезаписывается, когда хранилище недоступно",
+        (store, directory) -> unreadableKept(store, directory, true));
+  }
+
+  private void run(Factory factory, String name, Check check) throws IOException {
+    File directory = Files.createTempDirectory("planner-conformance").toFile();
+    try (StorageEngine store = factory.open(directory)) {
+      check.run(store, directory);
+      passed++;
+      out.println("  ok   " + name);
+    } catch (Exception | AssertionError e) {
+      failed++;
+      out.println("  FAIL " + name + ": " + e);
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  private static void missingSegment(StorageEngine store, File directory) throws IOException {
+    for (String segment : Arrays.asList(StorageEngine.MENU_SEGMENT,
+        StorageEngine.INVENTORY_SEGMENT, StorageEngine.CATALOG_SEGMENT, EXTRA_SEGMENT)) {
+      expect(false, store.exists(segment), "exists " + segment);
+      expect(null, store.read(segment), "read " + segment);
+    }
+  }
+
+  private static void wholeRoundTrip(StorageEngine store, File directory) throws IOException {
+    Map<String, Map<String, Dish>> menu = menu(new String[] {"Понедельник", "Завтрак", "Каша"},
+        new String[] {"Среда", "Ужин", "Суп"});
+    Map<String, ProductQuantity> products = products("Молоко", "Гречка", "Соль");
+    List<Dish> dishes = new ArrayList<>(Arrays.asList(dish("Каша"), dish("Суп"), dish("Чай")));
+    Map<String, Integer> extra = new HashMap<>();
+    extra.put("ключ", 7);
+
+    store.write(StorageEngine.MENU_SEGMENT, menu);
+    store.write(StorageEngine.INVENTORY_SEGMENT, products);
+    store.write(StorageEngine.CATALOG_SEGMENT, dishes);
+    store.write(EXTRA_SEGMENT, extra);
+
+    expect(true, store.exists(StorageEngine.MENU_SEGMENT), "exists menu");
+    expect(menu, store.read(StorageEngine.MENU_SEGMENT), "menu");
+    expect(products, store.read(StorageEngine.INVENTORY_SEGMENT), "inventory");
+    expect(dishes, store.read(StorageEngine.CATALOG_SEGMENT), "catalog");
+    expect(extra, store.read(EXTRA_SEGMENT), EXTRA_SEGMENT);
+  }
+
+  private static void productKeys(StorageEngine store, File directory) throws IOException {
+    Map<String, ProductQuantity> products = products("Молоко", "Гречка", "Соль");
+    store.write(StorageEngine.INVENTORY_SEGMENT, products);
+    products.put("Гречка", new ProductQuantity(2, ProductUnit.KILOGRAMS));
+    products.remove("Соль");
+    products.put("Сахар", new ProductQuantity(300, ProductUnit.GRAMS));
+    store.write(StorageEngine.INVENTORY_SEGMENT, products, keys("Гречка", "Соль", "Сахар"));
+    expect(products, store.read(StorageEngine.INVENTORY_SEGMENT), "inventory");
+  }
+
+  private static void catalogKeys(StorageEngine store, File directory) throws IOException {
+    List<Dish> dishes = new ArrayList<>(Arrays.asList(dish("Каша"), dish("Суп"), dish("Чай")));
+    store.write(StorageEngine.CATALOG_SEGMENT, dishes);
+    dishes.remove(1);
+    dishes.add(1, dish("Омлет"));
+    dishes.set(2, new Dish("Чай", "С лимоном", products("Лимон")));
+    store.write(StorageEngine.CATALOG_SEGMENT, dishes, keys("Суп", "Омлет", "Чай"));
+    expect(dishes, store.read(StorageEngine.CATALOG_SEGMENT), "catalog");
+  }
+
+  private static void menuKeys(StorageEngine store, File directory) throws IOException {
+    Map<String, Map<String, Dish>> menu = menu(new String[] {"Понедельник", "Завтрак", "Каша"},
+        new String[] {"Среда", "Обед", "Чай"}, new String[] {"Среда", "Ужин", "Суп"});
+    store.write(StorageEngine.MENU_SEGMENT, menu);
+    menu.get("Понедельник").put("Завтрак", dish("Омлет"));
+    menu.get("Среда").remove("Ужин");
+    menu.computeIfAbsent("Пятница", k -> new HashMap<>()).put("Обед", dish("Суп"));
+    store.write(StorageEngine.MENU_SEGMENT, menu, keys(
+        StorageEngine.slotKey("Понедельник", "Завтрак"), StorageEngine.slotKey("Среда", "Ужин"),
+        StorageEngine.slotKey("Пятница", "Обед")));
+    expect(menu, store.read(StorageEngine.MENU_SEGMENT), "menu");
+  }
+
+  private static void deleteAll(StorageEngine store, File directory) throws IOException {
+    store.write(StorageEngine.INVENTORY_SEGMENT, products("Молоко"));
+    store.write(EXTRA_SEGMENT, new HashMap<>());
+    expect(true, store.deleteAll(), "deleteAll");
+    expect(false, store.exists(StorageEngine.INVENTORY_SEGMENT), "exists inventory");
+    expect(false, store.exists(EXTRA_SEGMENT), "exists " + EXTRA_SEGMENT);
+  }
+
+  /**
+   * Запас сохранён, но не читается. Репозиторий загружается, изменяет запас и сохраняет
+   * всё; сохранённый запас должен остаться прежним. Файл репозитория назван иначе,
+   * чем файлы хранилища, чтобы сегменты не перенеслись из файлов снимков.
+   */
+  private static void unreadableKept(StorageEngine store, File directory, boolean unavailable)
+      throws IOException {
+    Map<String, ProductQuantity> products = products("Молоко", "Гречка");
+    store.write(StorageEngine.MENU_SEGMENT, menu());
+    store.write(StorageEngine.INVENTORY_SEGMENT, products);
+    store.write(StorageEngine.CATALOG_SEGMENT, new ArrayList<>(Arrays.asList(dish("Каша"))));
+
+    MenuRepository repository = new MenuRepository(new File(directory, "repository.dat").getPath(),
+        new Unreadable(store, StorageEngine.INVENTORY_SEGMENT, unavailable), true);
+    repository.addProduct("Соль", new ProductQuantity(50, ProductUnit.GRAMS));
+    repository.saveAll();
+    expect(products, store.read(StorageEngine.INVENTORY_SEGMENT), "inventory");
+    expect(1, repository.getDishes().size(), "dishes");
+  }
+
+  /**
+   * Хранилище, в котором один сегмент сохранён, но не читается. Если хранилище
+   * недоступно, не удаётся и проверить, сохранён ли сегмент.
+   */
+  private static final class Unreadable implements StorageEngine {
+    private final StorageEngine store;
+    private final String segment;
+    private final boolean unavailable;
+
+    Unreadable(StorageEngine store, String segment, boolean unavailable) {
+      this.store = store;
+      this.segment = segment;
+      this.unavailable = unavailable;
+    }
+
+    @Override
+    public String getName() {
+      return store.getName();
+    }
+
+    @Override
+    public boolean exists(String name) throws IOException {
+      if (unavailable && name.equals(segment)) {
+        throw new IOException("хранилище недоступно");
+      }
+      return store.exists(name);
+    }
+
+    @Override
+    public Object read(String name) throws IOException {
+      if (name.equals(segment)) {
+        throw new IOException("сегмент повреждён");
+      }
+      return store.read(name);
+    }
+
+    @Override
+    public Object readBackup(String name) throws IOException {
+      return name.equals(segment) ? null : store.readBackup(name);
+    }
+
+    @Override
+    public long write(String name, Object data, Set<String> changedKeys) throws IOException {
+      return store.write(name, data, changedKeys);
+    }
+
+    @Override
+    public boolean deleteAll() {
+      return store.deleteAll();
+    }
+  }
+
+  private static Map<String, Map<String, Dish>> menu(String[]... slots) {
+    Map<String, Map<String, Dish>> menu = new HashMap<>();
+    for (String[] slot : slots) {
+      menu.computeIfAbsent(slot[0], k -> new HashMap<>()).put(slot[1], dish(slot[2]));
+    }
+    return menu;
+  }
+
+  private static Dish dish(String name) {
+    return new Dish(name, "Описание: " + name, products("Молоко", "Соль"));
+  }
+
+  private static Map<String, ProductQuantity> products(String... names) {
+    Map<String, ProductQuantity> products = new HashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      products.put(names[i], new ProductQuantity(100 + i * 0.5,
+          i % 2 == 0 ? ProductUnit.GRAMS : ProductUnit.MILLILITERS));
+    }
+    return products;
+  }
+
+  private static Set<String> keys(String... keys) {
+    return new HashSet<>(Arrays.asList(keys));
+  }
+
+  private static void expect(Object expected, Object actual, String what) {
+    if (expected == null ? actual != null : !expected.equals(actual)) {
+      throw new AssertionError(what + ": ожидалось " + expected + ", получено " + actual);
+    }
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,165 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import planner.Dish;
+import planner.MenuRepository;
+import planner.ProductQuantity;
+import planner.ProductUnit;
+
+/**
+ * Генератор синтетических данных для замеров и нагрузочных прогонов.
+ * Названия строятся из русских слов, данные детерминированы по seed.
+ */
+public class SyntheticData {
+  public static final String[] DAYS = { "Понедельник", "Вторник", "Среда", "Четверг",
+      "Пятница", "Суббота", "Воскресенье" };
+  public static final String[] MEAL_TYPES = { "Завтрак", "Обед", "Ужин" };
+
+  private static final String[] DISH_BASES = { "Борщ", "Щи", "Солянка", "Каша", "Плов",
+      "Котлеты", "Голубцы", "Блины", "Сырники", "Омлет", "Салат", "Рагу", "Запеканка",
+      "Пельмени", "Вареники", "Уха", "Окрошка", "Жаркое", "Драники", "Тефтели" };
+  private static final String[] DISH_STYLES = { "домашний", "по-деревенски", "с грибами",
+      "с курицей", "постный", "бабушкин", "праздничный", "с зеленью", "на скорую руку",
+      "запечённый" };
+  private static final String[] PRODUCT_BASES = { "Молоко", "Мука", "Яйца", "Сахар", "Соль",
+      "Картофель", "Морковь", "Лук", "Свёкла", "Капуста", "Говядина", "Свинина", "Курица",
+      "Рис", "Гречка", "Масло сливочное", "Масло подсолнечное", "Сметана", "Творог", "Сыр",
+      "Чеснок", "Укроп", "Петрушка", "Томаты", "Огурцы", "Грибы", "Перец", "Фасоль" };
+
+  private final Random random;
+
+  public SyntheticData(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Возвращает названия продуктов с вариантами, чтобы получить нужное количество.
+   */
+  public List<String> productNames(int count) {
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String base = PRODUCT_BASES[i % PRODUCT_BASES.length];
+      names.add(i < PRODUCT_BASES.length ? base : base + " сорт " + (i / PRODUCT_BASES.length));
+    }
+    return names;
+  }
+
+  /**
+   * Создает запас продуктов с единицами измерения всех видов.
+   */
+  public Map<String, ProductQuantity> inventory(List<String> productNames) {
+    ProductUnit[] units = ProductUnit.values();
+    Map<String, ProductQuantity> products = new HashMap<>();
+    for (int i = 0; i < productNames.size(); i++) {
+      ProductUnit unit = units[i % units.length];
+      products.put(productNames.get(i), new ProductQuantity(largeAmount(unit), unit));
+    }
+    return products;
+  }
+
+  /**
+   * Создает блюда со случайными ингредиентами из указанных продуктов.
+   */
+  public List<Dish> dishes(int count, List<String> productNames) {
+    List<Dish> dishes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String name = DISH_BASES[random.nextInt(DISH_BASES.length)] + " "
+          + DISH_STYLES[random.nextInt(DISH_STYLES.length)] + " №" + i;
+      dishes.add(new Dish(name, "Рецепт " + name.toLowerCase() + " для всей семьи",
+          ingredients(productNames)));
+    }
+    return dishes;
+  }
+
+  /**
+   * Создает набор ингредиентов блюда из 3-8 продуктов.
+   */
+  public Map<String, ProductQuantity> ingredients(List<String> productNames) {
+    ProductUnit[] units = ProductUnit.values();
+    Map<String, ProductQuantity> ingredients = new HashMap<>();
+    int count = 3 + random.nextInt(6);
+    for (int i = 0; i < count; i++) {
+      String product = productNames.get(random.nextInt(productNames.size()));
+      ProductUnit unit = units[random.nextInt(units.length)];
+      ingredients.put(product, new ProductQuantity(smallAmount(unit), unit));
+    }
+    return ingredients;
+  }
+
+  /**
+   * Заполняет репозиторий каталогом, запасом и недельным меню одним сохранением на раздел.
+   */
+  public void populate(MenuRepository repository, int dishCount, int productCount) {
+    List<String> names = productNames(productCount);
+    List<Dish> dishes = dishes(dishCount, names);
+    repository.setProducts(inventory(names));
+    repository.setDishes(dishes);
+
+    Map<String, Map<String, Dish>> weeklyMenu = new HashMap<>();
+    for (String day : DAYS) {
+      Map<String, Dish> dayMenu = new HashMap<>();
+      for (String mealType : MEAL_TYPES) {
+        dayMenu.put(mealType, dishes.get(random.nextInt(dishes.size())));
+      }
+      weeklyMenu.put(day, dayMenu);
+    }
+    repository.setWeeklyMenu(weeklyMenu);
+  }
+
+  /**
+   * Возвращает строки чисел в форматах, которые вводят пользователи.
+   */
+  public String[] numberInputs(int count) {
+    String[] inputs = new String[count];
+    for (int i = 0; i < count; i++) {
+      switch (i % 4) {
+        case 0:
+          inputs[i] = String.valueOf(random.nextInt(1000));
+          break;
+        case 1:
+          inputs[i] = random.nextInt(10) + "," + random.nextInt(100);
+          break;
+        case 2:
+          inputs[i] = " " + random.nextInt(100) + "." + random.nextInt(10) + " кг";
+          break;
+        default:
+          inputs[i] = "." + random.nextInt(1000);
+          break;
+      }
+    }
+    return inputs;
+  }
+
+  public Random random() {
+    return random;
+  }
+
+  private double largeAmount(ProductUnit unit) {
+    switch (unit) {
+      case KILOGRAMS:
+      case LITERS:
+        return 1_000 + random.nextInt(1_000);
+      case PIECES:
+        return 100_000 + random.nextInt(100_000);
+      default:
+        return 1_000_000 + random.nextInt(1_000_000);
+    }
+  }
+
+  private double smallAmount(ProductUnit unit) {
+    switch (unit) {
+      case KILOGRAMS:
+      case LITERS:
+        return 0.1 + random.nextInt(10) / 10.0;
+      case PIECES:
+      case TABLESPOONS:
+        return 1 + random.nextInt(4);
+      default:
+        return 10 + random.nextInt(500);
+    }
+  }
+}
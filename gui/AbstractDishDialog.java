@@ -62,6 +62,7 @@ public abstract class AbstractDishDialog extends JDialog {
     unitComboBox = new JComboBox<>(ProductUnit.values());
     productNameField = new JTextField(15);
     productAmountField = new JTextField(5);
+    ProductNameAutoComplete.attach(productNameField, controller);
   }
 
   protected void layoutComponents() {
@@ -156,7 +157,9 @@ public abstract class AbstractDishDialog extends JDialog {
 
   protected void addIngredient() {
     try {
-      String product = productNameField.getText().trim();
+      String text = productNameField.getText().trim().replaceAll("\\s+", " ");
+      String known = controller.findProductName(text);
+      String product = known != null ? known : text;
       double amount = NumberParser.parse(productAmountField.getText().trim());
       ProductUnit unit = (ProductUnit) unitComboBox.getSelectedItem();
 
@@ -0,0 +1,139 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+import planner.Diagnostics;
+import planner.MenuController;
+
+/**
+ * Вкладка диагностики: задержки операций, время сохранения, оценка памяти, кэши
+ * и последние медленные операции. Пока вкладка видна, сводка обновляется по таймеру;
+ * в потоке событий копируется список блюд и снимаются размеры меню, остальное
+ * считается в фоне. Кнопка копирует сводку в буфер обмена для отчёта о проблеме.
+ */
+public class DiagnosticsPanel extends JPanel {
+  private static final int REFRESH_MILLIS = 2000;
+  private static final int SECTION = 0;
+  private static final int NAME = 1;
+  private static final int VALUE = 2;
+
+  private final MenuController controller;
+  private final DefaultTableModel tableModel;
+  private final JLabel statusLabel = new JLabel(" ");
+  private final Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+  private List<Diagnostics.Entry> entries = new ArrayList<>();
+  private SwingWorker<List<Diagnostics.Entry>, Void> worker;
+
+  /**
+   * Создает вкладку диагностики.
+   */
+  public DiagnosticsPanel(MenuController controller) {
+    this.controller = controller;
+    setLayout(new BorderLayout());
+    setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+    tableModel = new DefaultTableModel(new String[] {"Раздел", "Показатель", "Значение"}, 0) {
+      @Override
+      public boolean isCellEditable(int row, int column) {
+        return false;
+      }
+    };
+    JTable table = new JTable(tableModel);
+    table.getColumnModel().getColumn(SECTION).setPreferredWidth(120);
+    table.getColumnModel().getColumn(NAME).setPreferredWidth(260);
+    table.getColumnModel().getColumn(VALUE).setPreferredWidth(320);
+
+    JButton copyButton = new JButton("Копировать отчёт");
+    copyButton.addActionListener(e -> copyReport());
+    JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    bottomPanel.add(copyButton);
+    bottomPanel.add(statusLabel);
+
+    add(new JScrollPane(table), BorderLayout.CENTER);
+    add(bottomPanel, BorderLayout.SOUTH);
+    timer.setInitialDelay(0);
+  }
+
+  @Override
+  public void addNotify() {
+    super.addNotify();
+    timer.start();
+  }
+
+  @Override
+  public void removeNotify() {
+    timer.stop();
+    super.removeNotify();
+  }
+
+  /**
+   * Запускает сбор сводки в фоне, если вкладка видна и предыдущий сбор завершён.
+   */
+  private void refresh() {
+    if (worker != null || !isShowing()) {
+      return;
+    }
+    Diagnostics.Snapshot snapshot = controller.getDiagnostics().capture();
+    worker = new SwingWorker<List<Diagnostics.Entry>, Void>() {
+      @Override
+      protected List<Diagnostics.Entry> doInBackground() {
+        return snapshot.collect();
+      }
+
+      @Override
+      protected void done() {
+        worker = null;
+        try {
+          showEntries(get());
+        } catch (InterruptedException | ExecutionException e) {
+          statusLabel.setText("Ошибка сбора диагностики: " + e.getMessage());
+        }
+      }
+    };
+    worker.execute();
+  }
+
+  /**
+   * Обновляет только изменившиеся ячейки, чтобы не сбрасывать выделение и прокрутку.
+   */
+  private void showEntries(List<Diagnostics.Entry> newEntries) {
+    entries = newEntries;
+    tableModel.setRowCount(newEntries.size());
+    for (int row = 0; row < newEntries.size(); row++) {
+      Diagnostics.Entry entry = newEntries.get(row);
+      setCell(row, SECTION, entry.getSection());
+      setCell(row, NAME, entry.getName());
+      setCell(row, VALUE, entry.getValue());
+    }
+    statusLabel.setText("Обновлено " + new SimpleDateFormat("HH:mm:ss").format(new Date()));
+  }
+
+  private void setCell(int row, int column, String value) {
+    if (!Objects.equals(tableModel.getValueAt(row, column), value)) {
+      tableModel.setValueAt(value, row, column);
+    }
+  }
+
+  private void copyReport() {
+    Toolkit.getDefaultToolkit().getSystemClipboard()
+        .setContents(new StringSelection(Diagnostics.format(entries)), null);
+    statusLabel.setText("Отчёт скопирован в буфер обмена");
+  }
+}
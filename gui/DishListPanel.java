@@ -2,14 +2,17 @@ package gui;
 
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
+import java.util.List;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
@@ -21,9 +24,12 @@ import planner.MenuController;
  * Позволяет добавлять, редактировать и просматривать блюда.
  */
 public class DishListPanel extends JPanel {
+  private static final int SEARCH_LIMIT = 500;
+
   private final MenuController controller;
   private final JTable dishTable;
   private final DefaultTableModel tableModel;
+  private final JTextField searchField = new JTextField(20);
 
   /**
    * Конструктор для создания панели управления списком избранных блюд.
@@ -65,6 +71,10 @@ public class DishListPanel extends JPanel {
     JButton addButton = new JButton("Добавить блюдо");
     addButton.addActionListener(e -> showAddDialog());
     panel.add(addButton);
+
+    searchField.getDocument().addDocumentListener(new DocumentChangeListener(this::refreshTable));
+    panel.add(new JLabel("Поиск:"));
+    panel.add(searchField);
     return panel;
   }
 
@@ -116,12 +126,16 @@ public class DishListPanel extends JPanel {
     }
   }
 
-  private void refreshTable() {
+  void refreshTable() {
     tableModel.setRowCount(0);
-    controller.getAllDishes().forEach(dish -> {
+    String query = searchField.getText().trim();
+    List<Dish> dishes = query.isEmpty()
+        ? controller.getAllDishes()
+        : controller.searchDishes(query, SEARCH_LIMIT);
+    dishes.forEach(dish -> {
       StringBuilder ingredients = new StringBuilder();
-      dish.getIngredients().forEach((name, pq) -> ingredients.append(String.format("%s - %.2f %s; ",
-          name, pq.getAmount(), pq.getUnit())));
+      dish.forEachIngredient((name, amount, unit) -> ingredients.append(
+          String.format("%s - %.2f %s; ", name, amount, unit)));
 
       tableModel.addRow(new Object[] {
           dish.getName(),
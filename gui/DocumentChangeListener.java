@@ -0,0 +1,30 @@
+package gui;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Слушатель, вызывающий одно действие при любом изменении текста в поле.
+ */
+public class DocumentChangeListener implements DocumentListener {
+  private final Runnable onChange;
+
+  public DocumentChangeListener(Runnable onChange) {
+    this.onChange = onChange;
+  }
+
+  @Override
+  public void insertUpdate(DocumentEvent e) {
+    onChange.run();
+  }
+
+  @Override
+  public void removeUpdate(DocumentEvent e) {
+    onChange.run();
+  }
+
+  @Override
+  public void changedUpdate(DocumentEvent e) {
+    onChange.run();
+  }
+}
@@ -0,0 +1,285 @@
+package gui;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.swing.AbstractButton;
+import planner.Metrics;
+
+/**
+ * Сторож потока обработки событий Swing. Очередь событий отмечает начало обработки
+ * каждого события; фоновый поток раз в несколько миллисекунд проверяет отметку и,
+ * если событие обрабатывается дольше порога, снимает стек потока событий.
+ * Когда событие завершается, выборки сводятся в отчёт: событие и его источник,
+ * самые частые верхние кадры и кадры приложения, самый частый стек. Отчёт
+ * дописывается в журнал.
+ *
+ * <p>Без зависаний обработка события стоит двух чтений часов и записи volatile-поля,
+ * а фоновый поток только сравнивает отметку времени.
+ */
+public final class EdtWatchdog extends EventQueue {
+  private static final String DEFAULT_LOG = "auto_save/edt_stalls.log";
+  private static final int TOP_FRAMES = 5;
+  private static final int STACK_DEPTH = 40;
+  private static final int MAX_DESCRIPTION = 300;
+
+  private final long thresholdNanos;
+  private final long intervalMillis;
+  private final File log;
+
+  /**
+   * Начало обработки текущего события по {@link System#nanoTime()}; 0 — поток событий
+   * ждёт следующего события. Значение также отличает одно событие от другого.
+   */
+  private volatile long dispatchStart;
+  private volatile AWTEvent dispatchEvent;
+  private volatile Thread dispatchThread;
+  /**
+   * Начало и длительность последнего события, превысившего порог.
+   */
+  private volatile long stalledStart;
+  private volatile long stalledNanos;
+
+  private EdtWatchdog(long thresholdMillis, File log) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.intervalMillis = Math.max(10, thresholdMillis / 5);
+    this.log = log;
+  }
+
+  /**
+   * Устанавливает сторож, если задано свойство {@code planner.edt.watchdog} — порог
+   * в миллисекундах. Журнал задаётся свойством {@code planner.edt.log}.
+   */
+  public static void installFromSystemProperties() {
+    String threshold = System.getProperty("planner.edt.watchdog");
+    if (threshold == null) {
+      return;
+    }
+    try {
+      install(Long.parseLong(threshold.trim()),
+          new File(System.getProperty("planner.edt.log", DEFAULT_LOG)));
+    } catch (IllegalArgumentException e) {
+      System.err.println("Неверный порог сторожа EDT: " + threshold);
+    }
+  }
+
+  /**
+   * Подменяет системную очередь событий и запускает поток выборки стеков.
+   *
+   * @throws IllegalArgumentException если порог не больше нуля
+   */
+  public static EdtWatchdog install(long thresholdMillis, File log) {
+    if (thresholdMillis <= 0) {
+      throw new IllegalArgumentException("Порог должен быть больше нуля: " + thresholdMillis);
+    }
+    EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis, log);
+    Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog);
+    Thread sampler = new Thread(watchdog::sample, "edt-watchdog");
+    sampler.setDaemon(true);
+    sampler.start();
+    return watchdog;
+  }
+
+  @Override
+  public AWTEvent getNextEvent() throws InterruptedException {
+    // Вложенный цикл модального окна ждёт событий внутри обработки внешнего события.
+    dispatchStart = 0;
+    return super.getNextEvent();
+  }
+
+  @Override
+  protected void dispatchEvent(AWTEvent event) {
+    AWTEvent outer = dispatchEvent;
+    long start = System.nanoTime();
+    dispatchThread = Thread.currentThread();
+    dispatchEvent = event;
+    dispatchStart = start;
+    try {
+      super.dispatchEvent(event);
+    } finally {
+      long end = System.nanoTime();
+      if (end - start >= thresholdNanos) {
+        stalledNanos = end - start;
+        stalledStart = start;
+      }
+      // Внешнее событие продолжает обработку после закрытия модального окна.
+      dispatchEvent = outer;
+      dispatchStart = outer != null ? end : 0;
+    }
+  }
+
+  /**
+   * Цикл фонового потока: следит за отметкой начала события и снимает стеки.
+   */
+  private void sample() {
+    Stall stall = null;
+    while (true) {
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      long started = dispatchStart;
+      if (stall != null && started != stall.started) {
+        finish(stall);
+        stall = null;
+      }
+      long now = System.nanoTime();
+      Thread thread = dispatchThread;
+      if (started == 0 || thread == null || now - started < thresholdNanos) {
+        continue;
+      }
+      if (stall == null) {
+        // Поток событий занят этим событием, поэтому его поля можно прочитать.
+        stall = new Stall(started, describe(dispatchEvent));
+      }
+      stall.add(thread.getStackTrace(), now);
+    }
+  }
+
+  /**
+   * Выборки стека за время одного долгого события.
+   */
+  private static final class Stall {
+    private final long started;
+    private final String event;
+    private final Map<List<StackTraceElement>, Integer> stacks = new HashMap<>();
+    private int samples;
+    private long lastSample;
+
+    Stall(long started, String event) {
+      this.started = started;
+      this.event = event;
+    }
+
+    void add(StackTraceElement[] stack, long time) {
+      if (stack.length > 0) {
+        stacks.merge(Arrays.asList(stack), 1, Integer::sum);
+        samples++;
+      }
+      lastSample = time;
+    }
+  }
+
+  private void finish(Stall stall) {
+    long nanos = stalledStart == stall.started ? stalledNanos : stall.lastSample - stall.started;
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    Metrics.registry().counter("planner_edt_stalls_total",
+        "Число событий Swing дольше порога сторожа").increment();
+    Metrics.registry().timer("planner_edt_stall_seconds",
+        "Длительность событий Swing дольше порога сторожа").record(nanos);
+
+    Map<String, Integer> topFrames = new HashMap<>();
+    Map<String, Integer> appFrames = new HashMap<>();
+    List<StackTraceElement> common = null;
+    int commonCount = 0;
+    for (Map.Entry<List<StackTraceElement>, Integer> entry : stall.stacks.entrySet()) {
+      List<StackTraceElement> stack = entry.getKey();
+      int count = entry.getValue();
+      topFrames.merge(stack.get(0).toString(), count, Integer::sum);
+      StackTraceElement app = applicationFrame(stack);
+      if (app != null) {
+        appFrames.merge(app.toString(), count, Integer::sum);
+      }
+      if (count > commonCount) {
+        common = stack;
+        commonCount = count;
+      }
+    }
+
+    String nl = System.lineSeparator();
+    StringBuilder report = new StringBuilder()
+        .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()))
+        .append(" Зависание EDT ").append(millis).append(" мс, выборок ")
+        .append(stall.samples).append(nl)
+        .append("  Событие: ").append(stall.event).append(nl);
+    appendTop(report, "Верхние кадры", topFrames, stall.samples);
+    appendTop(report, "Кадры приложения", appFrames, stall.samples);
+    if (common != null) {
+      report.append("  Частый стек (").append(commonCount).append(" из ").append(stall.samples)
+          .append("):").append(nl);
+      for (StackTraceElement frame : common.subList(0, Math.min(STACK_DEPTH, common.size()))) {
+        report.append("    at ").append(frame).append(nl);
+      }
+    }
+
+    File parent = log.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(log, true), StandardCharsets.UTF_8))) {
+      writer.write(report.append(nl).toString());
+    } catch (IOException e) {
+      System.err.println("Ошибка записи журнала зависаний: " + e.getMessage());
+      return;
+    }
+    System.err.println("Зависание интерфейса " + millis + " мс записано в " + log);
+  }
+
+  private static void appendTop(StringBuilder report, String title, Map<String, Integer> frames,
+      int samples) {
+    if (frames.isEmpty()) {
+      return;
+    }
+    String nl = System.lineSeparator();
+    report.append("  ").append(title).append(':').append(nl);
+    frames.entrySet().stream()
+        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()))
+        .limit(TOP_FRAMES)
+        .forEach(e -> report.append(String.format("    %3d%% %s%n",
+            e.getValue() * 100 / samples, e.getKey())));
+  }
+
+  /**
+   * Первый сверху кадр кода приложения, кроме самого сторожа.
+   */
+  private static StackTraceElement applicationFrame(List<StackTraceElement> stack) {
+    for (StackTraceElement frame : stack) {
+      String name = frame.getClassName();
+      if ((name.startsWith("planner.") || name.startsWith("gui.") || name.equals("Main"))
+          && !name.startsWith(EdtWatchdog.class.getName())) {
+        return frame;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Описание события: тип, параметры и источник — компонент с именем или текстом кнопки.
+   */
+  private static String describe(AWTEvent event) {
+    if (event == null) {
+      return "неизвестно";
+    }
+    StringBuilder text = new StringBuilder(event.getClass().getSimpleName())
+        .append(' ').append(event.paramString());
+    Object source = event.getSource();
+    if (source != null) {
+      text.append(", источник ").append(source.getClass().getName());
+    }
+    if (source instanceof AbstractButton && ((AbstractButton) source).getText() != null) {
+      text.append(" \"").append(((AbstractButton) source).getText()).append('"');
+    } else if (source instanceof Component && ((Component) source).getName() != null) {
+      text.append(" \"").append(((Component) source).getName()).append('"');
+    }
+    return text.length() > MAX_DESCRIPTION ? text.substring(0, MAX_DESCRIPTION) + "…"
+        : text.toString();
+  }
+}
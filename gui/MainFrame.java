@@ -1,32 +1,222 @@
 package gui;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import planner.DataSection;
+import planner.EditHistory;
 import planner.MenuController;
 import planner.MenuRepository;
+import planner.ProductQuantity;
+import planner.StartupProfile;
 
 /**
  * Главное окно приложения "Семейный планировщик меню".
- * Содержит вкладки для управления меню, блюдами и продуктами.
+ * Содержит вкладки для управления меню, блюдами и продуктами и вкладку диагностики.
+ * Окно показывается до загрузки данных, а скрытые вкладки создаются при первом выборе.
+ * Меню "Правка" отменяет и повторяет изменения (Ctrl+Z, Ctrl+Y).
+ * Когда запас продуктов опускается ниже минимума, окно показывает предупреждение.
  */
 public class MainFrame extends JFrame {
+  private static final String TITLE = "Семейный планировщик меню";
+
+  private final MenuRepository repository;
+  private final MenuController controller;
+  private final JTabbedPane tabbedPane = new JTabbedPane();
+  private final WeeklyMenuPanel weeklyMenuPanel;
+  private final Map<Integer, Supplier<JPanel>> pendingTabs = new HashMap<>();
+  private final Map<String, String> lowStock = new LinkedHashMap<>();
+  private boolean loaded = false;
+
   /**
    * Создает главное окно приложения.
    */
   public MainFrame() {
-    super("Семейный планировщик меню");
+    super(TITLE + " (загрузка...)");
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     setSize(800, 600);
     setLocationRelativeTo(null);
 
-    MenuController controller = new MenuController(new MenuRepository());
+    repository = new MenuRepository(false);
+    controller = new MenuController(repository);
 
-    JTabbedPane tabbedPane = new JTabbedPane();
-    tabbedPane.addTab("Меню на неделю", new WeeklyMenuPanel(controller));
-    tabbedPane.addTab("Избранные блюда", new DishListPanel(controller));
-    tabbedPane.addTab("Учет продуктов", new ProductManagementPanel(controller));
+    weeklyMenuPanel = new WeeklyMenuPanel(controller);
+    weeklyMenuPanel.setInteractive(false);
+    tabbedPane.addTab("Меню на неделю", weeklyMenuPanel);
+    addLazyTab("Избранные блюда", () -> new DishListPanel(controller));
+    addLazyTab("Учет продуктов", () -> new ProductManagementPanel(controller));
+    if (Boolean.getBoolean("planner.diagnostics")) {
+      addLazyTab("Диагностика", () -> new DiagnosticsPanel(controller));
+    }
+    tabbedPane.addChangeListener(e -> buildTab(tabbedPane.getSelectedIndex()));
+    controller.getStockThresholds().addListener(this::belowMinimum);
 
     add(tabbedPane, BorderLayout.CENTER);
+    setJMenuBar(createMenuBar());
+    StartupProfile.mark("frame-built");
+  }
+
+  private JMenuBar createMenuBar() {
+    JMenuItem undoItem = new JMenuItem("Отменить");
+    undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+    undoItem.addActionListener(e -> applyHistory(controller::undo));
+
+    JMenuItem redoItem = new JMenuItem("Повторить");
+    redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+    redoItem.addActionListener(e -> applyHistory(controller::redo));
+
+    JMenu editMenu = new JMenu("Правка");
+    editMenu.add(undoItem);
+    editMenu.add(redoItem);
+    editMenu.addMenuListener(new MenuListener() {
+      @Override
+      public void menuSelected(MenuEvent e) {
+        EditHistory history = controller.getEditHistory();
+        undoItem.setText(history.canUndo() ? "Отменить " + history.getUndoLabel() : "Отменить");
+        redoItem.setText(history.canRedo() ? "Повторить " + history.getRedoLabel() : "Повторить");
+      }
+
+      @Override
+      public void menuDeselected(MenuEvent e) {
+      }
+
+      @Override
+      public void menuCanceled(MenuEvent e) {
+      }
+    });
+
+    JMenuBar menuBar = new JMenuBar();
+    menuBar.add(editMenu);
+    return menuBar;
+  }
+
+  /**
+   * Обновляет все построенные вкладки после отмены или повтора изменения.
+   */
+  private void applyHistory(BooleanSupplier action) {
+    if (!loaded) {
+      return;
+    }
+    if (!action.getAsBoolean()) {
+      Toolkit.getDefaultToolkit().beep();
+      return;
+    }
+    weeklyMenuPanel.refreshTable();
+    for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+      Component tab = tabbedPane.getComponentAt(i);
+      if (tab instanceof DishListPanel) {
+        ((DishListPanel) tab).refreshTable();
+      } else if (tab instanceof ProductManagementPanel) {
+        ((ProductManagementPanel) tab).refreshTable();
+      }
+    }
+  }
+
+  /**
+   * Собирает продукты ниже минимума и показывает их одним предупреждением
+   * после завершения текущей операции.
+   */
+  private void belowMinimum(String product, ProductQuantity stock, ProductQuantity minimum) {
+    boolean schedule;
+    synchronized (lowStock) {
+      schedule = lowStock.isEmpty();
+      lowStock.put(product, String.format("%s — осталось %.2f %s, минимум %.2f %s", product,
+          stock.getAmount(), stock.getUnit(), minimum.getAmount(), minimum.getUnit()));
+    }
+    if (schedule) {
+      SwingUtilities.invokeLater(this::showLowStock);
+    }
+  }
+
+  private void showLowStock() {
+    String text;
+    synchronized (lowStock) {
+      text = String.join("\n", lowStock.values());
+      lowStock.clear();
+    }
+    JOptionPane.showMessageDialog(this, "Запас ниже минимума:\n" + text,
+        "Мало продуктов", JOptionPane.WARNING_MESSAGE);
+  }
+
+  private void addLazyTab(String title, Supplier<JPanel> factory) {
+    int index = tabbedPane.getTabCount();
+    tabbedPane.addTab(title, new JPanel());
+    tabbedPane.setEnabledAt(index, false);
+    pendingTabs.put(index, factory);
+  }
+
+  private void buildTab(int index) {
+    Supplier<JPanel> factory = pendingTabs.remove(index);
+    if (factory != null) {
+      tabbedPane.setComponentAt(index, factory.get());
+    }
+  }
+
+  /**
+   * Загружает данные в фоновом потоке.
+   * Недельное меню отображается сразу после загрузки его раздела; изменять его
+   * и открывать остальные вкладки можно после загрузки всех данных, пока загрузчик
+   * не заполняет репозиторий.
+   */
+  public void loadDataInBackground() {
+    new SwingWorker<Void, DataSection>() {
+      @Override
+      protected Void doInBackground() {
+        repository.autoLoad(this::publish);
+        return null;
+      }
+
+      @Override
+      protected void process(List<DataSection> sections) {
+        for (DataSection section : sections) {
+          StartupProfile.mark("loaded-" + section.name().toLowerCase());
+          if (section == DataSection.MENU) {
+            weeklyMenuPanel.refreshTable();
+            StartupProfile.mark("menu-usable");
+          }
+        }
+      }
+
+      @Override
+      protected void done() {
+        finishLoading();
+      }
+    }.execute();
+  }
+
+  private void finishLoading() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    repository.completeLoad();
+    weeklyMenuPanel.refreshTable();
+    weeklyMenuPanel.setInteractive(true);
+    for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+      tabbedPane.setEnabledAt(i, true);
+    }
+    setTitle(TITLE);
+    StartupProfile.mark("load-complete");
+    StartupProfile.finish();
   }
-}
\ No newline at end of file
+}
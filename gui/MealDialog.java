@@ -1,11 +1,18 @@
 package gui;
 
+import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.Frame;
 import java.util.List;
 import java.util.Map;
+import javax.swing.DefaultListModel;
 import javax.swing.JButton;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import planner.Dish;
 import planner.MenuController;
 import planner.ProductQuantity;
@@ -15,6 +22,8 @@ import planner.ProductQuantity;
  * Позволяет выбрать блюдо из избранного или создать новое блюдо.
  */
 public class MealDialog extends AbstractDishDialog {
+  private static final int SEARCH_LIMIT = 100;
+
   private final String day;
   private final String mealType;
   private final ProductManagementPanel productManagementPanel;
@@ -74,6 +83,10 @@ public class MealDialog extends AbstractDishDialog {
         }
         saved = true;
         dispose();
+      } else {
+        JOptionPane.showMessageDialog(this,
+            "Недостаточно продуктов для приготовления этого блюда",
+            "Ошибка", JOptionPane.ERROR_MESSAGE);
       }
     } catch (Exception ex) {
       JOptionPane.showMessageDialog(this,
@@ -89,14 +102,35 @@ public class MealDialog extends AbstractDishDialog {
       return;
     }
 
-    Dish selected = (Dish) JOptionPane.showInputDialog(
+    DefaultListModel<Dish> resultsModel = new DefaultListModel<>();
+    resultsModel.addAll(favorites);
+    JList<Dish> resultsList = new JList<>(resultsModel);
+    resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    resultsList.setSelectedIndex(0);
+
+    JTextField searchField = new JTextField(20);
+    searchField.getDocument().addDocumentListener(new DocumentChangeListener(() -> {
+      String query = searchField.getText().trim();
+      resultsModel.clear();
+      resultsModel.addAll(query.isEmpty()
+          ? favorites
+          : controller.searchDishes(query, SEARCH_LIMIT));
+      resultsList.setSelectedIndex(0);
+    }));
+
+    JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+    searchPanel.add(createLabeledField("Поиск:", searchField), BorderLayout.NORTH);
+    JScrollPane scrollPane = new JScrollPane(resultsList);
+    scrollPane.setPreferredSize(new Dimension(300, 200));
+    searchPanel.add(scrollPane, BorderLayout.CENTER);
+
+    int result = JOptionPane.showConfirmDialog(
         this,
+        searchPanel,
         "Выберите блюдо из избранного",
-        "Выбор блюда",
-        JOptionPane.PLAIN_MESSAGE,
-        null,
-        favorites.toArray(),
-        null);
+        JOptionPane.OK_CANCEL_OPTION,
+        JOptionPane.PLAIN_MESSAGE);
+    Dish selected = result == JOptionPane.OK_OPTION ? resultsList.getSelectedValue() : null;
 
     if (selected != null) {
       setDishData(selected);
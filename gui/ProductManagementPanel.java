@@ -1,12 +1,17 @@
 package gui;
 
 import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Frame;
 import java.awt.GridLayout;
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -17,11 +22,20 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
 import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
+import planner.ConsumptionStats;
+import planner.InventoryProjection;
+import planner.LotInventory;
 import planner.MenuController;
 import planner.NumberParser;
+import planner.PriceLedger;
 import planner.ProductQuantity;
 import planner.ProductUnit;
 
@@ -30,9 +44,15 @@ import planner.ProductUnit;
  * Теперь отображает продукты в исходных единицах измерения.
  */
 public class ProductManagementPanel extends JPanel {
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+  private static final int EXPIRY_WARNING_DAYS = 3;
+  private static final String ALL_UNITS = "Все";
+
   private MenuController controller;
-  private DefaultTableModel tableModel;
+  private ProductTableModel tableModel;
   private JTable productTable;
+  private TableRowSorter<ProductTableModel> sorter;
+  private JLabel inventoryValueLabel;
 
   /**
    * Создает панель управления продуктами с указанным контроллером.
@@ -48,44 +68,115 @@ public class ProductManagementPanel extends JPanel {
   }
 
   private void setupProductTable() {
-    String[] columns = { "Продукт", "Количество", "Единица измерения", "Редактировать", "Удалить" };
-    tableModel = new DefaultTableModel(columns, 0) {
-      @Override
-      public Class<?> getColumnClass(int column) {
-        if (column == 1) {
-          return Double.class;
-        }
-        if (column == 2) {
-          return String.class;
-        }
-        return String.class;
-      }
+    tableModel = new ProductTableModel();
+    productTable = new JTable(tableModel);
 
-      @Override
-      public boolean isCellEditable(int row, int column) {
-        return column == 3 || column == 4;
-      }
-    };
+    sorter = new TableRowSorter<>(tableModel);
+    sorter.setSortsOnUpdates(true);
+    sorter.setSortable(ProductTableModel.EDIT, false);
+    sorter.setSortable(ProductTableModel.REMOVE, false);
+    sorter.setSortKeys(List.of(new RowSorter.SortKey(ProductTableModel.NAME, SortOrder.ASCENDING)));
+    productTable.setRowSorter(sorter);
 
-    productTable = new JTable(tableModel);
+    productTable.getColumnModel().getColumn(ProductTableModel.EXPIRES).setCellRenderer(
+        new DefaultTableCellRenderer() {
+          @Override
+          protected void setValue(Object value) {
+            setText(value != null ? ((LocalDate) value).format(DATE_FORMAT) : "");
+          }
+        });
 
-    TableColumn editColumn = productTable.getColumnModel().getColumn(3);
+    TableColumn editColumn = productTable.getColumnModel().getColumn(ProductTableModel.EDIT);
     editColumn.setCellRenderer(new TableButtonHelper.ButtonRenderer("Редактировать"));
     editColumn.setCellEditor(new TableButtonHelper.ButtonEditor(
         new JCheckBox(), "Редактировать", this::handleEditProduct));
 
-    TableColumn deleteColumn = productTable.getColumnModel().getColumn(4);
+    TableColumn deleteColumn = productTable.getColumnModel().getColumn(ProductTableModel.REMOVE);
     deleteColumn.setCellRenderer(new TableButtonHelper.ButtonRenderer("Удалить"));
     deleteColumn.setCellEditor(new TableButtonHelper.ButtonEditor(
         new JCheckBox(), "Удалить", this::handleRemoveProduct));
 
-    add(new JScrollPane(productTable), BorderLayout.CENTER);
+    JPanel tablePanel = new JPanel(new BorderLayout());
+    tablePanel.add(createFilterPanel(), BorderLayout.NORTH);
+    tablePanel.add(new JScrollPane(productTable), BorderLayout.CENTER);
+    add(tablePanel, BorderLayout.CENTER);
+  }
+
+  /**
+   * Создает фильтры таблицы по названию, единице измерения, количеству в базовых
+   * единицах и сроку годности. Фильтры читают ключи строк модели без пересчёта.
+   */
+  private JPanel createFilterPanel() {
+    JTextField nameField = new JTextField(12);
+    JComboBox<Object> unitCombo = new JComboBox<>();
+    unitCombo.addItem(ALL_UNITS);
+    for (ProductUnit unit : ProductUnit.values()) {
+      unitCombo.addItem(unit);
+    }
+    JTextField maxAmountField = new JTextField(6);
+    maxAmountField.setToolTipText("Количество в граммах, миллилитрах или штуках");
+    JCheckBox expiringBox = new JCheckBox("Истекает за " + EXPIRY_WARNING_DAYS + " дн.");
+
+    Runnable apply = () -> {
+      String name = nameField.getText().trim().toLowerCase();
+      Object unit = unitCombo.getSelectedItem();
+      double maxAmount;
+      try {
+        String text = maxAmountField.getText().trim();
+        maxAmount = text.isEmpty() ? Double.POSITIVE_INFINITY : NumberParser.parse(text);
+      } catch (Exception ex) {
+        maxAmount = Double.POSITIVE_INFINITY;
+      }
+      LocalDate expiresBefore = expiringBox.isSelected()
+          ? LocalDate.now().plusDays(EXPIRY_WARNING_DAYS) : null;
+      sorter.setRowFilter(productFilter(name, unit instanceof ProductUnit
+          ? (ProductUnit) unit : null, maxAmount, expiresBefore));
+    };
+    nameField.getDocument().addDocumentListener(new DocumentChangeListener(apply));
+    maxAmountField.getDocument().addDocumentListener(new DocumentChangeListener(apply));
+    unitCombo.addActionListener(e -> apply.run());
+    expiringBox.addActionListener(e -> apply.run());
+
+    JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    filterPanel.add(new JLabel("Поиск:"));
+    filterPanel.add(nameField);
+    filterPanel.add(new JLabel("Ед.изм:"));
+    filterPanel.add(unitCombo);
+    filterPanel.add(new JLabel("Не больше:"));
+    filterPanel.add(maxAmountField);
+    filterPanel.add(expiringBox);
+    return filterPanel;
+  }
+
+  private RowFilter<ProductTableModel, Integer> productFilter(String name, ProductUnit unit,
+      double maxAmount, LocalDate expiresBefore) {
+    if (name.isEmpty() && unit == null && Double.isInfinite(maxAmount) && expiresBefore == null) {
+      return null;
+    }
+    return new RowFilter<ProductTableModel, Integer>() {
+      @Override
+      public boolean include(Entry<? extends ProductTableModel, ? extends Integer> entry) {
+        ProductTableModel model = entry.getModel();
+        int row = entry.getIdentifier();
+        if (unit != null && model.getQuantity(row).getUnit() != unit) {
+          return false;
+        }
+        if (model.getBaseAmount(row) > maxAmount) {
+          return false;
+        }
+        LocalDate expires = model.getExpires(row);
+        if (expiresBefore != null && (expires == null || expires.isAfter(expiresBefore))) {
+          return false;
+        }
+        return name.isEmpty() || model.getSearchKey(row).contains(name);
+      }
+    };
   }
 
   private void handleEditProduct() {
     int row = productTable.getSelectedRow();
     if (row >= 0) {
-      String product = (String) tableModel.getValueAt(row, 0);
+      String product = tableModel.getProduct(productTable.convertRowIndexToModel(row));
       ProductQuantity currentQuantity = controller.getAllProducts().get(product);
 
       EditProductDialog dialog = new EditProductDialog(
@@ -101,7 +192,7 @@ public class ProductManagementPanel extends JPanel {
   private void handleRemoveProduct() {
     int row = productTable.getSelectedRow();
     if (row >= 0) {
-      String product = (String) tableModel.getValueAt(row, 0);
+      String product = tableModel.getProduct(productTable.convertRowIndexToModel(row));
       int result = JOptionPane.showConfirmDialog(this,
           "Удалить продукт \"" + product + "\"?",
           "Подтверждение удаления",
@@ -115,9 +206,11 @@ public class ProductManagementPanel extends JPanel {
   }
 
   private void setupInputPanel() {
-    JPanel inputPanel = new JPanel(new GridLayout(1, 6));
+    JPanel inputPanel = new JPanel(new GridLayout(1, 9));
     JTextField productField = new JTextField();
     JTextField quantityField = new JTextField();
+    JTextField expiresField = new JTextField();
+    expiresField.setToolTipText("Срок годности в формате дд.мм.гггг, можно не указывать");
     JComboBox<ProductUnit> unitCombo = new JComboBox<>(ProductUnit.values());
 
     JButton addButton = new JButton("Добавить");
@@ -130,10 +223,21 @@ public class ProductManagementPanel extends JPanel {
         if (!validateProductInput(product, quantity)) {
           return;
         }
+        String expiresText = expiresField.getText().trim();
+        LocalDate expires;
+        try {
+          expires = expiresText.isEmpty() ? null : LocalDate.parse(expiresText, DATE_FORMAT);
+        } catch (DateTimeParseException ex) {
+          JOptionPane.showMessageDialog(this,
+              "Введите срок годности в формате дд.мм.гггг", "Ошибка",
+              JOptionPane.ERROR_MESSAGE);
+          return;
+        }
 
-        controller.addProduct(product, quantity, unit);
+        controller.addProduct(product, quantity, unit, expires);
         productField.setText("");
         quantityField.setText("");
+        expiresField.setText("");
         refreshTable();
       } catch (Exception ex) {
         JOptionPane.showMessageDialog(this,
@@ -147,6 +251,8 @@ public class ProductManagementPanel extends JPanel {
     inputPanel.add(quantityField);
     inputPanel.add(new JLabel("Ед.изм:"));
     inputPanel.add(unitCombo);
+    inputPanel.add(new JLabel("Годен до:"));
+    inputPanel.add(expiresField);
     inputPanel.add(addButton);
 
     add(inputPanel, BorderLayout.NORTH);
@@ -167,7 +273,7 @@ public class ProductManagementPanel extends JPanel {
   }
 
   private void setupActionButtons() {
-    JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    JPanel actionPanel = new JPanel(new GridLayout(0, 4, 5, 5));
 
     JButton exportButton = new JButton("Экспорт продуктов");
     exportButton.addActionListener(e -> {
@@ -187,6 +293,30 @@ public class ProductManagementPanel extends JPanel {
     });
     actionPanel.add(exportButton);
 
+    JButton expiringButton = new JButton("Истекает срок");
+    expiringButton.addActionListener(e -> showExpiringLots());
+    actionPanel.add(expiringButton);
+
+    JButton projectionButton = new JButton("Прогноз запаса");
+    projectionButton.addActionListener(e -> showShortages());
+    actionPanel.add(projectionButton);
+
+    JButton consumptionButton = new JButton("Расход продуктов");
+    consumptionButton.addActionListener(e -> showConsumptionReport());
+    actionPanel.add(consumptionButton);
+
+    JButton minimumButton = new JButton("Минимум");
+    minimumButton.addActionListener(e -> handleSetMinimum());
+    actionPanel.add(minimumButton);
+
+    JButton reorderButton = new JButton("Список закупок");
+    reorderButton.addActionListener(e -> showReorderList());
+    actionPanel.add(reorderButton);
+
+    JButton priceButton = new JButton("Задать цену");
+    priceButton.addActionListener(e -> handleSetPrice());
+    actionPanel.add(priceButton);
+
     JButton clearDataButton = new JButton("Очистить все данные");
     clearDataButton.addActionListener(e -> {
       int result = JOptionPane.showConfirmDialog(this,
@@ -196,33 +326,193 @@ public class ProductManagementPanel extends JPanel {
           JOptionPane.WARNING_MESSAGE);
 
       if (result == JOptionPane.YES_OPTION) {
-        File saveFile = new File("auto_save/menu_data.dat");
-        if (saveFile.exists()) {
-          if (saveFile.delete()) {
-            JOptionPane.showMessageDialog(this,
-                "Все данные очищены. Перезапустите приложение для применения изменений.",
-                "Данные очищены",
-                JOptionPane.INFORMATION_MESSAGE);
-          }
+        if (controller.clearSavedData()) {
+          JOptionPane.showMessageDialog(this,
+              "Все данные очищены. Перезапустите приложение для применения изменений.",
+              "Данные очищены",
+              JOptionPane.INFORMATION_MESSAGE);
         }
       }
     });
     actionPanel.add(clearDataButton);
 
-    add(actionPanel, BorderLayout.SOUTH);
+    inventoryValueLabel = new JLabel();
+    JPanel southPanel = new JPanel(new BorderLayout(5, 5));
+    southPanel.add(actionPanel, BorderLayout.CENTER);
+    southPanel.add(inventoryValueLabel, BorderLayout.SOUTH);
+    add(southPanel, BorderLayout.SOUTH);
   }
 
-  void refreshTable() {
-    tableModel.setRowCount(0);
-    for (Map.Entry<String, ProductQuantity> entry : controller.getAllProducts().entrySet()) {
-      ProductQuantity pq = entry.getValue();
-      tableModel.addRow(new Object[] {
-          entry.getKey(),
-          pq.getAmount(),
-          pq.getUnit().toString(),
-          "Редактировать",
-          "Удалить"
+  /**
+   * Показывает партии, срок годности которых истекает в ближайшие дни.
+   */
+  private void showExpiringLots() {
+    List<LotInventory.Lot> lots = controller.getExpiringLots(EXPIRY_WARNING_DAYS);
+    if (lots.isEmpty()) {
+      JOptionPane.showMessageDialog(this,
+          "Нет продуктов, срок годности которых истекает в ближайшие "
+              + EXPIRY_WARNING_DAYS + " дн.",
+          "Срок годности", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    StringBuilder text = new StringBuilder();
+    for (LotInventory.Lot lot : lots) {
+      ProductQuantity quantity = lot.getQuantity();
+      text.append(String.format("%s — %.2f %s, годен до %s%n", lot.getProduct(),
+          quantity.getAmount(), quantity.getUnit(), lot.getExpires().format(DATE_FORMAT)));
+    }
+    JOptionPane.showMessageDialog(this, text.toString(), "Срок годности истекает",
+        JOptionPane.WARNING_MESSAGE);
+  }
+
+  /**
+   * Показывает продукты, которых не хватит на запланированную неделю, и день нехватки.
+   */
+  private void showShortages() {
+    InventoryProjection projection = controller.getInventoryProjection();
+    Map<String, String> shortages = projection.getShortages();
+    if (shortages.isEmpty()) {
+      JOptionPane.showMessageDialog(this,
+          "Продуктов хватит на всю запланированную неделю",
+          "Прогноз запаса", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, String> entry : shortages.entrySet()) {
+      String product = entry.getKey();
+      text.append(String.format("%s — закончится: %s, на начало недели %.2f %s%n", product,
+          entry.getValue(), projection.getOpeningAmount(product), projection.getUnit(product)));
+    }
+    JOptionPane.showMessageDialog(this, text.toString(), "Нехватка продуктов",
+        JOptionPane.WARNING_MESSAGE);
+  }
+
+  /**
+   * Показывает расход продуктов в день и за неделю и дату, когда запас закончится.
+   */
+  private void showConsumptionReport() {
+    List<ConsumptionStats.Forecast> forecasts = controller.getConsumptionForecasts();
+    if (forecasts.isEmpty()) {
+      JOptionPane.showMessageDialog(this, "Списаний продуктов ещё не было",
+          "Расход продуктов", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    DefaultTableModel model = new DefaultTableModel(new Object[] {
+        "Продукт", "Запас", "В день",
+        "За " + ConsumptionStats.WINDOW_DAYS + " дн.", "Закончится"
+    }, 0) {
+      @Override
+      public boolean isCellEditable(int row, int column) {
+        return false;
+      }
+    };
+    for (ConsumptionStats.Forecast forecast : forecasts) {
+      String unit = " " + forecast.getUnit();
+      LocalDate depletion = forecast.getDepletionDate();
+      model.addRow(new Object[] {
+          forecast.getProduct(),
+          String.format("%.2f", forecast.getStock()) + unit,
+          String.format("%.2f", forecast.getDailyRate()) + unit,
+          String.format("%.2f", forecast.getWindowAmount()) + unit,
+          depletion != null ? depletion.format(DATE_FORMAT) : "—"
       });
     }
+    JScrollPane scrollPane = new JScrollPane(new JTable(model));
+    scrollPane.setPreferredSize(new Dimension(600, 300));
+    JOptionPane.showMessageDialog(this, scrollPane, "Расход продуктов",
+        JOptionPane.PLAIN_MESSAGE);
+  }
+
+  /**
+   * Запрашивает минимальный остаток выбранного продукта в единицах, в которых он хранится.
+   */
+  private void handleSetMinimum() {
+    int row = productTable.getSelectedRow();
+    if (row < 0) {
+      JOptionPane.showMessageDialog(this,
+          "Выберите продукт в таблице", "Ошибка", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    String product = tableModel.getProduct(productTable.convertRowIndexToModel(row));
+    ProductQuantity quantity = controller.getAllProducts().get(product);
+    ProductUnit unit = quantity != null ? quantity.getUnit() : ProductUnit.GRAMS;
+    ProductQuantity current = controller.getStockThresholds().getMinimum(product);
+    String input = (String) JOptionPane.showInputDialog(this,
+        "Минимальный остаток продукта \"" + product + "\", " + unit + ":",
+        "Минимальный остаток", JOptionPane.QUESTION_MESSAGE, null, null,
+        current != null ? String.format("%.2f", unit.convertFromBaseUnit(
+            current.getUnit().convertToBaseUnit(current.getAmount()))) : "");
+    if (input == null) {
+      return;
+    }
+    try {
+      controller.setMinimumStock(product, NumberParser.parse(input.trim()), unit);
+    } catch (Exception ex) {
+      JOptionPane.showMessageDialog(this,
+          "Введите количество больше нуля", "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  /**
+   * Показывает продукты ниже минимума и сколько нужно докупить до минимума.
+   */
+  private void showReorderList() {
+    Map<String, ProductQuantity> reorder = controller.getReorderList();
+    if (reorder.isEmpty()) {
+      JOptionPane.showMessageDialog(this, "Все продукты выше минимального остатка",
+          "Список закупок", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, ProductQuantity> entry : reorder.entrySet()) {
+      ProductQuantity quantity = entry.getValue();
+      text.append(String.format("%s — %.2f %s%n", entry.getKey(), quantity.getAmount(),
+          quantity.getUnit()));
+    }
+    JOptionPane.showMessageDialog(this, text.toString(), "Список закупок",
+        JOptionPane.INFORMATION_MESSAGE);
+  }
+
+  /**
+   * Запрашивает цену выбранного продукта за единицу, в которой он хранится.
+   */
+  private void handleSetPrice() {
+    int row = productTable.getSelectedRow();
+    if (row < 0) {
+      JOptionPane.showMessageDialog(this,
+          "Выберите продукт в таблице", "Ошибка", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    String product = tableModel.getProduct(productTable.convertRowIndexToModel(row));
+    ProductQuantity quantity = controller.getAllProducts().get(product);
+    ProductUnit unit = quantity != null ? quantity.getUnit() : ProductUnit.GRAMS;
+    Double current = controller.getPriceLedger().getPrice(product, unit);
+    String input = (String) JOptionPane.showInputDialog(this,
+        "Цена за 1 " + unit + " продукта \"" + product + "\":", "Цена продукта",
+        JOptionPane.QUESTION_MESSAGE, null, null,
+        current != null ? String.format("%.2f", current) : "");
+    if (input == null) {
+      return;
+    }
+    try {
+      controller.setProductPrice(product, NumberParser.parse(input.trim()), unit);
+      refreshTable();
+    } catch (Exception ex) {
+      JOptionPane.showMessageDialog(this,
+          "Введите корректную цену", "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  void refreshTable() {
+    LotInventory lots = controller.getProductInventoryService().getLotInventory();
+    tableModel.update(controller.getAllProducts(), lots::getNextExpiry);
+    updateInventoryValue();
+  }
+
+  private void updateInventoryValue() {
+    PriceLedger prices = controller.getPriceLedger();
+    int unpriced = prices.getUnpricedProductCount();
+    inventoryValueLabel.setText(String.format("Стоимость запаса: %.2f", prices.getInventoryValue())
+        + (unpriced > 0 ? " (без цены: " + unpriced + ")" : ""));
   }
 }
\ No newline at end of file
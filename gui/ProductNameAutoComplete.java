@@ -0,0 +1,119 @@
+package gui;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import planner.MenuController;
+
+/**
+ * Всплывающий список подсказок для поля ввода названия продукта.
+ * Подсказки берутся из общего словаря продуктов, включая близкие по написанию.
+ */
+public class ProductNameAutoComplete {
+  private static final int SUGGESTION_LIMIT = 8;
+
+  private final JTextField field;
+  private final MenuController controller;
+  private final DefaultListModel<String> suggestionsModel = new DefaultListModel<>();
+  private final JList<String> suggestionsList = new JList<>(suggestionsModel);
+  private final JPopupMenu popup = new JPopupMenu();
+  private String appliedText;
+
+  /**
+   * Подключает автодополнение к указанному полю.
+   */
+  public static ProductNameAutoComplete attach(JTextField field, MenuController controller) {
+    return new ProductNameAutoComplete(field, controller);
+  }
+
+  private ProductNameAutoComplete(JTextField field, MenuController controller) {
+    this.field = field;
+    this.controller = controller;
+
+    suggestionsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    suggestionsList.setFocusable(false);
+    popup.setFocusable(false);
+    popup.add(new JScrollPane(suggestionsList));
+
+    field.getDocument().addDocumentListener(new DocumentChangeListener(
+        () -> SwingUtilities.invokeLater(this::updateSuggestions)));
+    field.addKeyListener(new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent e) {
+        handleKey(e);
+      }
+    });
+    suggestionsList.addMouseListener(new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        applySelection();
+      }
+    });
+  }
+
+  private void updateSuggestions() {
+    String text = field.getText();
+    if (text.equals(appliedText) || !field.isShowing()) {
+      return;
+    }
+    List<String> suggestions = controller.suggestProductNames(text, SUGGESTION_LIMIT);
+    suggestions.removeIf(s -> s.equals(text.trim()));
+
+    suggestionsModel.clear();
+    if (suggestions.isEmpty()) {
+      popup.setVisible(false);
+      return;
+    }
+    suggestionsModel.addAll(suggestions);
+    suggestionsList.setVisibleRowCount(suggestions.size());
+    suggestionsList.setSelectedIndex(0);
+    popup.pack();
+    popup.show(field, 0, field.getHeight());
+  }
+
+  private void handleKey(KeyEvent e) {
+    if (!popup.isVisible()) {
+      return;
+    }
+    int index = suggestionsList.getSelectedIndex();
+    switch (e.getKeyCode()) {
+      case KeyEvent.VK_DOWN:
+        suggestionsList.setSelectedIndex(Math.min(index + 1, suggestionsModel.size() - 1));
+        e.consume();
+        break;
+      case KeyEvent.VK_UP:
+        suggestionsList.setSelectedIndex(Math.max(index - 1, 0));
+        e.consume();
+        break;
+      case KeyEvent.VK_ENTER:
+        applySelection();
+        e.consume();
+        break;
+      case KeyEvent.VK_ESCAPE:
+        popup.setVisible(false);
+        e.consume();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void applySelection() {
+    String selected = suggestionsList.getSelectedValue();
+    popup.setVisible(false);
+    if (selected != null) {
+      appliedText = selected;
+      field.setText(selected);
+    }
+    field.requestFocusInWindow();
+  }
+}
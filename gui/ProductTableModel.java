@@ -0,0 +1,248 @@
+package gui;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.swing.table.AbstractTableModel;
+import planner.ProductQuantity;
+import planner.ProductUnit;
+
+/**
+ * Модель таблицы продуктов с ключами сортировки, вычисленными при изменении строки:
+ * ключ сравнения названия и количество в базовых единицах, поэтому "1 кг" стоит
+ * после "900 гр". Обновление сообщает таблице только об изменённых строках.
+ */
+class ProductTableModel extends AbstractTableModel {
+  static final int NAME = 0;
+  static final int AMOUNT = 1;
+  static final int UNIT = 2;
+  static final int EXPIRES = 3;
+  static final int EDIT = 4;
+  static final int REMOVE = 5;
+
+  private static final String[] COLUMNS = {
+      "Продукт", "Количество", "Единица измерения", "Годен до", "Редактировать", "Удалить"
+  };
+  private static final Collator COLLATOR = Collator.getInstance(new Locale("ru", "RU"));
+
+  private final List<Row> rows = new ArrayList<>();
+  private final Map<String, Integer> indexes = new HashMap<>();
+
+  /**
+   * Название продукта с ключом сравнения по правилам русского алфавита.
+   */
+  static final class Name implements Comparable<Name> {
+    private final String text;
+    private final CollationKey key;
+
+    Name(String text) {
+      this.text = text;
+      this.key = COLLATOR.getCollationKey(text);
+    }
+
+    @Override
+    public int compareTo(Name other) {
+      return key.compareTo(other.key);
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /**
+   * Количество в исходных единицах, сравниваемое по количеству в базовых единицах.
+   */
+  static final class Amount implements Comparable<Amount> {
+    private final double amount;
+    private final double base;
+
+    Amount(ProductQuantity quantity) {
+      this.amount = quantity.getAmount();
+      this.base = quantity.getUnit().convertToBaseUnit(amount);
+    }
+
+    double getBase() {
+      return base;
+    }
+
+    @Override
+    public int compareTo(Amount other) {
+      return Double.compare(base, other.base);
+    }
+
+    @Override
+    public String toString() {
+      return amount == Math.rint(amount) ? String.valueOf((long) amount)
+          : String.format("%.2f", amount);
+    }
+  }
+
+  private static final class Row {
+    private final Name name;
+    private final String searchKey;
+    private final ProductQuantity quantity;
+    private final Amount amount;
+    private final LocalDate expires;
+
+    Row(String product, ProductQuantity quantity, LocalDate expires) {
+      this.name = new Name(product);
+      this.searchKey = product.toLowerCase();
+      this.quantity = quantity;
+      this.amount = new Amount(quantity);
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Приводит строки к текущему запасу: ключи пересчитываются только для изменившихся
+   * продуктов. Изменённые строки сообщаются по одной, новые — одним событием вставки;
+   * при удалении нескольких строк модель сообщает об изменении всех данных.
+   */
+  void update(Map<String, ProductQuantity> products, Function<String, LocalDate> expiry) {
+    List<Row> added = new ArrayList<>();
+    for (Map.Entry<String, ProductQuantity> entry : products.entrySet()) {
+      String product = entry.getKey();
+      ProductQuantity quantity = entry.getValue();
+      LocalDate expires = expiry.apply(product);
+      Integer index = indexes.get(product);
+      if (index == null) {
+        added.add(new Row(product, quantity, expires));
+      } else {
+        Row row = rows.get(index);
+        if (!row.quantity.equals(quantity) || !Objects.equals(row.expires, expires)) {
+          rows.set(index, new Row(product, quantity, expires));
+          fireTableRowsUpdated(index, index);
+        }
+      }
+    }
+    int removed = rows.size() + added.size() - products.size();
+    if (removed == 1) {
+      for (int index = rows.size() - 1; index >= 0; index--) {
+        if (!products.containsKey(rows.get(index).name.text)) {
+          removeRow(index);
+          break;
+        }
+      }
+    } else if (removed > 1) {
+      rows.removeIf(row -> !products.containsKey(row.name.text));
+      indexes.clear();
+      for (int index = 0; index < rows.size(); index++) {
+        indexes.put(rows.get(index).name.text, index);
+      }
+      fireTableDataChanged();
+    }
+    if (!added.isEmpty()) {
+      int first = rows.size();
+      for (Row row : added) {
+        indexes.put(row.name.text, rows.size());
+        rows.add(row);
+      }
+      fireTableRowsInserted(first, rows.size() - 1);
+    }
+  }
+
+  /**
+   * Удаляет строку, переставляя на её место последнюю, чтобы не сдвигать остальные.
+   */
+  private void removeRow(int index) {
+    int last = rows.size() - 1;
+    indexes.remove(rows.get(index).name.text);
+    if (index != last) {
+      Row moved = rows.get(last);
+      rows.set(index, moved);
+      indexes.put(moved.name.text, index);
+    }
+    rows.remove(last);
+    fireTableRowsDeleted(last, last);
+    if (index != last) {
+      fireTableRowsUpdated(index, index);
+    }
+  }
+
+  String getProduct(int row) {
+    return rows.get(row).name.text;
+  }
+
+  /**
+   * Название продукта в нижнем регистре для поиска по фрагменту.
+   */
+  String getSearchKey(int row) {
+    return rows.get(row).searchKey;
+  }
+
+  ProductQuantity getQuantity(int row) {
+    return rows.get(row).quantity;
+  }
+
+  double getBaseAmount(int row) {
+    return rows.get(row).amount.getBase();
+  }
+
+  LocalDate getExpires(int row) {
+    return rows.get(row).expires;
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMNS.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMNS[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    switch (column) {
+      case NAME:
+        return Name.class;
+      case AMOUNT:
+        return Amount.class;
+      case UNIT:
+        return ProductUnit.class;
+      case EXPIRES:
+        return LocalDate.class;
+      default:
+        return String.class;
+    }
+  }
+
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return column == EDIT || column == REMOVE;
+  }
+
+  @Override
+  public Object getValueAt(int rowIndex, int column) {
+    Row row = rows.get(rowIndex);
+    switch (column) {
+      case NAME:
+        return row.name;
+      case AMOUNT:
+        return row.amount;
+      case UNIT:
+        return row.quantity.getUnit();
+      case EXPIRES:
+        return row.expires;
+      case EDIT:
+        return "Редактировать";
+      default:
+        return "Удалить";
+    }
+  }
+}
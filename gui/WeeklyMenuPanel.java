@@ -4,12 +4,16 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.FlowLayout;
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -22,6 +26,10 @@ import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import planner.Dish;
 import planner.MenuController;
+import planner.Nutrients;
+import planner.NutritionTracker;
+import planner.PriceLedger;
+import planner.TemplateLibrary;
 
 /**
  * Панель для отображения и управления недельным меню.
@@ -34,6 +42,9 @@ public class WeeklyMenuPanel extends JPanel {
   private JTable menuTable;
   private JButton exportButton;
   private JButton clearDayButton;
+  private JButton copyDayButton;
+  private JButton templatesButton;
+  private JLabel nutritionLabel;
   private DefaultTableModel tableModel;
 
   /**
@@ -58,6 +69,9 @@ public class WeeklyMenuPanel extends JPanel {
     });
     exportButton = new JButton("Экспорт меню");
     clearDayButton = new JButton("Очистить день");
+    copyDayButton = new JButton("Копировать день");
+    templatesButton = new JButton("Шаблоны");
+    nutritionLabel = new JLabel();
   }
 
   private void setupDaySelector() {
@@ -114,15 +128,24 @@ public class WeeklyMenuPanel extends JPanel {
   }
 
   private void setupActionButtons() {
+    JPanel southPanel = new JPanel(new BorderLayout());
     JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
 
     clearDayButton.addActionListener(e -> clearCurrentDay());
     buttonPanel.add(clearDayButton);
 
+    copyDayButton.addActionListener(e -> copyCurrentDay());
+    buttonPanel.add(copyDayButton);
+
+    templatesButton.addActionListener(e -> showTemplateActions());
+    buttonPanel.add(templatesButton);
+
     exportButton.addActionListener(e -> exportMenu());
     buttonPanel.add(exportButton);
 
-    add(buttonPanel, BorderLayout.SOUTH);
+    southPanel.add(nutritionLabel, BorderLayout.CENTER);
+    southPanel.add(buttonPanel, BorderLayout.EAST);
+    add(southPanel, BorderLayout.SOUTH);
   }
 
   private void clearCurrentDay() {
@@ -137,13 +160,10 @@ public class WeeklyMenuPanel extends JPanel {
         JOptionPane.QUESTION_MESSAGE);
 
     if (result == JOptionPane.YES_OPTION) {
-      String[] mealTypes = { "Завтрак", "Обед", "Ужин" };
-      for (String mealType : mealTypes) {
-        controller.getMenuPlanningService().setMenuForDay(selectedDay, mealType, null);
-      }
+      controller.clearDayMenu(selectedDay);
 
       JOptionPane.showMessageDialog(this,
-          "Меню на " + selectedDay + " очищено",
+          "Меню на " + selectedDay + " очищено. Отменить очистку можно через Ctrl+Z",
           "Очистка завершена",
           JOptionPane.INFORMATION_MESSAGE);
 
@@ -151,6 +171,159 @@ public class WeeklyMenuPanel extends JPanel {
     }
   }
 
+  /**
+   * Копирует меню выбранного дня на другой день одним планом со списанием продуктов.
+   */
+  private void copyCurrentDay() {
+    String selectedDay = (String) dayComboBox.getSelectedItem();
+    if (selectedDay == null) {
+      return;
+    }
+    String[] days = new String[dayComboBox.getItemCount()];
+    for (int i = 0; i < days.length; i++) {
+      days[i] = dayComboBox.getItemAt(i);
+    }
+    String targetDay = (String) JOptionPane.showInputDialog(this,
+        "Скопировать меню на " + selectedDay + " на день:", "Копирование меню",
+        JOptionPane.QUESTION_MESSAGE, null, days, selectedDay);
+    if (targetDay == null || targetDay.equals(selectedDay)) {
+      return;
+    }
+    if (controller.copyRange(selectedDay, selectedDay, targetDay)) {
+      dayComboBox.setSelectedItem(targetDay);
+      updateMenuTable();
+      ProductManagementPanel productPanel = findProductManagementPanel();
+      if (productPanel != null) {
+        productPanel.refreshTable();
+      }
+    } else {
+      JOptionPane.showMessageDialog(this,
+          "Недостаточно продуктов, чтобы скопировать меню на " + targetDay,
+          "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  /**
+   * Предлагает сохранить неделю как шаблон, применить, экспортировать или импортировать шаблон.
+   */
+  private void showTemplateActions() {
+    String[] actions = {"Сохранить неделю", "Применить", "Экспорт", "Импорт"};
+    int choice = JOptionPane.showOptionDialog(this, "Шаблоны недельного меню",
+        "Шаблоны", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null,
+        actions, actions[0]);
+    switch (choice) {
+      case 0:
+        saveTemplate();
+        break;
+      case 1:
+        applyTemplate();
+        break;
+      case 2:
+        exportTemplate();
+        break;
+      case 3:
+        importTemplates();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void saveTemplate() {
+    String name = JOptionPane.showInputDialog(this, "Название шаблона:",
+        "Сохранение шаблона", JOptionPane.QUESTION_MESSAGE);
+    if (name == null || name.trim().isEmpty()) {
+      return;
+    }
+    controller.saveTemplate(name.trim());
+    JOptionPane.showMessageDialog(this, "Неделя сохранена как шаблон \"" + name.trim() + "\"",
+        "Шаблон сохранён", JOptionPane.INFORMATION_MESSAGE);
+  }
+
+  /**
+   * Показывает отличия шаблона от текущего меню и применяет его после подтверждения.
+   */
+  private void applyTemplate() {
+    String name = chooseTemplate("Применить шаблон:");
+    if (name == null) {
+      return;
+    }
+    List<TemplateLibrary.SlotDiff> diff = controller.diffTemplate(name);
+    if (diff.isEmpty()) {
+      JOptionPane.showMessageDialog(this, "Меню уже совпадает с шаблоном",
+          "Применение шаблона", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    StringBuilder message = new StringBuilder("Изменится приёмов пищи: " + diff.size() + "\n");
+    for (TemplateLibrary.SlotDiff change : diff) {
+      message.append('\n').append(change);
+    }
+    int result = JOptionPane.showConfirmDialog(this, message.toString(),
+        "Применение шаблона", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+    if (result != JOptionPane.YES_OPTION) {
+      return;
+    }
+    if (controller.applyTemplate(name)) {
+      updateMenuTable();
+      ProductManagementPanel productPanel = findProductManagementPanel();
+      if (productPanel != null) {
+        productPanel.refreshTable();
+      }
+    } else {
+      JOptionPane.showMessageDialog(this,
+          "Недостаточно продуктов, чтобы применить шаблон \"" + name + "\"",
+          "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  private void exportTemplate() {
+    String name = chooseTemplate("Экспортировать шаблон:");
+    if (name == null) {
+      return;
+    }
+    String filename = "exports/" + name.replaceAll("[^\\p{L}\\p{N}_-]", "_")
+        + TemplateLibrary.FILE_EXTENSION;
+    try {
+      new File("exports").mkdirs();
+      controller.getTemplateLibrary().exportTemplate(name, new File(filename));
+      JOptionPane.showMessageDialog(this,
+          "Шаблон успешно экспортирован в файл:\n" + filename,
+          "Экспорт завершен", JOptionPane.INFORMATION_MESSAGE);
+    } catch (IOException ex) {
+      JOptionPane.showMessageDialog(this,
+          "Ошибка при экспорте шаблона: " + ex.getMessage(),
+          "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  private void importTemplates() {
+    JFileChooser chooser = new JFileChooser(new File("exports"));
+    if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+      return;
+    }
+    try {
+      List<String> names = controller.getTemplateLibrary()
+          .importTemplates(chooser.getSelectedFile());
+      JOptionPane.showMessageDialog(this, "Загружены шаблоны: " + String.join(", ", names),
+          "Импорт завершен", JOptionPane.INFORMATION_MESSAGE);
+    } catch (IOException ex) {
+      JOptionPane.showMessageDialog(this,
+          "Ошибка при импорте шаблона: " + ex.getMessage(),
+          "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  private String chooseTemplate(String prompt) {
+    List<String> names = controller.getTemplateLibrary().getNames();
+    if (names.isEmpty()) {
+      JOptionPane.showMessageDialog(this, "Сохранённых шаблонов нет",
+          "Шаблоны", JOptionPane.INFORMATION_MESSAGE);
+      return null;
+    }
+    return (String) JOptionPane.showInputDialog(this, prompt, "Шаблоны",
+        JOptionPane.QUESTION_MESSAGE, null, names.toArray(), names.get(0));
+  }
+
   private void updateMenuTable() {
     String selectedDay = (String) dayComboBox.getSelectedItem();
 
@@ -166,6 +339,7 @@ public class WeeklyMenuPanel extends JPanel {
       tableModel.setValueAt(description, row, 2);
       tableModel.setValueAt(buttonText, row, 3);
     }
+    updateNutritionLabel(selectedDay);
 
     tableModel.fireTableDataChanged();
     menuTable.repaint();
@@ -176,6 +350,25 @@ public class WeeklyMenuPanel extends JPanel {
     });
   }
 
+  /**
+   * Показывает итоги пищевой ценности и стоимости дня и недели, которые ведут
+   * {@link NutritionTracker} и {@link PriceLedger}.
+   */
+  private void updateNutritionLabel(String day) {
+    NutritionTracker nutrition = controller.getNutritionTracker();
+    Nutrients dayTotal = nutrition.getDay(day);
+    Nutrients weekTotal = nutrition.getWeek();
+    String incomplete = dayTotal.isComplete() && weekTotal.isComplete()
+        ? "" : " (нет данных для части продуктов)";
+    PriceLedger prices = controller.getPriceLedger();
+    PriceLedger.Cost dayCost = prices.getDayCost(day);
+    PriceLedger.Cost weekCost = prices.getWeekCost();
+    String unpriced = dayCost.isComplete() && weekCost.isComplete() ? "" : " (цены заданы не все)";
+    nutritionLabel.setText("<html>За день: " + dayTotal + "; за неделю: "
+        + String.format("%.0f ккал", weekTotal.getCalories()) + incomplete
+        + "<br>Стоимость дня: " + dayCost + ", недели: " + weekCost + unpriced + "</html>");
+  }
+
   private void exportMenu() {
     String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
     String filename = "exports/menu_export_" + timestamp + ".txt";
@@ -233,4 +426,16 @@ public class WeeklyMenuPanel extends JPanel {
   public void refreshTable() {
     updateMenuTable();
   }
+
+  /**
+   * Включает или отключает изменение меню, например на время загрузки данных.
+   * Просмотр дней остаётся доступным.
+   */
+  public void setInteractive(boolean interactive) {
+    menuTable.setEnabled(interactive);
+    clearDayButton.setEnabled(interactive);
+    copyDayButton.setEnabled(interactive);
+    exportButton.setEnabled(interactive);
+    templatesButton.setEnabled(interactive);
+  }
 }
\ No newline at end of file
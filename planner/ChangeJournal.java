@@ -0,0 +1,658 @@
+package planner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Журнал изменений запаса продуктов и меню для просмотра прошлых состояний.
+ * Каждое изменение хранится компактной записью (время, ключ, значение) в массивах
+ * примитивов. Через интервал, не меньший размера состояния, добавляется ключевой
+ * кадр с полным состоянием, поэтому объём журнала растёт с числом изменений,
+ * а восстановление любого момента проигрывает не больше одного интервала записей.
+ *
+ * <p>Журнал хранится сегментами: каждый ключевой кадр со своими записями —
+ * отдельный сегмент, и записанные ранее интервалы больше не перезаписываются.
+ */
+public class ChangeJournal implements RepositoryListener, SegmentHandler {
+  public static final String SEGMENT = "history";
+  static final int MIN_KEYFRAME_INTERVAL = 256;
+
+  private static final String[] DAYS = MenuRepository.DAYS;
+  private static final String[] MEAL_TYPES = MenuRepository.MEAL_TYPES;
+  private static final int SLOTS = MenuRepository.SLOT_COUNT;
+  private static final byte REMOVED = -1;
+  private static final int EMPTY = -1;
+
+  private final MenuRepository repository;
+  private final List<String> productNames = new ArrayList<>();
+  private final Map<String, Integer> productIds = new HashMap<>();
+  private final List<String> dishNames = new ArrayList<>();
+  private final Map<String, Integer> dishIds = new HashMap<>();
+
+  private long[] times = new long[1024];
+  private int[] keys = new int[1024];
+  private long[] values = new long[1024];
+  private byte[] units = new byte[1024];
+  private int size;
+
+  private final List<Keyframe> keyframes = new ArrayList<>();
+  private final Map<Integer, Positions> productIndex = new HashMap<>();
+  private final Map<Integer, Positions> dishIndex = new HashMap<>();
+  private final Map<Integer, ProductQuantity> currentProducts = new HashMap<>();
+  private final int[] currentSlots = new int[SLOTS];
+  private int savedChunks;
+  private boolean ready;
+
+  /**
+   * Создает журнал и подключает его к репозиторию. Изменения записываются
+   * после загрузки данных; расхождения с сохранённым журналом записываются
+   * как изменения в момент загрузки.
+   */
+  public ChangeJournal(MenuRepository repository) {
+    this.repository = repository;
+    reset();
+    repository.registerSegment(SEGMENT, this);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      if (reconcile()) {
+        repository.autoSave();
+      }
+    }
+  }
+
+  /**
+   * Состояние запаса и меню на момент времени.
+   */
+  public static final class HistoryState {
+    private final long time;
+    private final Map<String, ProductQuantity> products;
+    private final Map<String, Map<String, String>> menu;
+
+    HistoryState(long time, Map<String, ProductQuantity> products,
+        Map<String, Map<String, String>> menu) {
+      this.time = time;
+      this.products = Collections.unmodifiableMap(products);
+      this.menu = Collections.unmodifiableMap(menu);
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public Map<String, ProductQuantity> getProducts() {
+      return products;
+    }
+
+    /**
+     * Возвращает названия блюд по дням и приёмам пищи.
+     */
+    public Map<String, Map<String, String>> getMenu() {
+      return menu;
+    }
+  }
+
+  /**
+   * Изменение количества продукта; {@code null} означает, что продукт закончился или удалён.
+   */
+  public static final class ProductRecord {
+    private final long time;
+    private final ProductQuantity quantity;
+
+    ProductRecord(long time, ProductQuantity quantity) {
+      this.time = time;
+      this.quantity = quantity;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public ProductQuantity getQuantity() {
+      return quantity;
+    }
+  }
+
+  /**
+   * Блюдо, поставленное в меню.
+   */
+  public static final class MealRecord {
+    private final long time;
+    private final String day;
+    private final String mealType;
+    private final String dish;
+
+    MealRecord(long time, String day, String mealType, String dish) {
+      this.time = time;
+      this.day = day;
+      this.mealType = mealType;
+      this.dish = dish;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public String getDay() {
+      return day;
+    }
+
+    public String getMealType() {
+      return mealType;
+    }
+
+    public String getDish() {
+      return dish;
+    }
+  }
+
+  @Override
+  public synchronized void productChanged(String product, ProductQuantity before,
+      ProductQuantity after) {
+    if (ready) {
+      appendProduct(productId(product), after);
+    }
+  }
+
+  @Override
+  public synchronized void slotChanged(String day, String mealType, Dish before, Dish after) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (ready && slot >= 0) {
+      appendSlot(slot, after != null ? dishId(after.getName()) : EMPTY);
+    }
+  }
+
+  @Override
+  public void dataLoaded() {
+    reconcile();
+  }
+
+  /**
+   * Возвращает состояние запаса и меню на указанный момент (миллисекунды эпохи).
+   * Для момента до начала журнала возвращается начальное состояние журнала.
+   */
+  public synchronized HistoryState stateAt(long time) {
+    int position = lastPositionAtOrBefore(time);
+    Keyframe keyframe = keyframeFor(position);
+    Map<Integer, ProductQuantity> products = new HashMap<>();
+    for (int i = 0; i < keyframe.products.length; i++) {
+      products.put(keyframe.products[i],
+          new ProductQuantity(keyframe.amounts[i], ProductUnit.ofOrdinal(keyframe.units[i])));
+    }
+    int[] slots = keyframe.slots.clone();
+    for (int i = keyframe.position + 1; i <= position; i++) {
+      if (keys[i] >= 0) {
+        ProductQuantity quantity = decode(i);
+        if (quantity == null) {
+          products.remove(keys[i]);
+        } else {
+          products.put(keys[i], quantity);
+        }
+      } else {
+        slots[-keys[i] - 1] = (int) values[i];
+      }
+    }
+
+    Map<String, ProductQuantity> namedProducts = new HashMap<>();
+    for (Map.Entry<Integer, ProductQuantity> entry : products.entrySet()) {
+      namedProducts.put(productNames.get(entry.getKey()), entry.getValue());
+    }
+    Map<String, Map<String, String>> menu = new HashMap<>();
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Map<String, String> dayMenu = menu.computeIfAbsent(DAYS[slot / MEAL_TYPES.length],
+          k -> new HashMap<>());
+      dayMenu.put(MEAL_TYPES[slot % MEAL_TYPES.length],
+          slots[slot] != EMPTY ? dishNames.get(slots[slot]) : null);
+    }
+    return new HistoryState(time, namedProducts, menu);
+  }
+
+  /**
+   * Возвращает количество продукта на указанный момент или {@code null}, если его не было.
+   */
+  public synchronized ProductQuantity productAt(String product, long time) {
+    Integer id = productIds.get(ProductDictionary.getInstance().findName(product));
+    if (id == null) {
+      return null;
+    }
+    int position = lastPositionAtOrBefore(time);
+    Positions positions = productIndex.get(id);
+    int found = positions != null ? positions.lastAtOrBefore(position) : -1;
+    if (found >= 0) {
+      return decode(found);
+    }
+    Keyframe first = keyframes.get(0);
+    int index = Arrays.binarySearch(first.products, id);
+    return index >= 0
+        ? new ProductQuantity(first.amounts[index], ProductUnit.ofOrdinal(first.units[index]))
+        : null;
+  }
+
+  /**
+   * Возвращает изменения продукта за период, включая границы.
+   */
+  public synchronized List<ProductRecord> productHistory(String product, long from, long to) {
+    List<ProductRecord> result = new ArrayList<>();
+    Integer id = productIds.get(ProductDictionary.getInstance().findName(product));
+    Positions positions = id != null ? productIndex.get(id) : null;
+    if (positions == null) {
+      return result;
+    }
+    for (int i = 0; i < positions.size; i++) {
+      int position = positions.data[i];
+      if (times[position] >= from && times[position] <= to) {
+        result.add(new ProductRecord(times[position], decode(position)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Возвращает, когда и в какие приёмы пищи ставилось блюдо за период.
+   */
+  public synchronized List<MealRecord> dishHistory(String dish, long from, long to) {
+    List<MealRecord> result = new ArrayList<>();
+    Integer id = dishIds.get(dish);
+    Positions positions = id != null ? dishIndex.get(id) : null;
+    if (positions == null) {
+      return result;
+    }
+    for (int i = 0; i < positions.size; i++) {
+      int position = positions.data[i];
+      if (times[position] >= from && times[position] <= to) {
+        result.add(mealRecord(position));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Возвращает все блюда, поставленные в меню за период.
+   */
+  public synchronized List<MealRecord> mealsBetween(long from, long to) {
+    List<MealRecord> result = new ArrayList<>();
+    for (int i = lastPositionAtOrBefore(from - 1) + 1; i < size && times[i] <= to; i++) {
+      if (keys[i] < 0 && values[i] != EMPTY) {
+        result.add(mealRecord(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Количество записанных изменений.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized int getKeyframeCount() {
+    return keyframes.size();
+  }
+
+  /**
+   * Оценивает объём данных журнала в памяти в байтах без учёта названий.
+   */
+  public synchronized long estimatedBytes() {
+    long bytes = (long) size * (Long.BYTES + Integer.BYTES + Long.BYTES + Byte.BYTES);
+    for (Keyframe keyframe : keyframes) {
+      bytes += keyframe.products.length * (Integer.BYTES + Double.BYTES + Byte.BYTES)
+          + SLOTS * Integer.BYTES;
+    }
+    return bytes;
+  }
+
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (!(data instanceof Manifest)) {
+      return;
+    }
+    Manifest manifest = (Manifest) data;
+    reset();
+    keyframes.clear();
+    for (String name : manifest.productNames) {
+      productId(name);
+    }
+    for (String name : manifest.dishNames) {
+      dishId(name);
+    }
+
+    int loaded = 0;
+    for (int k = 0; k < manifest.chunks; k++) {
+      Object chunk = store.readOrBackup(SEGMENT + "-" + k);
+      if (!(chunk instanceof Chunk) || ((Chunk) chunk).keyframe.position != size - 1) {
+        System.err.println("История изменений прочитана не полностью: интервал " + k);
+        repository.markSegmentDirty(SEGMENT);
+        break;
+      }
+      appendChunk((Chunk) chunk);
+      loaded++;
+    }
+    if (loaded == 0) {
+      reset();
+      return;
+    }
+    savedChunks = loaded - 1;
+    restoreCurrentState();
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    long bytes = 0;
+    int last = keyframes.size() - 1;
+    for (int k = savedChunks; k <= last; k++) {
+      bytes += store.write(SEGMENT + "-" + k, chunk(k));
+    }
+    savedChunks = last;
+    bytes += store.write(SEGMENT, new Manifest(productNames, dishNames, keyframes.size()));
+    return bytes;
+  }
+
+  /**
+   * Записывает отличия текущих данных репозитория от последнего состояния журнала
+   * и начинает запись изменений. Возвращает {@code true}, если отличия были.
+   */
+  private synchronized boolean reconcile() {
+    int before = size;
+    Map<String, ProductQuantity> products = repository.getProducts();
+    for (Map.Entry<String, ProductQuantity> entry : products.entrySet()) {
+      appendProduct(productId(entry.getKey()), entry.getValue());
+    }
+    for (Integer id : new ArrayList<>(currentProducts.keySet())) {
+      if (!products.containsKey(productNames.get(id))) {
+        appendProduct(id, null);
+      }
+    }
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Dish dish = repository.getMenuForDay(DAYS[slot / MEAL_TYPES.length],
+          MEAL_TYPES[slot % MEAL_TYPES.length]);
+      appendSlot(slot, dish != null ? dishId(dish.getName()) : EMPTY);
+    }
+    ready = true;
+    return size != before;
+  }
+
+  private void appendProduct(int id, ProductQuantity quantity) {
+    if (Objects.equals(currentProducts.get(id), quantity)) {
+      return;
+    }
+    if (quantity == null) {
+      append(id, 0, REMOVED);
+      currentProducts.remove(id);
+    } else {
+      append(id, Double.doubleToLongBits(quantity.getAmount()),
+          (byte) quantity.getUnit().ordinal());
+      currentProducts.put(id, quantity);
+    }
+    productIndex.computeIfAbsent(id, k -> new Positions()).add(size - 1);
+    afterAppend();
+  }
+
+  private void appendSlot(int slot, int dishId) {
+    if (currentSlots[slot] == dishId) {
+      return;
+    }
+    append(-slot - 1, dishId, (byte) 0);
+    currentSlots[slot] = dishId;
+    if (dishId != EMPTY) {
+      dishIndex.computeIfAbsent(dishId, k -> new Positions()).add(size - 1);
+    }
+    afterAppend();
+  }
+
+  private void append(int key, long value, byte unit) {
+    if (size == times.length) {
+      int capacity = size * 2;
+      times = Arrays.copyOf(times, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      units = Arrays.copyOf(units, capacity);
+    }
+    long now = System.currentTimeMillis();
+    times[size] = size > 0 ? Math.max(now, times[size - 1]) : now;
+    keys[size] = key;
+    values[size] = value;
+    units[size] = unit;
+    size++;
+  }
+
+  /**
+   * Добавляет ключевой кадр, когда записей после предыдущего кадра не меньше размера состояния.
+   */
+  private void afterAppend() {
+    Keyframe last = keyframes.get(keyframes.size() - 1);
+    int interval = Math.max(MIN_KEYFRAME_INTERVAL, currentProducts.size() + SLOTS);
+    if (size - 1 - last.position >= interval) {
+      keyframes.add(snapshot(size - 1, times[size - 1]));
+    }
+    repository.markSegmentDirty(SEGMENT);
+  }
+
+  private Keyframe snapshot(int position, long time) {
+    int[] ids = new int[currentProducts.size()];
+    int count = 0;
+    for (Integer id : currentProducts.keySet()) {
+      ids[count++] = id;
+    }
+    Arrays.sort(ids);
+    double[] amounts = new double[ids.length];
+    byte[] productUnits = new byte[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      ProductQuantity quantity = currentProducts.get(ids[i]);
+      amounts[i] = quantity.getAmount();
+      productUnits[i] = (byte) quantity.getUnit().ordinal();
+    }
+    return new Keyframe(position, time, ids, amounts, productUnits, currentSlots.clone());
+  }
+
+  private ProductQuantity decode(int position) {
+    if (units[position] == REMOVED) {
+      return null;
+    }
+    return new ProductQuantity(Double.longBitsToDouble(values[position]),
+        ProductUnit.ofOrdinal(units[position]));
+  }
+
+  private MealRecord mealRecord(int position) {
+    int slot = -keys[position] - 1;
+    return new MealRecord(times[position], DAYS[slot / MEAL_TYPES.length],
+        MEAL_TYPES[slot % MEAL_TYPES.length], dishNames.get((int) values[position]));
+  }
+
+  /**
+   * Возвращает индекс последней записи не позже момента или -1.
+   */
+  private int lastPositionAtOrBefore(long time) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (times[middle] <= time) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high;
+  }
+
+  private Keyframe keyframeFor(int position) {
+    int low = 0;
+    int high = keyframes.size() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (keyframes.get(middle).position <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return keyframes.get(low);
+  }
+
+  private Chunk chunk(int index) {
+    Keyframe keyframe = keyframes.get(index);
+    int from = keyframe.position + 1;
+    int to = index + 1 < keyframes.size() ? keyframes.get(index + 1).position + 1 : size;
+    return new Chunk(keyframe, Arrays.copyOfRange(times, from, to),
+        Arrays.copyOfRange(keys, from, to), Arrays.copyOfRange(values, from, to),
+        Arrays.copyOfRange(units, from, to));
+  }
+
+  private void appendChunk(Chunk chunk) {
+    keyframes.add(chunk.keyframe);
+    for (int i = 0; i < chunk.times.length; i++) {
+      append(chunk.keys[i], chunk.values[i], chunk.units[i]);
+      times[size - 1] = chunk.times[i];
+      if (chunk.keys[i] >= 0) {
+        productIndex.computeIfAbsent(chunk.keys[i], k -> new Positions()).add(size - 1);
+      } else if (chunk.values[i] != EMPTY) {
+        dishIndex.computeIfAbsent((int) chunk.values[i], k -> new Positions()).add(size - 1);
+      }
+    }
+  }
+
+  private void restoreCurrentState() {
+    Keyframe keyframe = keyframes.get(keyframes.size() - 1);
+    currentProducts.clear();
+    for (int i = 0; i < keyframe.products.length; i++) {
+      currentProducts.put(keyframe.products[i],
+          new ProductQuantity(keyframe.amounts[i], ProductUnit.ofOrdinal(keyframe.units[i])));
+    }
+    System.arraycopy(keyframe.slots, 0, currentSlots, 0, SLOTS);
+    for (int i = keyframe.position + 1; i < size; i++) {
+      if (keys[i] >= 0) {
+        ProductQuantity quantity = decode(i);
+        if (quantity == null) {
+          currentProducts.remove(keys[i]);
+        } else {
+          currentProducts.put(keys[i], quantity);
+        }
+      } else {
+        currentSlots[-keys[i] - 1] = (int) values[i];
+      }
+    }
+  }
+
+  private void reset() {
+    productNames.clear();
+    productIds.clear();
+    dishNames.clear();
+    dishIds.clear();
+    size = 0;
+    keyframes.clear();
+    productIndex.clear();
+    dishIndex.clear();
+    currentProducts.clear();
+    Arrays.fill(currentSlots, EMPTY);
+    keyframes.add(snapshot(-1, 0));
+    savedChunks = 0;
+  }
+
+  private int productId(String name) {
+    return productIds.computeIfAbsent(name, k -> {
+      productNames.add(k);
+      return productNames.size() - 1;
+    });
+  }
+
+  private int dishId(String name) {
+    return dishIds.computeIfAbsent(name, k -> {
+      dishNames.add(k);
+      return dishNames.size() - 1;
+    });
+  }
+
+  /**
+   * Позиции записей одного ключа по возрастанию.
+   */
+  private static final class Positions {
+    private int[] data = new int[4];
+    private int size;
+
+    private void add(int position) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = position;
+    }
+
+    private int lastAtOrBefore(int position) {
+      int index = Arrays.binarySearch(data, 0, size, position);
+      if (index >= 0) {
+        return data[index];
+      }
+      int insertion = -index - 1;
+      return insertion > 0 ? data[insertion - 1] : -1;
+    }
+  }
+
+  /**
+   * Полное состояние после записи с номером {@code position}.
+   */
+  private static final class Keyframe implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+    private final long time;
+    private final int[] products;
+    private final double[] amounts;
+    private final byte[] units;
+    private final int[] slots;
+
+    Keyframe(int position, long time, int[] products, double[] amounts, byte[] units,
+        int[] slots) {
+      this.position = position;
+      this.time = time;
+      this.products = products;
+      this.amounts = amounts;
+      this.units = units;
+      this.slots = slots;
+    }
+  }
+
+  /**
+   * Сегмент журнала: ключевой кадр и записи до следующего кадра.
+   */
+  private static final class Chunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Keyframe keyframe;
+    private final long[] times;
+    private final int[] keys;
+    private final long[] values;
+    private final byte[] units;
+
+    Chunk(Keyframe keyframe, long[] times, int[] keys, long[] values, byte[] units) {
+      this.keyframe = keyframe;
+      this.times = times;
+      this.keys = keys;
+      this.values = values;
+      this.units = units;
+    }
+  }
+
+  /**
+   * Оглавление журнала: таблицы названий и число сегментов.
+   */
+  private static final class Manifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> productNames;
+    private final ArrayList<String> dishNames;
+    private final int chunks;
+
+    Manifest(List<String> productNames, List<String> dishNames, int chunks) {
+      this.productNames = new ArrayList<>(productNames);
+      this.dishNames = new ArrayList<>(dishNames);
+      this.chunks = chunks;
+    }
+  }
+}
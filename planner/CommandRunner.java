@@ -0,0 +1,281 @@
+package planner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выполняет команды над данными планировщика без графического интерфейса:
+ * из аргументов командной строки или из сценария, по одной команде в строке.
+ * Результаты печатаются в {@code out}; пустые строки и строки с "#" пропускаются,
+ * аргументы с пробелами заключаются в двойные кавычки. Выполнение останавливается
+ * на первой ошибке.
+ */
+public class CommandRunner {
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+  private static final String USAGE = String.join(System.lineSeparator(),
+      "Команды:",
+      "  products                                 — запас продуктов",
+      "  add-product <продукт> <кол-во> [ед.] [годен до дд.мм.гггг]",
+      "  remove-product <продукт>",
+      "  menu [день]                              — меню недели или дня",
+      "  add-meal <день> <приём пищи> <блюдо>     — блюдо из каталога со списанием",
+      "  remove-meal <день> <приём пищи>          — с возвратом продуктов",
+      "  clear-day <день>",
+      "  save-template <название>",
+      "  apply-template <название>",
+      "  export-template <название> <файл>",
+      "  import-template <файл>",
+      "  export-menu <файл>",
+      "  export-products <файл>",
+      "  shortages                                — прогноз нехватки по дням",
+      "  reorder                                  — список закупок до минимума",
+      "  forecast                                 — расход и дата окончания запаса",
+      "  diagnostics                              — сводка производительности",
+      "  help");
+
+  private final MenuController controller;
+  private final PrintStream out;
+
+  public CommandRunner(MenuController controller, PrintStream out) {
+    this.controller = controller;
+    this.out = out;
+  }
+
+  /**
+   * Выполняет команды сценария. Возвращает {@code false}, если команда завершилась ошибкой.
+   */
+  public boolean run(BufferedReader script) throws IOException {
+    String line;
+    int number = 0;
+    while ((line = script.readLine()) != null) {
+      number++;
+      if (!execute(number, line)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Выполняет команды, каждая из которых — отдельная строка.
+   * Возвращает {@code false}, если команда завершилась ошибкой.
+   */
+  public boolean run(List<String> commands) {
+    for (int i = 0; i < commands.size(); i++) {
+      if (!execute(i + 1, commands.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean execute(int number, String line) {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+      return true;
+    }
+    try {
+      execute(split(trimmed));
+      out.flush();
+      return true;
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeParseException
+        | IOException | ParseException e) {
+      out.flush();
+      System.err.println("Ошибка в команде " + number + " (" + trimmed + "): " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Выполняет одну команду, разобранную на слова.
+   */
+  public void execute(List<String> words) throws IOException, ParseException {
+    String command = words.get(0);
+    List<String> args = words.subList(1, words.size());
+    switch (command) {
+      case "products":
+        expect(args, 0, 0);
+        for (Map.Entry<String, ProductQuantity> entry : controller.getAllProducts().entrySet()) {
+          out.println(entry.getKey() + "\t" + entry.getValue());
+        }
+        break;
+      case "add-product":
+        expect(args, 2, 4);
+        ProductUnit unit = args.size() > 2
+            ? ProductUnit.fromString(args.get(2)) : ProductUnit.GRAMS;
+        LocalDate expires = args.size() > 3 ? LocalDate.parse(args.get(3), DATE_FORMAT) : null;
+        controller.addProduct(args.get(0), NumberParser.parse(args.get(1)), unit, expires);
+        out.println("Добавлено: " + args.get(0));
+        break;
+      case "remove-product":
+        expect(args, 1, 1);
+        controller.removeProduct(args.get(0));
+        out.println("Удалено: " + args.get(0));
+        break;
+      case "menu":
+        expect(args, 0, 1);
+        for (String day : args.isEmpty() ? MenuRepository.DAYS : new String[] {day(args, 0)}) {
+          out.println(day + ":");
+          for (String mealType : MenuRepository.MEAL_TYPES) {
+            Dish dish = controller.getMenuForDay(day, mealType);
+            out.println("  " + mealType + ": " + (dish != null ? dish.getName() : "—"));
+          }
+        }
+        break;
+      case "add-meal":
+        expect(args, 3, 3);
+        Dish dish = controller.findDishByName(args.get(2));
+        if (dish == null) {
+          throw new IllegalArgumentException("Блюдо не найдено: " + args.get(2));
+        }
+        if (!controller.addMealToDay(day(args, 0), mealType(args, 1), dish)) {
+          throw new IllegalStateException("Недостаточно продуктов для блюда " + dish.getName());
+        }
+        out.println(args.get(0) + ", " + args.get(1) + ": " + dish.getName());
+        break;
+      case "remove-meal":
+        expect(args, 2, 2);
+        controller.removeMealFromDay(day(args, 0), mealType(args, 1));
+        out.println(args.get(0) + ", " + args.get(1) + ": —");
+        break;
+      case "clear-day":
+        expect(args, 1, 1);
+        controller.clearDayMenu(day(args, 0));
+        out.println("Очищено: " + args.get(0));
+        break;
+      case "save-template":
+        expect(args, 1, 1);
+        controller.saveTemplate(args.get(0));
+        out.println("Шаблон сохранён: " + args.get(0));
+        break;
+      case "apply-template":
+        expect(args, 1, 1);
+        List<TemplateLibrary.SlotDiff> diff = controller.diffTemplate(args.get(0));
+        if (!controller.applyTemplate(args.get(0))) {
+          throw new IllegalStateException("Недостаточно продуктов для шаблона " + args.get(0));
+        }
+        for (TemplateLibrary.SlotDiff change : diff) {
+          out.println(change);
+        }
+        out.println("Шаблон применён, изменено приёмов пищи: " + diff.size());
+        break;
+      case "export-template":
+        expect(args, 2, 2);
+        controller.getTemplateLibrary().exportTemplate(args.get(0), new File(args.get(1)));
+        out.println("Шаблон экспортирован: " + args.get(1));
+        break;
+      case "import-template":
+        expect(args, 1, 1);
+        out.println("Загружены шаблоны: " + String.join(", ",
+            controller.getTemplateLibrary().importTemplates(new File(args.get(0)))));
+        break;
+      case "export-menu":
+        expect(args, 1, 1);
+        controller.getExportService().exportMenuToFile(args.get(0));
+        out.println("Меню экспортировано: " + args.get(0));
+        break;
+      case "export-products":
+        expect(args, 1, 1);
+        controller.getExportService().exportProductsToFile(args.get(0));
+        out.println("Продукты экспортированы: " + args.get(0));
+        break;
+      case "shortages":
+        expect(args, 0, 0);
+        for (Map.Entry<String, String> entry
+            : controller.getInventoryProjection().getShortages().entrySet()) {
+          out.println(entry.getKey() + "\t" + entry.getValue());
+        }
+        break;
+      case "reorder":
+        expect(args, 0, 0);
+        for (Map.Entry<String, ProductQuantity> entry : controller.getReorderList().entrySet()) {
+          out.println(entry.getKey() + "\t" + entry.getValue());
+        }
+        break;
+      case "forecast":
+        expect(args, 0, 0);
+        for (ConsumptionStats.Forecast forecast : controller.getConsumptionForecasts()) {
+          LocalDate depletion = forecast.getDepletionDate();
+          out.println(String.format("%s\t%.2f %s/день\t%s", forecast.getProduct(),
+              forecast.getDailyRate(), forecast.getUnit(),
+              depletion != null ? depletion.format(DATE_FORMAT) : "—"));
+        }
+        break;
+      case "diagnostics":
+        expect(args, 0, 0);
+        out.print(Diagnostics.format(controller.getDiagnostics().capture().collect()));
+        break;
+      case "help":
+        out.println(USAGE);
+        break;
+      default:
+        throw new IllegalArgumentException("Неизвестная команда: " + command
+            + " (список команд: help)");
+    }
+  }
+
+  /**
+   * Разбивает строку команды на слова; слова в двойных кавычках могут содержать пробелы.
+   */
+  static List<String> split(String line) {
+    List<String> words = new ArrayList<>();
+    StringBuilder word = new StringBuilder();
+    boolean quoted = false;
+    boolean started = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+        started = true;
+      } else if (Character.isWhitespace(c) && !quoted) {
+        if (started) {
+          words.add(word.toString());
+          word.setLength(0);
+          started = false;
+        }
+      } else {
+        word.append(c);
+        started = true;
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Не закрыта кавычка");
+    }
+    if (started) {
+      words.add(word.toString());
+    }
+    return words;
+  }
+
+  private static void expect(List<String> args, int min, int max) {
+    if (args.size() < min || args.size() > max) {
+      throw new IllegalArgumentException("Неверное число аргументов: " + args.size());
+    }
+  }
+
+  private static String day(List<String> args, int index) {
+    String day = args.get(index);
+    if (!Arrays.asList(MenuRepository.DAYS).contains(day)) {
+      throw new IllegalArgumentException("Неизвестный день: " + day);
+    }
+    return day;
+  }
+
+  private static String mealType(List<String> args, int index) {
+    String mealType = args.get(index);
+    if (!Arrays.asList(MenuRepository.MEAL_TYPES).contains(mealType)) {
+      throw new IllegalArgumentException("Неизвестный приём пищи: " + mealType);
+    }
+    return mealType;
+  }
+}
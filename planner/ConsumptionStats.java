@@ -0,0 +1,344 @@
+package planner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика расхода продуктов и прогноз даты, когда продукт закончится.
+ * Для каждого продукта хранится экспоненциально сглаженная скорость расхода
+ * и расход за последние {@value #WINDOW_DAYS} дней по дневным корзинам местного
+ * часового пояса; запись списания и чтение прогноза занимают O(1) на продукт.
+ * Возврат отменяет вклад последних списаний с учётом их времени, а не вычитается
+ * из сегодняшнего расхода.
+ */
+public class ConsumptionStats implements SegmentHandler {
+  public static final String SEGMENT = "consumption";
+  public static final int WINDOW_DAYS = 7;
+  /**
+   * Постоянная времени сглаживания в днях: расход недельной давности весит в e раз меньше.
+   */
+  static final double SMOOTHING_DAYS = 7;
+  /**
+   * Сколько последних списаний продукта запоминается для возвратов.
+   */
+  static final int LOG_LIMIT = 32;
+
+  private static final double DAY_MILLIS = 24 * 60 * 60 * 1000.0;
+
+  private final MenuRepository repository;
+  private Map<String, Usage> usages = new HashMap<>();
+
+  /**
+   * Создает статистику и подключает её к сохранению репозитория.
+   */
+  public ConsumptionStats(MenuRepository repository) {
+    this.repository = repository;
+    repository.registerSegment(SEGMENT, this);
+  }
+
+  /**
+   * Расход и прогноз для одного продукта в единицах его запаса.
+   */
+  public static final class Forecast {
+    private final String product;
+    private final ProductUnit unit;
+    private final double stock;
+    private final double dailyRate;
+    private final double windowAmount;
+    private final LocalDate depletionDate;
+
+    Forecast(String product, ProductUnit unit, double stock, double dailyRate,
+        double windowAmount, LocalDate depletionDate) {
+      this.product = product;
+      this.unit = unit;
+      this.stock = stock;
+      this.dailyRate = dailyRate;
+      this.windowAmount = windowAmount;
+      this.depletionDate = depletionDate;
+    }
+
+    public String getProduct() {
+      return product;
+    }
+
+    public ProductUnit getUnit() {
+      return unit;
+    }
+
+    public double getStock() {
+      return stock;
+    }
+
+    /**
+     * Сглаженный расход в день.
+     */
+    public double getDailyRate() {
+      return dailyRate;
+    }
+
+    /**
+     * Расход за последние {@value ConsumptionStats#WINDOW_DAYS} дней.
+     */
+    public double getWindowAmount() {
+      return windowAmount;
+    }
+
+    /**
+     * Дата, когда при текущем расходе закончится запас, или {@code null}, если расхода нет.
+     */
+    public LocalDate getDepletionDate() {
+      return depletionDate;
+    }
+  }
+
+  /**
+   * Одно списание: время и ещё не возвращённое количество.
+   */
+  private static final class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long time;
+    private double amount;
+
+    Entry(long time, double amount) {
+      this.time = time;
+      this.amount = amount;
+    }
+  }
+
+  /**
+   * Накопленный расход продукта в базовых единицах.
+   */
+  private static final class Usage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long firstTime;
+    private long lastTime;
+    /**
+     * Сумма списаний, каждое из которых затухает с постоянной {@link #SMOOTHING_DAYS}.
+     */
+    private double decayed;
+    private final double[] buckets = new double[WINDOW_DAYS];
+    private long lastDay;
+    private double windowTotal;
+    private double total;
+    /**
+     * Последние списания; {@code null} в данных, сохранённых до появления журнала.
+     */
+    private ArrayDeque<Entry> log;
+
+    Usage(long time) {
+      firstTime = time;
+      lastTime = time;
+      lastDay = epochDay(time);
+    }
+
+    void add(double amount, long time) {
+      advance(epochDay(time));
+      if (amount < 0) {
+        revert(-amount);
+        return;
+      }
+      if (time > lastTime) {
+        decayed *= Math.exp(-(time - lastTime) / DAY_MILLIS / SMOOTHING_DAYS);
+        lastTime = time;
+      }
+      decayed += amount;
+      buckets[bucket(lastDay)] += amount;
+      windowTotal += amount;
+      total += amount;
+      if (log == null) {
+        log = new ArrayDeque<>();
+      }
+      log.addLast(new Entry(time, amount));
+      if (log.size() > LOG_LIMIT) {
+        log.pollFirst();
+      }
+    }
+
+    /**
+     * Отменяет вклад последних списаний: затухшую долю в сглаженной сумме и количество
+     * в корзине их дня, если она ещё в окне. Возврат сверх запомненных списаний
+     * не учитывается.
+     */
+    private void revert(double amount) {
+      while (amount > 0 && log != null && !log.isEmpty()) {
+        Entry last = log.peekLast();
+        double taken = Math.min(last.amount, amount);
+        decayed = Math.max(0, decayed - taken
+            * Math.exp(-(lastTime - last.time) / DAY_MILLIS / SMOOTHING_DAYS));
+        long day = epochDay(last.time);
+        if (day > lastDay - WINDOW_DAYS) {
+          int bucket = bucket(day);
+          double removed = Math.min(buckets[bucket], taken);
+          buckets[bucket] -= removed;
+          windowTotal -= removed;
+        }
+        total = Math.max(0, total - taken);
+        last.amount -= taken;
+        amount -= taken;
+        if (last.amount <= 1e-9) {
+          log.pollLast();
+        }
+      }
+    }
+
+    /**
+     * Сдвигает окно до дня {@code day}, обнуляя корзины прошедших дней; не более
+     * {@value ConsumptionStats#WINDOW_DAYS} шагов.
+     */
+    void advance(long day) {
+      if (day <= lastDay) {
+        return;
+      }
+      long steps = Math.min(day - lastDay, WINDOW_DAYS);
+      for (long d = day - steps + 1; d <= day; d++) {
+        int bucket = bucket(d);
+        windowTotal -= buckets[bucket];
+        buckets[bucket] = 0;
+      }
+      lastDay = day;
+    }
+
+    /**
+     * Сглаженный расход в день на момент {@code time}. В начале истории, пока она
+     * короче постоянной сглаживания, сумма делится на фактически прошедшую долю окна.
+     */
+    double rate(long time) {
+      double elapsed = Math.max(0, time - lastTime) / DAY_MILLIS;
+      double current = decayed * Math.exp(-elapsed / SMOOTHING_DAYS);
+      double history = Math.max(1, (time - firstTime) / DAY_MILLIS);
+      return current / (SMOOTHING_DAYS * (1 - Math.exp(-history / SMOOTHING_DAYS)));
+    }
+
+    double window(long time) {
+      advance(epochDay(time));
+      return Math.max(0, windowTotal);
+    }
+
+    private static int bucket(long day) {
+      return (int) Math.floorMod(day, (long) WINDOW_DAYS);
+    }
+  }
+
+  /**
+   * Учитывает списание продукта в базовых единицах; отрицательное количество
+   * означает возврат ранее списанного.
+   */
+  public void record(String product, double baseAmount) {
+    record(product, baseAmount, System.currentTimeMillis());
+  }
+
+  synchronized void record(String product, double baseAmount, long time) {
+    if (baseAmount == 0) {
+      return;
+    }
+    product = repository.canonicalProductName(product);
+    Usage usage = usages.get(product);
+    if (usage == null) {
+      if (baseAmount < 0) {
+        return;
+      }
+      usage = new Usage(time);
+      usages.put(product, usage);
+    }
+    usage.add(baseAmount, time);
+    repository.consumedInEdit(product, baseAmount);
+    repository.markSegmentDirty(SEGMENT);
+  }
+
+  /**
+   * Учитывает отмену или повтор изменения: его списания и возвраты записываются
+   * с обратным знаком при отмене и с прежним при повторе.
+   */
+  void replay(MenuEdit edit, boolean undo) {
+    for (Map.Entry<String, Double> entry : edit.getConsumed().entrySet()) {
+      record(entry.getKey(), undo ? -entry.getValue() : entry.getValue());
+    }
+  }
+
+  /**
+   * Были ли списания продукта; название должно быть словарным.
+   */
+  synchronized boolean hasUsage(String product) {
+    return usages.containsKey(product);
+  }
+
+  /**
+   * Возвращает расход и прогноз продукта или {@code null}, если списаний не было.
+   */
+  public Forecast getForecast(String product) {
+    return getForecast(product, System.currentTimeMillis());
+  }
+
+  synchronized Forecast getForecast(String product, long time) {
+    product = repository.findProductName(product);
+    Usage usage = usages.get(product);
+    return usage != null ? forecast(product, usage, time) : null;
+  }
+
+  /**
+   * Возвращает прогнозы для всех продуктов с историей расхода: сначала те,
+   * что закончатся раньше, затем продукты без расхода.
+   */
+  public List<Forecast> getForecasts() {
+    return getForecasts(System.currentTimeMillis());
+  }
+
+  synchronized List<Forecast> getForecasts(long time) {
+    List<Forecast> result = new ArrayList<>(usages.size());
+    for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+      result.add(forecast(entry.getKey(), entry.getValue(), time));
+    }
+    result.sort(Comparator.comparing(Forecast::getDepletionDate,
+        Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Forecast::getProduct));
+    return result;
+  }
+
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (data instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Usage> loaded = (Map<String, Usage>) data;
+      usages = new HashMap<>(loaded);
+    }
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    return store.write(SEGMENT, new HashMap<>(usages));
+  }
+
+  private Forecast forecast(String product, Usage usage, long time) {
+    ProductQuantity quantity = repository.getProduct(product);
+    ProductUnit unit = quantity != null ? quantity.getUnit() : ProductUnit.GRAMS;
+    double stock = quantity != null ? unit.convertToBaseUnit(quantity.getAmount()) : 0;
+    double rate = usage.rate(time);
+    LocalDate depletion = null;
+    if (rate > 0) {
+      long days = (long) Math.floor(stock / rate);
+      depletion = LocalDate.ofEpochDay(epochDay(time)).plusDays(days);
+    }
+    return new Forecast(product, unit, unit.convertFromBaseUnit(stock),
+        unit.convertFromBaseUnit(rate), unit.convertFromBaseUnit(usage.window(time)), depletion);
+  }
+
+  /**
+   * Номер дня в местном часовом поясе.
+   */
+  private static long epochDay(long time) {
+    return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate()
+        .toEpochDay();
+  }
+}
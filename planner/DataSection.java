@@ -0,0 +1,22 @@
+package planner;
+
+/**
+ * Разделы сохраняемых данных в порядке их загрузки при запуске.
+ * Меню загружается первым, чтобы недельный план был доступен до загрузки каталога.
+ */
+public enum DataSection {
+  MENU("Меню на неделю"),
+  INVENTORY("Продукты"),
+  CATALOG("Каталог блюд");
+
+  private final String displayName;
+
+  DataSection(String displayName) {
+    this.displayName = displayName;
+  }
+
+  @Override
+  public String toString() {
+    return displayName;
+  }
+}
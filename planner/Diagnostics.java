@@ -0,0 +1,312 @@
+package planner;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сводка производительности для отчёта о проблемах: задержки операций, время
+ * сохранения и загрузки, оценка памяти структур репозитория, доля попаданий кэшей
+ * и последние медленные операции.
+ *
+ * <p>Сбор идёт в два шага. {@link #capture()} в потоке, который изменяет репозиторий,
+ * копирует список блюд и снимает размеры меню, запаса, журнала, партий и шаблонов;
+ * {@link Snapshot#collect()} обходит копию и реестр метрик и может выполняться
+ * в любом потоке.
+ */
+public final class Diagnostics {
+  /**
+   * Оценка объёма записи запаса при сжатых ссылках: узел и ячейка таблицы
+   * {@code HashMap} и {@link ProductQuantity}. Названия хранятся в словаре продуктов.
+   */
+  private static final int PRODUCT_ENTRY_BYTES = 64;
+  private static final String OPERATION_TIMER = "planner_operation_seconds";
+  private static final String OPERATION_ERRORS = "planner_operation_errors_total";
+  private static final List<String> STORAGE_METRICS = Arrays.asList(
+      "planner_save_seconds", "planner_load_seconds", "planner_save_bytes_total",
+      "planner_save_errors_total", "planner_segment_bytes_total", "planner_save_last_bytes");
+
+  private final MenuRepository repository;
+  private final MenuController controller;
+
+  Diagnostics(MenuRepository repository, MenuController controller) {
+    this.repository = repository;
+    this.controller = controller;
+  }
+
+  /**
+   * Строка сводки: раздел, показатель и значение.
+   */
+  public static final class Entry {
+    private final String section;
+    private final String name;
+    private final String value;
+
+    Entry(String section, String name, String value) {
+      this.section = section;
+      this.name = name;
+      this.value = value;
+    }
+
+    public String getSection() {
+      return section;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * Копия списка блюд и размеры структур данных, снятые в потоке репозитория.
+   */
+  public final class Snapshot {
+    private final String storageName = repository.getStorage().getClass().getSimpleName();
+    private final List<Dish> dishes = repository.getDishes();
+    private final int productCount = repository.getProductCount();
+    private final int mealCount = repository.countMeals();
+    private final long menuBytes = repository.estimatedMenuBytes();
+    private final int dictionarySize = repository.getProductDictionary().size();
+    private final int journalSize;
+    private final int journalKeyframes;
+    private final long journalBytes;
+    private final int historySize = controller.getEditHistory().size();
+    private final int lotCount =
+        controller.getProductInventoryService().getLotInventory().getLotCount();
+    private final int templateCount;
+    private final int templateDishes;
+    private final int cachedDishes = controller.getNutritionTracker().getCachedDishCount();
+
+    private Snapshot() {
+      ChangeJournal journal = controller.getChangeJournal();
+      journalSize = journal.size();
+      journalKeyframes = journal.getKeyframeCount();
+      journalBytes = journal.estimatedBytes();
+      TemplateLibrary templates = controller.getTemplateLibrary();
+      templateCount = templates.getNames().size();
+      templateDishes = templates.getDishCount();
+    }
+
+    /**
+     * Собирает строки сводки.
+     */
+    public List<Entry> collect() {
+      List<Entry> entries = new ArrayList<>();
+      collectOperations(entries);
+      collectStorage(entries, this);
+      collectOtherTimers(entries);
+      collectMemory(entries, this);
+      collectCaches(entries, this);
+      collectSlowOperations(entries);
+      return entries;
+    }
+  }
+
+  /**
+   * Копирует список блюд и снимает размеры структур данных. Вызывается в потоке,
+   * который изменяет репозиторий.
+   */
+  public Snapshot capture() {
+    return new Snapshot();
+  }
+
+  /**
+   * Форматирует сводку как текст для отчёта об ошибке.
+   */
+  public static String format(List<Entry> entries) {
+    String nl = System.lineSeparator();
+    StringBuilder text = new StringBuilder();
+    String section = null;
+    for (Entry entry : entries) {
+      if (!entry.section.equals(section)) {
+        section = entry.section;
+        text.append('[').append(section).append(']').append(nl);
+      }
+      text.append("  ").append(entry.name).append(": ").append(entry.value).append(nl);
+    }
+    return text.toString();
+  }
+
+  private static void collectOperations(List<Entry> entries) {
+    Map<String, Long> errors = new LinkedHashMap<>();
+    for (Metrics.Counter counter : Metrics.registry().getCounters()) {
+      if (counter.getName().equals(OPERATION_ERRORS)) {
+        errors.put(labelValue(counter.getLabels()), counter.get());
+      }
+    }
+    for (Metrics.Timer timer : Metrics.registry().getTimers()) {
+      if (timer.getName().equals(OPERATION_TIMER)) {
+        String operation = labelValue(timer.getLabels());
+        Long failed = errors.get(operation);
+        entries.add(new Entry("Операции", operation, formatTimer(timer)
+            + (failed != null ? ", ошибок " + failed : "")));
+      }
+    }
+  }
+
+  private static void collectStorage(List<Entry> entries, Snapshot snapshot) {
+    String section = "Хранение";
+    entries.add(new Entry(section, "Механизм хранения", snapshot.storageName));
+    Metrics metrics = Metrics.registry();
+    for (String name : STORAGE_METRICS) {
+      for (Metrics.Timer timer : metrics.getTimers()) {
+        if (timer.getName().equals(name)) {
+          entries.add(new Entry(section, describe(timer), formatTimer(timer)));
+        }
+      }
+      for (Metrics.Counter counter : metrics.getCounters()) {
+        if (counter.getName().equals(name)) {
+          entries.add(new Entry(section, describe(counter), formatCount(counter.get())));
+        }
+      }
+      for (Metrics.Gauge gauge : metrics.getGauges()) {
+        if (gauge.getName().equals(name)) {
+          entries.add(new Entry(section, describe(gauge), formatCount((long) gauge.get())));
+        }
+      }
+    }
+  }
+
+  private static void collectOtherTimers(List<Entry> entries) {
+    for (Metrics.Timer timer : Metrics.registry().getTimers()) {
+      String name = timer.getName();
+      if (!name.equals(OPERATION_TIMER) && !STORAGE_METRICS.contains(name)) {
+        entries.add(new Entry("Прочие задержки", describe(timer), formatTimer(timer)));
+      }
+    }
+  }
+
+  private static void collectMemory(List<Entry> entries, Snapshot snapshot) {
+    String section = "Память";
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    entries.add(new Entry(section, "Куча JVM", formatBytes(used) + " из "
+        + formatBytes(runtime.totalMemory()) + ", предел " + formatBytes(runtime.maxMemory())));
+    long dishBytes = 0;
+    for (Dish dish : snapshot.dishes) {
+      dishBytes += estimatedBytes(dish);
+    }
+    entries.add(new Entry(section, "Блюда", snapshot.dishes.size() + ", ~"
+        + formatBytes(dishBytes)));
+    entries.add(new Entry(section, "Приёмы пищи", snapshot.mealCount + " из "
+        + MenuRepository.SLOT_COUNT + ", ~" + formatBytes(snapshot.menuBytes)));
+    entries.add(new Entry(section, "Продукты", snapshot.productCount + ", ~"
+        + formatBytes((long) snapshot.productCount * PRODUCT_ENTRY_BYTES)));
+    entries.add(new Entry(section, "Журнал изменений", snapshot.journalSize + " записей, "
+        + snapshot.journalKeyframes + " опорных, ~" + formatBytes(snapshot.journalBytes)));
+    entries.add(new Entry(section, "История правок", snapshot.historySize + " шагов"));
+    entries.add(new Entry(section, "Партии продуктов", String.valueOf(snapshot.lotCount)));
+    entries.add(new Entry(section, "Шаблоны меню", snapshot.templateCount + ", блюд "
+        + snapshot.templateDishes));
+    entries.add(new Entry(section, "Словарь продуктов",
+        String.valueOf(snapshot.dictionarySize)));
+  }
+
+  private static void collectCaches(List<Entry> entries, Snapshot snapshot) {
+    entries.add(new Entry("Кэши", "Пищевая ценность блюд",
+        snapshot.cachedDishes + " из " + NutritionTracker.CACHE_LIMIT));
+    Map<String, long[]> lookups = new LinkedHashMap<>();
+    Map<String, String> help = new LinkedHashMap<>();
+    for (Metrics.Counter counter : Metrics.registry().getCounters()) {
+      String labels = counter.getLabels();
+      boolean hit = labels.equals("{result=\"hit\"}");
+      if (hit || labels.equals("{result=\"miss\"}")) {
+        lookups.computeIfAbsent(counter.getName(), k -> new long[2])[hit ? 0 : 1] +=
+            counter.get();
+        help.put(counter.getName(), counter.getHelp());
+      }
+    }
+    for (Map.Entry<String, long[]> entry : lookups.entrySet()) {
+      long hits = entry.getValue()[0];
+      long total = hits + entry.getValue()[1];
+      entries.add(new Entry("Кэши", help.get(entry.getKey()), total == 0 ? "нет обращений"
+          : String.format("%.1f%% попаданий из %d", hits * 100.0 / total, total)));
+    }
+  }
+
+  private static void collectSlowOperations(List<Entry> entries) {
+    SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss");
+    for (Metrics.SlowOperation operation : Metrics.registry().getSlowOperations()) {
+      entries.add(new Entry("Медленные операции (дольше " + Metrics.SLOW_MILLIS + " мс)",
+          time.format(new Date(operation.getTime())) + " " + describe(operation.getTimer()),
+          String.format("%.0f мс", operation.getMillis())));
+    }
+  }
+
+  /**
+   * Оценка объёма блюда при сжатых ссылках: объект, массивы ингредиентов,
+   * название и описание. Названия продуктов хранятся в словаре и не учитываются.
+   */
+  private static long estimatedBytes(Dish dish) {
+    int count = dish.getIngredientCount();
+    long bytes = 48 + align(16 + 4L * count) * 2 + align(16 + 8L * count) + align(16 + count);
+    return bytes + stringBytes(dish.getName()) + stringBytes(dish.getDescription());
+  }
+
+  private static long stringBytes(String text) {
+    return text == null ? 0 : 24 + align(16 + 2L * text.length());
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  private static String describe(Metrics.Metric metric) {
+    String labels = metric.getLabels();
+    return labels.isEmpty() ? metric.getHelp() : metric.getHelp() + " " + labels;
+  }
+
+  /**
+   * Значение единственной метки, например "addMeal" из {@code {operation="addMeal"}}.
+   */
+  private static String labelValue(String labels) {
+    int start = labels.indexOf("=\"");
+    return start >= 0 ? labels.substring(start + 2, labels.length() - 2) : labels;
+  }
+
+  private static String formatTimer(Metrics.Timer timer) {
+    long count = timer.getCount();
+    if (count == 0) {
+      return "нет измерений";
+    }
+    return String.format("%d, среднее %.1f мс, p50 ≤ %s, p95 ≤ %s, p99 ≤ %s", count,
+        timer.getSumSeconds() * 1000 / count, formatBound(timer.quantileSeconds(0.5)),
+        formatBound(timer.quantileSeconds(0.95)), formatBound(timer.quantileSeconds(0.99)));
+  }
+
+  /**
+   * Граница корзины гистограммы: "0.25 мс", "100 мс", "2.5 с".
+   */
+  private static String formatBound(double seconds) {
+    if (Double.isInfinite(seconds)) {
+      return "∞";
+    }
+    return seconds < 1 ? formatNumber(seconds * 1000) + " мс" : formatNumber(seconds) + " с";
+  }
+
+  private static String formatNumber(double value) {
+    return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+  }
+
+  private static String formatCount(long value) {
+    return String.format("%,d", value);
+  }
+
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " Б";
+    }
+    if (bytes < 1024 * 1024) {
+      return String.format("%.1f КБ", bytes / 1024.0);
+    }
+    return String.format("%.1f МБ", bytes / (1024.0 * 1024));
+  }
+}
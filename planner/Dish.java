@@ -1,29 +1,125 @@
 package planner;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 
 /**
- * Класс, представляющий блюдо с его характеристиками.
- * Содержит название, описание и список ингредиентов с их количеством.
+ * Неизменяемое блюдо: название, описание и ингредиенты с количеством.
+ * Ингредиенты хранятся параллельными массивами, упорядоченными по идентификатору
+ * продукта из {@link ProductDictionary}: названия приводятся к словарным, а совпавшие
+ * после приведения суммируются в единице ингредиента с наименьшим исходным названием,
+ * поэтому результат не зависит от порядка обхода {@code Map}. Количество хранится
+ * в тысячных долях единицы. В сериализованном виде блюдо совместимо с прежним
+ * форматом (название, описание, {@code Map} ингредиентов); при чтении поток
+ * заменяется блюдом, собранным конструктором.
  */
-public class Dish implements Serializable {
+public final class Dish implements Serializable {
   private static final long serialVersionUID = 1L;
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("name", String.class),
+      new ObjectStreamField("description", String.class),
+      new ObjectStreamField("ingredients", Map.class)
+  };
+  private static final double SCALE = 1000.0;
 
-  private String name;
-  private String description;
-  private Map<String, ProductQuantity> ingredients;
+  private final String name;
+  private final String description;
+  private final int[] productIds;
+  private final String[] products;
+  private final long[] amounts;
+  private final byte[] units;
+  private final int hash;
+  private transient Map<String, ProductQuantity> ingredientView;
+  /**
+   * Блюдо, собранное из прочитанных полей; возвращается из {@link #readResolve()}.
+   */
+  private transient Dish deserialized;
+
+  /**
+   * Получает ингредиенты блюда без создания объектов.
+   */
+  @FunctionalInterface
+  public interface IngredientConsumer {
+    void accept(String product, double amount, ProductUnit unit);
+  }
 
   /**
    * Конструктор для создания нового блюда.
-   * 
    */
   public Dish(String name, String description, Map<String, ProductQuantity> ingredients) {
+    ProductDictionary dictionary = ProductDictionary.getInstance();
+    int count = ingredients.size();
+    long[] entries = new long[count];
+    String[] keys = new String[count];
+    double[] baseAmounts = new double[count];
+    ProductUnit[] entryUnits = new ProductUnit[count];
+    int index = 0;
+    for (Map.Entry<String, ProductQuantity> ingredient : ingredients.entrySet()) {
+      ProductQuantity quantity = ingredient.getValue();
+      keys[index] = ingredient.getKey();
+      entries[index] = (long) dictionary.intern(keys[index]) << 32 | index;
+      baseAmounts[index] = quantity.getUnit().convertToBaseUnit(quantity.getAmount());
+      entryUnits[index] = quantity.getUnit();
+      index++;
+    }
+    Arrays.sort(entries);
+
+    int[] ids = new int[count];
+    String[] names = new String[count];
+    long[] milli = new long[count];
+    byte[] unitOrdinals = new byte[count];
+    int size = 0;
+    double base = 0;
+    String unitKey = null;
+    for (int i = 0; i < count; i++) {
+      int id = (int) (entries[i] >>> 32);
+      int source = (int) entries[i];
+      if (size > 0 && ids[size - 1] == id) {
+        base += baseAmounts[source];
+        if (keys[source].compareTo(unitKey) < 0) {
+          unitKey = keys[source];
+          unitOrdinals[size - 1] = (byte) entryUnits[source].ordinal();
+        }
+      } else {
+        if (size > 0) {
+          milli[size - 1] = toMilli(ProductUnit.ofOrdinal(unitOrdinals[size - 1]), base);
+        }
+        ids[size] = id;
+        names[size] = dictionary.nameOf(id);
+        unitOrdinals[size] = (byte) entryUnits[source].ordinal();
+        unitKey = keys[source];
+        base = baseAmounts[source];
+        size++;
+      }
+    }
+    if (size > 0) {
+      milli[size - 1] = toMilli(ProductUnit.ofOrdinal(unitOrdinals[size - 1]), base);
+    }
+
     this.name = name;
     this.description = description;
-    this.ingredients = new HashMap<>(ingredients);
+    this.productIds = Arrays.copyOf(ids, size);
+    this.products = Arrays.copyOf(names, size);
+    this.amounts = Arrays.copyOf(milli, size);
+    this.units = Arrays.copyOf(unitOrdinals, size);
+    int h = Objects.hash(name, description);
+    h = 31 * h + Arrays.hashCode(this.productIds);
+    h = 31 * h + Arrays.hashCode(this.amounts);
+    this.hash = 31 * h + Arrays.hashCode(this.units);
   }
 
   public String getName() {
@@ -45,8 +141,88 @@ public class Dish implements Serializable {
     return description.length() > 50 ? description.substring(0, 47) + "..." : description;
   }
 
+  /**
+   * Возвращает неизменяемое представление ингредиентов без копирования.
+   * Количество каждого ингредиента создаётся при обращении.
+   */
   public Map<String, ProductQuantity> getIngredients() {
-    return new HashMap<>(ingredients);
+    Map<String, ProductQuantity> view = ingredientView;
+    if (view == null) {
+      view = new IngredientMap();
+      ingredientView = view;
+    }
+    return view;
+  }
+
+  /**
+   * Возвращает неизменяемый список словарных названий продуктов блюда.
+   */
+  public List<String> getIngredientNames() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return products[index];
+      }
+
+      @Override
+      public int size() {
+        return products.length;
+      }
+    };
+  }
+
+  public int getIngredientCount() {
+    return products.length;
+  }
+
+  public String getProduct(int index) {
+    return products[index];
+  }
+
+  /**
+   * Возвращает идентификатор продукта в {@link ProductDictionary}.
+   */
+  public int getProductId(int index) {
+    return productIds[index];
+  }
+
+  public double getAmount(int index) {
+    return amounts[index] / SCALE;
+  }
+
+  public ProductUnit getUnit(int index) {
+    return ProductUnit.ofOrdinal(units[index]);
+  }
+
+  /**
+   * Передаёт каждый ингредиент в порядке идентификаторов продуктов.
+   */
+  public void forEachIngredient(IngredientConsumer consumer) {
+    for (int i = 0; i < products.length; i++) {
+      consumer.accept(products[i], amounts[i] / SCALE, ProductUnit.ofOrdinal(units[i]));
+    }
+  }
+
+  /**
+   * Проверяет, входит ли продукт с идентификатором из словаря в блюдо.
+   */
+  public boolean containsProduct(int productId) {
+    return Arrays.binarySearch(productIds, productId) >= 0;
+  }
+
+  /**
+   * Проверяет, входит ли продукт в блюдо; название сравнивается как есть.
+   */
+  public boolean containsIngredient(String product) {
+    return indexOf(product) >= 0;
+  }
+
+  /**
+   * Возвращает количество ингредиента или {@code null}, если его нет в блюде.
+   */
+  public ProductQuantity getIngredient(String product) {
+    int index = indexOf(product);
+    return index >= 0 ? quantity(index) : null;
   }
 
   @Override
@@ -58,20 +234,115 @@ public class Dish implements Serializable {
       return false;
     }
     Dish dish = (Dish) o;
-    return Objects.equals(name, dish.name)
-        &&
-        Objects.equals(description, dish.description)
-        &&
-        Objects.equals(ingredients, dish.ingredients);
+    return hash == dish.hash
+        && Objects.equals(name, dish.name)
+        && Objects.equals(description, dish.description)
+        && Arrays.equals(productIds, dish.productIds)
+        && Arrays.equals(amounts, dish.amounts)
+        && Arrays.equals(units, dish.units);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(name, description, ingredients);
+    return hash;
   }
 
   @Override
   public String toString() {
     return name;
   }
-}
\ No newline at end of file
+
+  private static long toMilli(ProductUnit unit, double baseAmount) {
+    return Math.round(unit.convertFromBaseUnit(baseAmount) * SCALE);
+  }
+
+  private int indexOf(String product) {
+    for (int i = 0; i < products.length; i++) {
+      if (products[i].equals(product)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private ProductQuantity quantity(int index) {
+    return new ProductQuantity(amounts[index] / SCALE, ProductUnit.ofOrdinal(units[index]));
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    Map<String, ProductQuantity> ingredients = new HashMap<>();
+    for (int i = 0; i < products.length; i++) {
+      ingredients.put(products[i], quantity(i));
+    }
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("name", name);
+    fields.put("description", description);
+    fields.put("ingredients", ingredients);
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    Map<String, ProductQuantity> ingredients =
+        (Map<String, ProductQuantity>) fields.get("ingredients", null);
+    deserialized = new Dish((String) fields.get("name", null),
+        (String) fields.get("description", null),
+        ingredients != null ? ingredients : new HashMap<>());
+  }
+
+  private Object readResolve() {
+    return deserialized;
+  }
+
+  /**
+   * Представление ингредиентов в виде {@code Map} поверх массивов блюда.
+   */
+  private final class IngredientMap extends AbstractMap<String, ProductQuantity> {
+    @Override
+    public int size() {
+      return products.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public ProductQuantity get(Object key) {
+      return key instanceof String ? getIngredient((String) key) : null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, ProductQuantity>> entrySet() {
+      return new AbstractSet<Map.Entry<String, ProductQuantity>>() {
+        @Override
+        public int size() {
+          return products.length;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, ProductQuantity>> iterator() {
+          return new Iterator<Map.Entry<String, ProductQuantity>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < products.length;
+            }
+
+            @Override
+            public Map.Entry<String, ProductQuantity> next() {
+              if (next >= products.length) {
+                throw new NoSuchElementException();
+              }
+              int index = next++;
+              return new AbstractMap.SimpleImmutableEntry<>(products[index], quantity(index));
+            }
+          };
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package planner;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Справочник блюд с постоянными числовыми идентификаторами. Меню хранит только
+ * идентификаторы, поэтому изменение блюда по идентификатору сразу видно во всех
+ * приёмах пищи. Блюдо каталога занимает идентификатор, пока оно в каталоге;
+ * блюдо, которого нет в каталоге, освобождает его, когда на него не ссылается
+ * ни один приём пищи.
+ */
+final class DishCatalog implements Serializable {
+  private static final long serialVersionUID = 1L;
+  static final int NONE = -1;
+
+  private Dish[] dishes = new Dish[64];
+  private int[] references = new int[64];
+  private boolean[] listed = new boolean[64];
+  private int[] freeIds = new int[16];
+  private int freeCount;
+  private int nextId;
+  private int size;
+  /**
+   * Идентификатор по названию; если есть блюдо каталога с таким названием, указывает на него.
+   */
+  private final Map<String, Integer> ids = new HashMap<>();
+
+  Dish get(int id) {
+    return id >= 0 && id < nextId ? dishes[id] : null;
+  }
+
+  /**
+   * Возвращает идентификатор блюда с таким названием и содержимым или {@link #NONE}.
+   */
+  int find(Dish dish) {
+    if (dish == null) {
+      return NONE;
+    }
+    Integer id = ids.get(dish.getName());
+    return id != null && same(dishes[id], dish) ? id : NONE;
+  }
+
+  /**
+   * Возвращает идентификатор блюда с таким названием или {@link #NONE}.
+   */
+  int find(String name) {
+    Integer id = ids.get(name);
+    return id != null ? id : NONE;
+  }
+
+  /**
+   * Оценивает объём справочника в памяти в байтах без учёта самих блюд.
+   */
+  long estimatedBytes() {
+    return 4 * 16 + (long) dishes.length * 4 + (long) references.length * Integer.BYTES
+        + listed.length + (long) freeIds.length * Integer.BYTES + (long) ids.size() * 48;
+  }
+
+  /**
+   * Возвращает идентификатор блюда, добавляя его вне каталога, если такого ещё нет.
+   * Новый идентификатор освобождается, если на него так и не сослались.
+   */
+  int idFor(Dish dish) {
+    int id = find(dish);
+    return id != NONE ? id : allocate(dish, false);
+  }
+
+  /**
+   * Добавляет блюдо в каталог. Блюдо вне каталога с тем же названием и содержимым
+   * сохраняет свой идентификатор.
+   */
+  int list(Dish dish) {
+    int id = find(dish);
+    if (id != NONE) {
+      listed[id] = true;
+      return id;
+    }
+    return allocate(dish, true);
+  }
+
+  /**
+   * Убирает блюдо из каталога; блюдо остаётся в справочнике, пока на него ссылается меню.
+   */
+  void unlist(String name) {
+    Integer id = ids.get(name);
+    if (id != null && listed[id]) {
+      listed[id] = false;
+      releaseIfUnused(id);
+    }
+  }
+
+  /**
+   * Заменяет блюдо под идентификатором, например после изменения названия или состава.
+   */
+  void replace(int id, Dish dish, boolean inCatalog) {
+    unindex(id);
+    dishes[id] = dish;
+    listed[id] |= inCatalog;
+    index(id);
+  }
+
+  void retain(int id) {
+    references[id]++;
+  }
+
+  void release(int id) {
+    references[id]--;
+    releaseIfUnused(id);
+  }
+
+  int references(int id) {
+    return references[id];
+  }
+
+  /**
+   * Количество занятых идентификаторов.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Освобождает идентификатор, если блюдо не в каталоге и меню на него не ссылается.
+   * Вызывается и для только что выданного идентификатора, на который не сослались.
+   */
+  void releaseIfUnused(int id) {
+    if (id == NONE || dishes[id] == null || listed[id] || references[id] > 0) {
+      return;
+    }
+    unindex(id);
+    dishes[id] = null;
+    if (freeCount == freeIds.length) {
+      freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+    }
+    freeIds[freeCount++] = id;
+    size--;
+  }
+
+  private int allocate(Dish dish, boolean inCatalog) {
+    int id;
+    if (freeCount > 0) {
+      id = freeIds[--freeCount];
+    } else {
+      id = nextId++;
+      if (id == dishes.length) {
+        int capacity = id * 2;
+        dishes = Arrays.copyOf(dishes, capacity);
+        references = Arrays.copyOf(references, capacity);
+        listed = Arrays.copyOf(listed, capacity);
+      }
+    }
+    dishes[id] = dish;
+    references[id] = 0;
+    listed[id] = inCatalog;
+    size++;
+    index(id);
+    return id;
+  }
+
+  /**
+   * Запоминает идентификатор по названию, не вытесняя блюдо каталога блюдом вне каталога.
+   */
+  private void index(int id) {
+    String name = dishes[id].getName();
+    Integer current = ids.get(name);
+    if (current == null || listed[id] || !listed[current]) {
+      ids.put(name, id);
+    }
+  }
+
+  private void unindex(int id) {
+    String name = dishes[id].getName();
+    Integer current = ids.get(name);
+    if (current != null && current == id) {
+      ids.remove(name);
+    }
+  }
+
+  private static boolean same(Dish a, Dish b) {
+    return a == b || a != null && a.equals(b);
+  }
+}
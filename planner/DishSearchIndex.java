@@ -0,0 +1,333 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс для поиска блюд по мере ввода.
+ * Хранит триграммы и префиксы слов названий, описаний и ингредиентов
+ * и обновляется инкрементально при изменении списка блюд.
+ */
+public class DishSearchIndex {
+  private static final Locale RUSSIAN = new Locale("ru");
+  private static final int GRAM = 3;
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static final int RANK_NAME_PREFIX = 0;
+  private static final int RANK_NAME_WORD = 1;
+  private static final int RANK_NAME = 2;
+  private static final int RANK_INGREDIENT = 3;
+  private static final int RANK_DESCRIPTION = 4;
+
+  private static final Comparator<Match> ORDER = Comparator
+      .comparingInt((Match m) -> m.rank)
+      .thenComparingInt(m -> m.entry.name.length())
+      .thenComparing(m -> m.entry.name);
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final List<Entry> byOrdinal = new ArrayList<>();
+  private final Map<String, Posting> trigrams = new HashMap<>();
+  private final NavigableMap<String, Posting> words = new TreeMap<>();
+
+  /**
+   * Приводит текст к виду для сравнения: нижний регистр и замена "ё" на "е".
+   */
+  public static String fold(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text.toLowerCase(RUSSIAN).replace('ё', 'е');
+  }
+
+  /**
+   * Перестраивает индекс по полному списку блюд.
+   */
+  public void rebuild(Collection<Dish> dishes) {
+    entries.clear();
+    byOrdinal.clear();
+    trigrams.clear();
+    words.clear();
+    for (Dish dish : dishes) {
+      add(dish);
+    }
+  }
+
+  /**
+   * Добавляет блюдо в индекс, заменяя блюдо с тем же названием.
+   */
+  public void add(Dish dish) {
+    remove(dish.getName());
+    if (byOrdinal.size() > 2 * entries.size() + 1024) {
+      rebuild(liveDishes());
+    }
+
+    Entry entry = new Entry(dish, byOrdinal.size());
+    byOrdinal.add(entry);
+    entries.put(dish.getName(), entry);
+    for (String gram : entry.grams) {
+      trigrams.computeIfAbsent(gram, k -> new Posting()).add(entry.ordinal);
+    }
+    for (String word : entry.words) {
+      words.computeIfAbsent(word, k -> new Posting()).add(entry.ordinal);
+    }
+  }
+
+  /**
+   * Удаляет блюдо из индекса по названию.
+   * Записи в списках вхождений помечаются удалёнными и вычищаются при накоплении.
+   */
+  public void remove(String dishName) {
+    Entry entry = entries.remove(dishName);
+    if (entry == null) {
+      return;
+    }
+    entry.alive = false;
+    for (String gram : entry.grams) {
+      detach(trigrams, gram);
+    }
+    for (String word : entry.words) {
+      detach(words, word);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Находит блюда, содержащие все слова запроса, упорядоченные по релевантности.
+   * Совпадения в названии ранжируются выше совпадений в ингредиентах и описании.
+   * Слово запроса короче {@value #GRAM} букв совпадает только с началом слова,
+   * и при отборе, и при ранжировании.
+   */
+  public List<Dish> search(String query, int limit) {
+    String[] terms = SEPARATORS.split(fold(query).trim());
+    if (terms.length > 0 && terms[0].isEmpty()) {
+      terms = Arrays.copyOfRange(terms, 1, terms.length);
+    }
+    if (terms.length == 0 || limit <= 0) {
+      return new ArrayList<>();
+    }
+
+    Posting candidates = null;
+    for (String term : terms) {
+      Posting termCandidates = candidatesFor(term);
+      if (candidates == null || termCandidates.size < candidates.size) {
+        candidates = termCandidates;
+      }
+      if (candidates.size == 0) {
+        return new ArrayList<>();
+      }
+    }
+
+    String phrase = String.join(" ", terms);
+    PriorityQueue<Match> best = new PriorityQueue<>(ORDER.reversed());
+    for (int i = 0; i < candidates.size; i++) {
+      Entry entry = byOrdinal.get(candidates.ids[i]);
+      if (!entry.alive) {
+        continue;
+      }
+      int rank = entry.rank(terms, phrase);
+      if (rank < 0) {
+        continue;
+      }
+      if (best.size() == limit && worse(rank, entry, best.peek())) {
+        continue;
+      }
+      best.add(new Match(entry, rank));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+
+    List<Match> matches = new ArrayList<>(best);
+    matches.sort(ORDER);
+    List<Dish> result = new ArrayList<>(matches.size());
+    for (Match match : matches) {
+      result.add(match.entry.dish);
+    }
+    return result;
+  }
+
+  /**
+   * Совпадает ли слово запроса с текстом: длинное — как подстрока, короткое —
+   * как начало слова текста, так же, как оно ищется в индексе.
+   */
+  private static boolean matches(String text, String term) {
+    return term.length() < GRAM ? startsWord(text, term) : text.contains(term);
+  }
+
+  private static boolean startsWord(String text, String term) {
+    for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + 1)) {
+      if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean worse(int rank, Entry entry, Match worst) {
+    if (rank != worst.rank) {
+      return rank > worst.rank;
+    }
+    return entry.name.length() > worst.entry.name.length();
+  }
+
+  private Posting candidatesFor(String term) {
+    if (term.length() < GRAM) {
+      BitSet union = new BitSet(byOrdinal.size());
+      for (Posting posting : words.subMap(term, true, term + Character.MAX_VALUE, true)
+          .values()) {
+        for (int i = 0; i < posting.size; i++) {
+          union.set(posting.ids[i]);
+        }
+      }
+      Posting result = new Posting();
+      for (int id = union.nextSetBit(0); id >= 0; id = union.nextSetBit(id + 1)) {
+        result.add(id);
+      }
+      return result;
+    }
+
+    Posting smallest = null;
+    for (int i = 0; i + GRAM <= term.length(); i++) {
+      Posting posting = trigrams.get(term.substring(i, i + GRAM));
+      if (posting == null) {
+        return new Posting();
+      }
+      if (smallest == null || posting.size < smallest.size) {
+        smallest = posting;
+      }
+    }
+    return smallest;
+  }
+
+  private void detach(Map<String, Posting> index, String key) {
+    Posting posting = index.get(key);
+    if (posting == null) {
+      return;
+    }
+    posting.dead++;
+    if (posting.dead == posting.size) {
+      index.remove(key);
+    } else if (posting.dead > posting.size / 2) {
+      posting.compact(byOrdinal);
+    }
+  }
+
+  private List<Dish> liveDishes() {
+    List<Dish> dishes = new ArrayList<>(entries.size());
+    for (Entry entry : byOrdinal) {
+      if (entry.alive) {
+        dishes.add(entry.dish);
+      }
+    }
+    return dishes;
+  }
+
+  private static final class Posting {
+    private int[] ids = new int[4];
+    private int size;
+    private int dead;
+
+    private void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+
+    private void compact(List<Entry> byOrdinal) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (byOrdinal.get(ids[i]).alive) {
+          ids[kept++] = ids[i];
+        }
+      }
+      size = kept;
+      dead = 0;
+    }
+  }
+
+  private static final class Match {
+    private final Entry entry;
+    private final int rank;
+
+    private Match(Entry entry, int rank) {
+      this.entry = entry;
+      this.rank = rank;
+    }
+  }
+
+  private static final class Entry {
+    private final Dish dish;
+    private final int ordinal;
+    private final String name;
+    private final String foldedName;
+    private final String foldedDescription;
+    private final String foldedIngredients;
+    private final Set<String> grams = new HashSet<>();
+    private final Set<String> words = new HashSet<>();
+    private boolean alive = true;
+
+    private Entry(Dish dish, int ordinal) {
+      this.dish = dish;
+      this.ordinal = ordinal;
+      this.name = dish.getName();
+      this.foldedName = fold(dish.getName());
+      this.foldedDescription = fold(dish.getDescription());
+      this.foldedIngredients = fold(String.join("\n", dish.getIngredientNames()));
+
+      collect(foldedName);
+      collect(foldedDescription);
+      collect(foldedIngredients);
+    }
+
+    private void collect(String text) {
+      for (String word : SEPARATORS.split(text)) {
+        if (word.isEmpty()) {
+          continue;
+        }
+        words.add(word);
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+          grams.add(word.substring(i, i + GRAM));
+        }
+      }
+    }
+
+    private int rank(String[] terms, String phrase) {
+      boolean inName = true;
+      boolean inIngredients = true;
+      for (String term : terms) {
+        boolean name = matches(foldedName, term);
+        boolean ingredient = matches(foldedIngredients, term);
+        if (!name && !ingredient && !matches(foldedDescription, term)) {
+          return -1;
+        }
+        inName &= name;
+        inIngredients &= name || ingredient;
+      }
+
+      if (foldedName.startsWith(phrase)) {
+        return RANK_NAME_PREFIX;
+      }
+      if (inName) {
+        return startsWord(foldedName, terms[0]) ? RANK_NAME_WORD : RANK_NAME;
+      }
+      return inIngredients ? RANK_INGREDIENT : RANK_DESCRIPTION;
+    }
+  }
+}
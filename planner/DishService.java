@@ -1,7 +1,7 @@
 package planner;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -22,24 +22,7 @@ public class DishService {
    * Обновляет существующее блюдо в системе.
    */
   public void updateDish(String oldName, Dish updatedDish) {
-    List<Dish> dishes = repository.getDishes();
-    dishes.removeIf(d -> d.getName().equals(oldName));
-    dishes.add(updatedDish);
-    repository.setDishes(dishes);
-
-    updateDishInWeeklyMenu(oldName, updatedDish);
-  }
-
-  private void updateDishInWeeklyMenu(String oldName, Dish updatedDish) {
-    Map<String, Map<String, Dish>> weeklyMenu = repository.getWeeklyMenu();
-    for (Map<String, Dish> dayMenu : weeklyMenu.values()) {
-      for (Map.Entry<String, Dish> entry : dayMenu.entrySet()) {
-        if (entry.getValue() != null && entry.getValue().getName().equals(oldName)) {
-          dayMenu.put(entry.getKey(), updatedDish);
-        }
-      }
-    }
-    repository.setWeeklyMenu(weeklyMenu);
+    repository.updateDish(oldName, updatedDish);
   }
 
   public void removeDish(String dishName) {
@@ -60,12 +43,23 @@ public class DishService {
         .orElse(null);
   }
 
+  /**
+   * Ищет блюда по мере ввода с ранжированием по релевантности.
+   */
+  public List<Dish> searchDishes(String query, int limit) {
+    return repository.searchDishes(query, limit);
+  }
+
   /**
    * Находит все блюда, содержащие указанный ингредиент.
    */
   public List<Dish> findDishesByIngredient(String ingredient) {
+    int productId = repository.getProductDictionary().idOf(ingredient);
+    if (productId < 0) {
+      return new ArrayList<>();
+    }
     return repository.getDishes().stream()
-        .filter(d -> d.getIngredients().containsKey(ingredient))
+        .filter(d -> d.containsProduct(productId))
         .collect(Collectors.toList());
   }
 }
\ No newline at end of file
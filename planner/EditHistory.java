@@ -0,0 +1,90 @@
+package planner;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Ограниченная история изменений для отмены и повтора.
+ * Новое изменение очищает стек повтора; самые старые изменения вытесняются.
+ */
+public class EditHistory {
+  /**
+   * Глубина истории по умолчанию.
+   */
+  public static final int DEFAULT_CAPACITY = 200;
+
+  private final int capacity;
+  private final Deque<MenuEdit> undo = new ArrayDeque<>();
+  private final Deque<MenuEdit> redo = new ArrayDeque<>();
+
+  public EditHistory() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public EditHistory(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Глубина истории должна быть положительной");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Добавляет выполненное изменение.
+   */
+  public synchronized void record(MenuEdit edit) {
+    undo.push(edit);
+    if (undo.size() > capacity) {
+      undo.removeLast();
+    }
+    redo.clear();
+  }
+
+  /**
+   * Забирает последнее изменение для отмены и переносит его в стек повтора.
+   * Возвращает {@code null}, если отменять нечего.
+   */
+  public synchronized MenuEdit undo() {
+    MenuEdit edit = undo.poll();
+    if (edit != null) {
+      redo.push(edit);
+    }
+    return edit;
+  }
+
+  /**
+   * Забирает последнее отменённое изменение для повтора.
+   * Возвращает {@code null}, если повторять нечего.
+   */
+  public synchronized MenuEdit redo() {
+    MenuEdit edit = redo.poll();
+    if (edit != null) {
+      undo.push(edit);
+    }
+    return edit;
+  }
+
+  public synchronized boolean canUndo() {
+    return !undo.isEmpty();
+  }
+
+  public synchronized boolean canRedo() {
+    return !redo.isEmpty();
+  }
+
+  public synchronized String getUndoLabel() {
+    return undo.isEmpty() ? null : undo.peek().getLabel();
+  }
+
+  public synchronized String getRedoLabel() {
+    return redo.isEmpty() ? null : redo.peek().getLabel();
+  }
+
+  public synchronized int size() {
+    return undo.size();
+  }
+
+  public synchronized void clear() {
+    undo.clear();
+    redo.clear();
+  }
+}
@@ -21,13 +21,18 @@ public class ExportService {
    */
 
   public void exportProductsToFile(String filename) throws IOException {
+    PlannerEvents.ExportEvent event = new PlannerEvents.ExportEvent();
+    event.begin();
+    int entries = 0;
     try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
       for (Map.Entry<String, ProductQuantity> entry : repository.getProducts().entrySet()) {
         ProductQuantity pq = entry.getValue();
         writer.write(entry.getKey() + ": " + pq.getAmount() + " " + pq.getUnit());
         writer.newLine();
+        entries++;
       }
     }
+    commitExportEvent(event, "products", filename, entries);
   }
 
   /**
@@ -35,6 +40,9 @@ public class ExportService {
    */
 
   public void exportMenuToFile(String filename) throws IOException {
+    PlannerEvents.ExportEvent event = new PlannerEvents.ExportEvent();
+    event.begin();
+    int entries = 0;
     try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
       String[] daysOrder = { "Понедельник", "Вторник", "Среда", "Четверг",
           "Пятница", "Суббота", "Воскресенье" };
@@ -50,20 +58,21 @@ public class ExportService {
             Dish dish = dayMenu.get(mealType);
             writer.write("  " + mealType + ": " + (dish != null ? dish.getName() : "Не выбрано"));
             writer.newLine();
+            if (dish != null) {
+              entries++;
+            }
 
             if (dish != null && dish.getDescription() != null && !dish.getDescription().isEmpty()) {
               writer.write("    Описание: " + dish.getDescription());
               writer.newLine();
             }
 
-            if (dish != null && !dish.getIngredients().isEmpty()) {
+            if (dish != null && dish.getIngredientCount() > 0) {
               writer.write("    Ингредиенты:");
               writer.newLine();
-              for (Map.Entry<String, ProductQuantity> ingredient : dish.getIngredients()
-                  .entrySet()) {
-                ProductQuantity pq = ingredient.getValue();
-                writer.write("      - " + ingredient.getKey() + ": "
-                    + pq.getAmount() + " " + pq.getUnit());
+              for (int i = 0; i < dish.getIngredientCount(); i++) {
+                writer.write("      - " + dish.getProduct(i) + ": "
+                    + dish.getAmount(i) + " " + dish.getUnit(i));
                 writer.newLine();
               }
             }
@@ -73,5 +82,17 @@ public class ExportService {
         }
       }
     }
+    commitExportEvent(event, "menu", filename, entries);
+  }
+
+  private static void commitExportEvent(PlannerEvents.ExportEvent event, String kind,
+      String filename, int entries) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.kind = kind;
+      event.file = filename;
+      event.entries = entries;
+      event.commit();
+    }
   }
 }
\ No newline at end of file
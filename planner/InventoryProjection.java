@@ -0,0 +1,262 @@
+package planner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Прогноз запаса по дням недели. Продукты списываются сразу при планировании блюда,
+ * поэтому запас в репозитории — это остаток на конец недели. Прогноз восстанавливает
+ * запас на начало недели и вычитает расход приёмов пищи в порядке их следования.
+ *
+ * <p>Расход каждого продукта по приёмам пищи хранится в дереве Фенвика, поэтому
+ * изменение приёма пищи и запрос остатка выполняются за логарифмическое время.
+ * Продукт, списанный до нуля, удаляется из запаса; его остаток считается нулевым,
+ * а начальный запас равен расходу недели. Продукт, которого в запасе не было
+ * (нет ни удаления, ни истории списаний), при планировании не списывался: его
+ * начальный запас нулевой, и прогноз уходит в минус в первый день использования.
+ */
+public class InventoryProjection implements RepositoryListener {
+  private static final String[] DAYS = MenuRepository.DAYS;
+  private static final String[] MEAL_TYPES = MenuRepository.MEAL_TYPES;
+  private static final int MEALS = MEAL_TYPES.length;
+  private static final int SLOTS = MenuRepository.SLOT_COUNT;
+  private static final double EPSILON = 1e-9;
+
+  private final MenuRepository repository;
+  private final ConsumptionStats usage;
+  private final ProductDictionary dictionary = ProductDictionary.getInstance();
+  private final Map<Integer, Consumption> consumption = new HashMap<>();
+  /**
+   * Запас в репозитории по идентификатору продукта в базовых единицах;
+   * NaN — продукта в запасе не было.
+   */
+  private double[] stock = new double[64];
+  private ProductUnit[] units = new ProductUnit[64];
+  private final Dish[] slotDishes = new Dish[SLOTS];
+
+  /**
+   * Создает прогноз для репозитория и подписывается на его изменения. По истории
+   * расхода {@code usage} после загрузки отличается продукт, списанный до нуля,
+   * от продукта, которого в запасе не было.
+   */
+  public InventoryProjection(MenuRepository repository, ConsumptionStats usage) {
+    this.repository = repository;
+    this.usage = usage;
+    Arrays.fill(stock, Double.NaN);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      recalculate();
+    }
+  }
+
+  /**
+   * Расход одного продукта по приёмам пищи недели (дерево Фенвика).
+   */
+  private static final class Consumption {
+    private final double[] tree = new double[SLOTS + 1];
+    private double total;
+
+    void add(int slot, double amount) {
+      total += amount;
+      for (int i = slot + 1; i <= SLOTS; i += i & -i) {
+        tree[i] += amount;
+      }
+    }
+
+    /**
+     * Расход с начала недели по приём пищи {@code slot} включительно.
+     */
+    double through(int slot) {
+      double sum = 0;
+      for (int i = slot + 1; i > 0; i -= i & -i) {
+        sum += tree[i];
+      }
+      return sum;
+    }
+
+    /**
+     * Первый приём пищи, после которого расход превышает {@code limit}, или -1.
+     */
+    int firstExceeding(double limit) {
+      if (total <= limit + EPSILON) {
+        return -1;
+      }
+      int position = 0;
+      double sum = 0;
+      for (int step = Integer.highestOneBit(SLOTS); step > 0; step >>= 1) {
+        int next = position + step;
+        if (next <= SLOTS && sum + tree[next] <= limit + EPSILON) {
+          position = next;
+          sum += tree[next];
+        }
+      }
+      return position;
+    }
+  }
+
+  /**
+   * Возвращает единицу, в которой прогноз возвращает количество продукта:
+   * единицу запаса или, если продукта нет в запасе, единицу из рецепта.
+   */
+  public synchronized ProductUnit getUnit(String product) {
+    int id = idOf(product);
+    return id >= 0 && id < units.length && units[id] != null ? units[id] : ProductUnit.GRAMS;
+  }
+
+  /**
+   * Возвращает запас продукта на начало недели в единицах {@link #getUnit(String)}.
+   */
+  public synchronized double getOpeningAmount(String product) {
+    return getUnit(product).convertFromBaseUnit(opening(idOf(product)));
+  }
+
+  /**
+   * Возвращает ожидаемый запас продукта после всех приёмов пищи дня
+   * в единицах {@link #getUnit(String)}; отрицательное значение означает нехватку.
+   *
+   * @throws IllegalArgumentException если день неизвестен
+   */
+  public synchronized double getProjectedAmount(String product, String day) {
+    return getProjectedAmount(product, day, MEAL_TYPES[MEALS - 1]);
+  }
+
+  /**
+   * Возвращает ожидаемый запас продукта после указанного приёма пищи.
+   *
+   * @throws IllegalArgumentException если день или приём пищи неизвестен
+   */
+  public synchronized double getProjectedAmount(String product, String day, String mealType) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (slot < 0) {
+      throw new IllegalArgumentException("Неизвестный день или приём пищи: " + day + ", "
+          + mealType);
+    }
+    int id = idOf(product);
+    Consumption used = consumption.get(id);
+    double base = opening(id) - (used != null ? used.through(slot) : 0);
+    return getUnit(product).convertFromBaseUnit(base);
+  }
+
+  /**
+   * Возвращает первый день, в который запаса продукта не хватит, или {@code null}.
+   */
+  public synchronized String getFirstShortageDay(String product) {
+    int id = idOf(product);
+    Consumption used = consumption.get(id);
+    int slot = used != null ? used.firstExceeding(opening(id)) : -1;
+    return slot >= 0 ? DAYS[slot / MEALS] : null;
+  }
+
+  /**
+   * Возвращает продукты, которых не хватит на неделю, с первым днём нехватки
+   * в порядке дней.
+   */
+  public synchronized Map<String, String> getShortages() {
+    Map<Integer, Integer> bySlot = new HashMap<>();
+    for (Map.Entry<Integer, Consumption> entry : consumption.entrySet()) {
+      int slot = entry.getValue().firstExceeding(opening(entry.getKey()));
+      if (slot >= 0) {
+        bySlot.put(entry.getKey(), slot);
+      }
+    }
+    Map<String, String> result = new LinkedHashMap<>();
+    bySlot.entrySet().stream()
+        .sorted(Map.Entry.<Integer, Integer>comparingByValue()
+            .thenComparing(e -> dictionary.nameOf(e.getKey())))
+        .forEach(e -> result.put(dictionary.nameOf(e.getKey()), DAYS[e.getValue() / MEALS]));
+    return result;
+  }
+
+  @Override
+  public synchronized void slotChanged(String day, String mealType, Dish before, Dish after) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (slot < 0) {
+      return;
+    }
+    apply(slot, slotDishes[slot], -1);
+    slotDishes[slot] = after;
+    apply(slot, after, 1);
+  }
+
+  @Override
+  public synchronized void productChanged(String product, ProductQuantity before,
+      ProductQuantity after) {
+    int id = dictionary.intern(product);
+    ensureCapacity(id);
+    if (after != null) {
+      stock[id] = after.getUnit().convertToBaseUnit(after.getAmount());
+      units[id] = after.getUnit();
+    } else {
+      stock[id] = 0;
+    }
+  }
+
+  @Override
+  public void dataLoaded() {
+    recalculate();
+  }
+
+  /**
+   * Перестраивает прогноз по текущему меню и запасу репозитория.
+   */
+  public synchronized void recalculate() {
+    consumption.clear();
+    Arrays.fill(stock, Double.NaN);
+    Map<String, Map<String, Dish>> menu = repository.getWeeklyMenu();
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Map<String, Dish> dayMenu = menu.get(DAYS[slot / MEALS]);
+      slotDishes[slot] = dayMenu != null ? dayMenu.get(MEAL_TYPES[slot % MEALS]) : null;
+      apply(slot, slotDishes[slot], 1);
+    }
+    for (Map.Entry<String, ProductQuantity> entry : repository.getProducts().entrySet()) {
+      productChanged(entry.getKey(), null, entry.getValue());
+    }
+    for (int id : consumption.keySet()) {
+      if (Double.isNaN(stock[id]) && usage.hasUsage(dictionary.nameOf(id))) {
+        stock[id] = 0;
+      }
+    }
+  }
+
+  private void apply(int slot, Dish dish, int sign) {
+    if (dish == null) {
+      return;
+    }
+    for (int i = 0; i < dish.getIngredientCount(); i++) {
+      int id = dish.getProductId(i);
+      ensureCapacity(id);
+      if (units[id] == null) {
+        units[id] = dish.getUnit(i);
+      }
+      double amount = dish.getUnit(i).convertToBaseUnit(dish.getAmount(i));
+      consumption.computeIfAbsent(id, p -> new Consumption()).add(slot, sign * amount);
+    }
+  }
+
+  /**
+   * Запас на начало недели: остаток плюс уже списанный расход недели.
+   */
+  private double opening(int id) {
+    if (id < 0 || id >= stock.length || Double.isNaN(stock[id])) {
+      return 0;
+    }
+    Consumption used = consumption.get(id);
+    return stock[id] + (used != null ? used.total : 0);
+  }
+
+  private int idOf(String product) {
+    return dictionary.idOf(product);
+  }
+
+  private void ensureCapacity(int id) {
+    if (id >= stock.length) {
+      int length = stock.length;
+      int capacity = Math.max(id + 1, length * 2);
+      stock = Arrays.copyOf(stock, capacity);
+      Arrays.fill(stock, length, capacity, Double.NaN);
+      units = Arrays.copyOf(units, capacity);
+    }
+  }
+}
@@ -0,0 +1,553 @@
+package planner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Хранилище во встроенной базе данных через JDBC, например H2 или SQLite в файловом режиме.
+ * Блюда, ингредиенты, продукты и приёмы пищи лежат в отдельных таблицах с индексами,
+ * поэтому сохранение изменённых ключей обновляет только их строки, а отдельные блюда
+ * можно найти без загрузки всего каталога. Дополнительные сегменты хранятся
+ * сериализованными в таблице сегментов. Драйвер базы должен быть в classpath.
+ */
+public class JdbcStorageEngine implements StorageEngine {
+  private static final String[] SCHEMA = {
+      "CREATE TABLE IF NOT EXISTS planner_segments (name VARCHAR(64) PRIMARY KEY,"
+          + " data BLOB, saved_at BIGINT NOT NULL)",
+      "CREATE TABLE IF NOT EXISTS planner_dishes (name VARCHAR(255) PRIMARY KEY,"
+          + " sort_order INT NOT NULL, description VARCHAR(4000))",
+      "CREATE INDEX IF NOT EXISTS planner_dishes_order ON planner_dishes (sort_order)",
+      "CREATE TABLE IF NOT EXISTS planner_ingredients (dish VARCHAR(255) NOT NULL,"
+          + " product VARCHAR(255) NOT NULL, amount DOUBLE NOT NULL, unit VARCHAR(16) NOT NULL,"
+          + " PRIMARY KEY (dish, product))",
+      "CREATE INDEX IF NOT EXISTS planner_ingredients_product ON planner_ingredients (product)",
+      "CREATE TABLE IF NOT EXISTS planner_products (name VARCHAR(255) PRIMARY KEY,"
+          + " amount DOUBLE NOT NULL, unit VARCHAR(16) NOT NULL)",
+      "CREATE TABLE IF NOT EXISTS planner_slots (day_name VARCHAR(32) NOT NULL,"
+          + " meal_type VARCHAR(32) NOT NULL, dish VARCHAR(255) NOT NULL,"
+          + " description VARCHAR(4000), PRIMARY KEY (day_name, meal_type))",
+      "CREATE TABLE IF NOT EXISTS planner_slot_ingredients (day_name VARCHAR(32) NOT NULL,"
+          + " meal_type VARCHAR(32) NOT NULL, product VARCHAR(255) NOT NULL,"
+          + " amount DOUBLE NOT NULL, unit VARCHAR(16) NOT NULL,"
+          + " PRIMARY KEY (day_name, meal_type, product))"
+  };
+  private static final String[] TABLES = { "planner_slot_ingredients", "planner_slots",
+      "planner_products", "planner_ingredients", "planner_dishes", "planner_segments" };
+
+  private final String url;
+  private final Connection connection;
+
+  /**
+   * Открывает базу по адресу JDBC и создаёт недостающие таблицы.
+   *
+   * @throws IOException если драйвер не найден или база недоступна
+   */
+  public JdbcStorageEngine(String url) throws IOException {
+    this.url = url;
+    try {
+      connection = DriverManager.getConnection(url);
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        for (String ddl : SCHEMA) {
+          statement.execute(ddl);
+        }
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      throw new IOException("не удалось открыть базу " + url + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "база данных " + url;
+  }
+
+  @Override
+  public synchronized boolean exists(String segment) throws IOException {
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT 1 FROM planner_segments WHERE name = ?")) {
+      select.setString(1, segment);
+      try (ResultSet rows = select.executeQuery()) {
+        return rows.next();
+      }
+    } catch (SQLException e) {
+      throw new IOException("ошибка обращения к базе: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public synchronized Object read(String segment) throws IOException {
+    if (!exists(segment)) {
+      return null;
+    }
+    try {
+      switch (segment) {
+        case MENU_SEGMENT:
+          return readMenu();
+        case INVENTORY_SEGMENT:
+          return readProducts();
+        case CATALOG_SEGMENT:
+          return readDishes();
+        default:
+          return readBlob(segment);
+      }
+    } catch (SQLException e) {
+      throw new IOException("ошибка чтения сегмента " + segment + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public synchronized long write(String segment, Object data, Set<String> changedKeys)
+      throws IOException {
+    try {
+      long bytes;
+      byte[] blob = null;
+      switch (segment) {
+        case MENU_SEGMENT:
+          bytes = writeMenu((Map<String, Map<String, Dish>>) data, changedKeys);
+          break;
+        case INVENTORY_SEGMENT:
+          bytes = writeProducts((Map<String, ProductQuantity>) data, changedKeys);
+          break;
+        case CATALOG_SEGMENT:
+          bytes = writeDishes((List<Dish>) data, changedKeys);
+          break;
+        default:
+          blob = serialize(data);
+          bytes = blob.length;
+          break;
+      }
+      try (PreparedStatement delete = connection.prepareStatement(
+          "DELETE FROM planner_segments WHERE name = ?");
+          PreparedStatement insert = connection.prepareStatement(
+              "INSERT INTO planner_segments (name, data, saved_at) VALUES (?, ?, ?)")) {
+        delete.setString(1, segment);
+        delete.executeUpdate();
+        insert.setString(1, segment);
+        insert.setBytes(2, blob);
+        insert.setLong(3, System.currentTimeMillis());
+        insert.executeUpdate();
+      }
+      connection.commit();
+      return bytes;
+    } catch (SQLException | RuntimeException e) {
+      rollback();
+      throw new IOException("ошибка записи сегмента " + segment + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public synchronized boolean deleteAll() {
+    int deleted = 0;
+    try (Statement statement = connection.createStatement()) {
+      for (String table : TABLES) {
+        deleted += statement.executeUpdate("DELETE FROM " + table);
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      rollback();
+      System.err.println("Ошибка удаления данных из базы: " + e.getMessage());
+    }
+    return deleted > 0;
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      System.err.println("Ошибка закрытия базы: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Читает одно блюдо каталога по индексу названия. Возвращает {@code null}, если его нет.
+   */
+  public synchronized Dish findDish(String name) throws IOException {
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT description FROM planner_dishes WHERE name = ?")) {
+      select.setString(1, name);
+      try (ResultSet rows = select.executeQuery()) {
+        if (!rows.next()) {
+          return null;
+        }
+        return new Dish(name, rows.getString(1), readIngredients(name));
+      }
+    } catch (SQLException e) {
+      throw new IOException("ошибка чтения блюда " + name + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Возвращает названия блюд каталога, в которые входит продукт, по индексу ингредиентов.
+   */
+  public synchronized List<String> findDishesWithProduct(String product) throws IOException {
+    List<String> result = new ArrayList<>();
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT dish FROM planner_ingredients WHERE product = ? ORDER BY dish")) {
+      select.setString(1, product);
+      try (ResultSet rows = select.executeQuery()) {
+        while (rows.next()) {
+          result.add(rows.getString(1));
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException("ошибка поиска блюд с продуктом " + product + ": "
+          + e.getMessage(), e);
+    }
+    return result;
+  }
+
+  private long writeProducts(Map<String, ProductQuantity> products, Set<String> changedKeys)
+      throws SQLException {
+    Collection<String> names = changedKeys != null ? changedKeys : products.keySet();
+    if (changedKeys == null) {
+      execute("DELETE FROM planner_products");
+    }
+    long bytes = 0;
+    try (PreparedStatement update = connection.prepareStatement(
+        "UPDATE planner_products SET amount = ?, unit = ? WHERE name = ?");
+        PreparedStatement insert = connection.prepareStatement(
+            "INSERT INTO planner_products (amount, unit, name) VALUES (?, ?, ?)");
+        PreparedStatement delete = connection.prepareStatement(
+            "DELETE FROM planner_products WHERE name = ?")) {
+      for (String name : names) {
+        ProductQuantity quantity = products.get(name);
+        if (quantity == null) {
+          delete.setString(1, name);
+          delete.executeUpdate();
+          continue;
+        }
+        bindProduct(update, name, quantity);
+        if (changedKeys == null || update.executeUpdate() == 0) {
+          bindProduct(insert, name, quantity);
+          insert.addBatch();
+        }
+        bytes += size(name) + Double.BYTES;
+      }
+      insert.executeBatch();
+    }
+    return bytes;
+  }
+
+  private long writeDishes(List<Dish> dishes, Set<String> changedKeys) throws SQLException {
+    Map<String, Integer> positions = new HashMap<>();
+    for (int i = 0; i < dishes.size(); i++) {
+      positions.putIfAbsent(dishes.get(i).getName(), i);
+    }
+    if (changedKeys == null) {
+      execute("DELETE FROM planner_ingredients");
+      execute("DELETE FROM planner_dishes");
+    }
+    Collection<String> names = changedKeys != null ? changedKeys : positions.keySet();
+
+    for (String name : names) {
+      if (!positions.containsKey(name)) {
+        deleteDish(name);
+      }
+    }
+    List<String> upserts = new ArrayList<>();
+    for (String name : names) {
+      if (positions.containsKey(name)) {
+        upserts.add(name);
+      }
+    }
+    upserts.sort(Comparator.comparing(positions::get));
+
+    long bytes = 0;
+    for (String name : upserts) {
+      Dish dish = dishes.get(positions.get(name));
+      bytes += upsertDish(dish, positions.get(name));
+    }
+    return bytes;
+  }
+
+  /**
+   * Удаляет блюдо и сдвигает порядок следующих за ним блюд.
+   */
+  private void deleteDish(String name) throws SQLException {
+    Integer position = dishPosition(name);
+    if (position == null) {
+      return;
+    }
+    update("DELETE FROM planner_ingredients WHERE dish = ?", name);
+    update("DELETE FROM planner_dishes WHERE name = ?", name);
+    update("UPDATE planner_dishes SET sort_order = sort_order - 1 WHERE sort_order > ?",
+        position);
+  }
+
+  /**
+   * Записывает блюдо на указанную позицию каталога. Строки остальных блюд
+   * сдвигаются, только если блюдо новое или переместилось.
+   */
+  private long upsertDish(Dish dish, int position) throws SQLException {
+    String name = dish.getName();
+    Integer current = dishPosition(name);
+    if (current != null && current == position) {
+      update("UPDATE planner_dishes SET description = ? WHERE name = ?",
+          dish.getDescription(), name);
+      update("DELETE FROM planner_ingredients WHERE dish = ?", name);
+    } else {
+      if (current != null) {
+        deleteDish(name);
+      }
+      update("UPDATE planner_dishes SET sort_order = sort_order + 1 WHERE sort_order >= ?",
+          position);
+      update("INSERT INTO planner_dishes (name, sort_order, description) VALUES (?, ?, ?)",
+          name, position, dish.getDescription());
+    }
+    long bytes = size(name) + size(dish.getDescription()) + Integer.BYTES;
+    try (PreparedStatement insert = connection.prepareStatement(
+        "INSERT INTO planner_ingredients (dish, product, amount, unit) VALUES (?, ?, ?, ?)")) {
+      for (int i = 0; i < dish.getIngredientCount(); i++) {
+        insert.setString(1, name);
+        bindIngredient(insert, 2, dish, i);
+        insert.addBatch();
+        bytes += size(dish.getProduct(i)) + Double.BYTES;
+      }
+      insert.executeBatch();
+    }
+    return bytes;
+  }
+
+  private long writeMenu(Map<String, Map<String, Dish>> menu, Set<String> changedKeys)
+      throws SQLException {
+    List<String[]> slots = new ArrayList<>();
+    if (changedKeys == null) {
+      execute("DELETE FROM planner_slot_ingredients");
+      execute("DELETE FROM planner_slots");
+      for (Map.Entry<String, Map<String, Dish>> day : menu.entrySet()) {
+        for (String mealType : day.getValue().keySet()) {
+          slots.add(new String[] { day.getKey(), mealType });
+        }
+      }
+    } else {
+      for (String key : changedKeys) {
+        slots.add(key.split(SLOT_SEPARATOR, 2));
+      }
+    }
+
+    long bytes = 0;
+    for (String[] slot : slots) {
+      Map<String, Dish> dayMenu = menu.get(slot[0]);
+      Dish dish = dayMenu != null ? dayMenu.get(slot[1]) : null;
+      if (changedKeys != null) {
+        update("DELETE FROM planner_slot_ingredients WHERE day_name = ? AND meal_type = ?",
+            slot[0], slot[1]);
+        update("DELETE FROM planner_slots WHERE day_name = ? AND meal_type = ?",
+            slot[0], slot[1]);
+      }
+      if (dish == null) {
+        continue;
+      }
+      update("INSERT INTO planner_slots (day_name, meal_type, dish, description)"
+          + " VALUES (?, ?, ?, ?)", slot[0], slot[1], dish.getName(), dish.getDescription());
+      bytes += size(slot[0]) + size(slot[1]) + size(dish.getName())
+          + size(dish.getDescription());
+      try (PreparedStatement insert = connection.prepareStatement(
+          "INSERT INTO planner_slot_ingredients (day_name, meal_type, product, amount, unit)"
+              + " VALUES (?, ?, ?, ?, ?)")) {
+        for (int i = 0; i < dish.getIngredientCount(); i++) {
+          insert.setString(1, slot[0]);
+          insert.setString(2, slot[1]);
+          bindIngredient(insert, 3, dish, i);
+          insert.addBatch();
+          bytes += size(dish.getProduct(i)) + Double.BYTES;
+        }
+        insert.executeBatch();
+      }
+    }
+    return bytes;
+  }
+
+  private Map<String, Map<String, Dish>> readMenu() throws SQLException {
+    Map<String, Map<String, Map<String, ProductQuantity>>> ingredients = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery("SELECT day_name, meal_type, product, amount,"
+            + " unit FROM planner_slot_ingredients")) {
+      while (rows.next()) {
+        ingredients.computeIfAbsent(rows.getString(1), k -> new HashMap<>())
+            .computeIfAbsent(rows.getString(2), k -> new HashMap<>())
+            .put(rows.getString(3), quantity(rows, 4));
+      }
+    }
+    Map<String, Map<String, Dish>> menu = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery(
+            "SELECT day_name, meal_type, dish, description FROM planner_slots")) {
+      while (rows.next()) {
+        String day = rows.getString(1);
+        String mealType = rows.getString(2);
+        Map<String, ProductQuantity> slotIngredients = ingredients
+            .getOrDefault(day, new HashMap<>()).getOrDefault(mealType, new HashMap<>());
+        menu.computeIfAbsent(day, k -> new HashMap<>())
+            .put(mealType, new Dish(rows.getString(3), rows.getString(4), slotIngredients));
+      }
+    }
+    return menu;
+  }
+
+  private Map<String, ProductQuantity> readProducts() throws SQLException {
+    Map<String, ProductQuantity> products = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery(
+            "SELECT name, amount, unit FROM planner_products")) {
+      while (rows.next()) {
+        products.put(rows.getString(1), quantity(rows, 2));
+      }
+    }
+    return products;
+  }
+
+  private List<Dish> readDishes() throws SQLException {
+    Map<String, Map<String, ProductQuantity>> ingredients = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery(
+            "SELECT dish, product, amount, unit FROM planner_ingredients")) {
+      while (rows.next()) {
+        ingredients.computeIfAbsent(rows.getString(1), k -> new HashMap<>())
+            .put(rows.getString(2), quantity(rows, 3));
+      }
+    }
+    List<Dish> dishes = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery(
+            "SELECT name, description FROM planner_dishes ORDER BY sort_order")) {
+      while (rows.next()) {
+        String name = rows.getString(1);
+        dishes.add(new Dish(name, rows.getString(2),
+            ingredients.getOrDefault(name, new HashMap<>())));
+      }
+    }
+    return dishes;
+  }
+
+  private Map<String, ProductQuantity> readIngredients(String dish) throws SQLException {
+    Map<String, ProductQuantity> result = new HashMap<>();
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT product, amount, unit FROM planner_ingredients WHERE dish = ?")) {
+      select.setString(1, dish);
+      try (ResultSet rows = select.executeQuery()) {
+        while (rows.next()) {
+          result.put(rows.getString(1), quantity(rows, 2));
+        }
+      }
+    }
+    return result;
+  }
+
+  private Object readBlob(String segment) throws SQLException, IOException {
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT data FROM planner_segments WHERE name = ?")) {
+      select.setString(1, segment);
+      try (ResultSet rows = select.executeQuery()) {
+        byte[] bytes = rows.next() ? rows.getBytes(1) : null;
+        if (bytes == null) {
+          return null;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+          return ois.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IOException("не удалось прочитать сегмент " + segment + ": "
+              + e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  private Integer dishPosition(String name) throws SQLException {
+    try (PreparedStatement select = connection.prepareStatement(
+        "SELECT sort_order FROM planner_dishes WHERE name = ?")) {
+      select.setString(1, name);
+      try (ResultSet rows = select.executeQuery()) {
+        return rows.next() ? rows.getInt(1) : null;
+      }
+    }
+  }
+
+  private static ProductQuantity quantity(ResultSet rows, int column) throws SQLException {
+    double amount = rows.getDouble(column);
+    String unit = rows.getString(column + 1);
+    try {
+      return new ProductQuantity(amount, ProductUnit.valueOf(unit));
+    } catch (IllegalArgumentException | NullPointerException e) {
+      throw new SQLException("неверное количество " + amount + " " + unit + ": "
+          + e.getMessage(), e);
+    }
+  }
+
+  private static void bindProduct(PreparedStatement statement, String name,
+      ProductQuantity quantity) throws SQLException {
+    statement.setDouble(1, quantity.getAmount());
+    statement.setString(2, quantity.getUnit().name());
+    statement.setString(3, name);
+  }
+
+  private static void bindIngredient(PreparedStatement statement, int first, Dish dish,
+      int index) throws SQLException {
+    statement.setString(first, dish.getProduct(index));
+    statement.setDouble(first + 1, dish.getAmount(index));
+    statement.setString(first + 2, dish.getUnit(index).name());
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+  }
+
+  private int update(String sql, Object... parameters) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        if (parameters[i] == null) {
+          statement.setNull(i + 1, Types.VARCHAR);
+        } else {
+          statement.setObject(i + 1, parameters[i]);
+        }
+      }
+      return statement.executeUpdate();
+    }
+  }
+
+  private void rollback() {
+    try {
+      connection.rollback();
+    } catch (SQLException e) {
+      System.err.println("Ошибка отката транзакции: " + e.getMessage());
+    }
+  }
+
+  private static byte[] serialize(Object data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(data);
+    } catch (IOException e) {
+      throw new IllegalStateException("не удалось сериализовать данные: " + e.getMessage(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static long size(String value) {
+    return value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+  }
+}
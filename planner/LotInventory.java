@@ -0,0 +1,550 @@
+package planner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Партии продуктов с датами покупки и окончания срока годности. Репозиторий хранит
+ * общее количество продукта, а партии повторяют его изменения: уменьшение
+ * списывается с партий, у которых срок истекает раньше (FEFO), увеличение создаёт
+ * новую партию. При возврате продуктов количество возвращается в те партии,
+ * из которых было списано последним.
+ *
+ * <p>Партии каждого продукта упорядочены очередью с приоритетом по сроку годности,
+ * а все партии со сроком — общим индексом по дате окончания срока, поэтому
+ * запрос истекающих партий не перебирает запас.
+ */
+public class LotInventory implements RepositoryListener, SegmentHandler {
+  public static final String SEGMENT = "lots";
+  /**
+   * Сколько последних списаний и возвратов каждого продукта хранится.
+   */
+  static final int LOG_LIMIT = 64;
+
+  private static final double EPSILON = 1e-9;
+  private static final Comparator<LotRecord> FEFO = Comparator
+      .comparing((LotRecord lot) -> lot.expires, Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparing(lot -> lot.purchased)
+      .thenComparingLong(lot -> lot.id);
+  private static final Comparator<LotRecord> BY_EXPIRY = Comparator
+      .comparing((LotRecord lot) -> lot.expires)
+      .thenComparingLong(lot -> lot.id);
+
+  private final MenuRepository repository;
+  private final Map<String, PriorityQueue<LotRecord>> lots = new HashMap<>();
+  private final TreeSet<LotRecord> expiring = new TreeSet<>(BY_EXPIRY);
+  private final Map<String, Deque<Consumption>> consumptions = new HashMap<>();
+  private final Map<String, Deque<Consumption>> restorations = new HashMap<>();
+  private long nextId;
+  private boolean returning;
+  private boolean reverting;
+  private LocalDate pendingPurchased;
+  private LocalDate pendingExpires;
+  /**
+   * Даты партий, купленных повторяемым изменением; не {@code null}, пока идёт повтор.
+   */
+  private Map<String, MenuEdit.Purchase> replayed;
+
+  /**
+   * Создает партии и подключает их к репозиторию.
+   */
+  public LotInventory(MenuRepository repository) {
+    this.repository = repository;
+    repository.registerSegment(SEGMENT, this);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      reconcile();
+    }
+  }
+
+  /**
+   * Партия продукта. Количество указано в единице, в которой партия была добавлена;
+   * {@code null} вместо срока годности означает, что срок неизвестен.
+   */
+  public static final class Lot {
+    private final String product;
+    private final ProductQuantity quantity;
+    private final LocalDate purchased;
+    private final LocalDate expires;
+
+    Lot(String product, ProductQuantity quantity, LocalDate purchased, LocalDate expires) {
+      this.product = product;
+      this.quantity = quantity;
+      this.purchased = purchased;
+      this.expires = expires;
+    }
+
+    public String getProduct() {
+      return product;
+    }
+
+    public ProductQuantity getQuantity() {
+      return quantity;
+    }
+
+    public LocalDate getPurchased() {
+      return purchased;
+    }
+
+    public LocalDate getExpires() {
+      return expires;
+    }
+
+    @Override
+    public String toString() {
+      return product + " " + quantity.getAmount() + " " + quantity.getUnit()
+          + (expires != null ? " до " + expires : "");
+    }
+  }
+
+  private static final class LotRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final String product;
+    private final byte unit;
+    private final LocalDate purchased;
+    private final LocalDate expires;
+    private double amount;
+    private boolean active;
+
+    LotRecord(long id, String product, ProductUnit unit, LocalDate purchased,
+        LocalDate expires) {
+      this.id = id;
+      this.product = product;
+      this.unit = (byte) unit.ordinal();
+      this.purchased = purchased;
+      this.expires = expires;
+    }
+
+    Lot toLot() {
+      ProductUnit productUnit = ProductUnit.ofOrdinal(unit);
+      return new Lot(product, new ProductQuantity(productUnit.convertFromBaseUnit(amount),
+          productUnit), purchased, expires);
+    }
+  }
+
+  /**
+   * Количество, списанное из партии или возвращённое в неё.
+   */
+  private static final class Consumption implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final LotRecord lot;
+    private double amount;
+
+    Consumption(LotRecord lot, double amount) {
+      this.lot = lot;
+      this.amount = amount;
+    }
+  }
+
+  private static final class State implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long nextId;
+    private final ArrayList<LotRecord> lots;
+    private final HashMap<String, ArrayList<Consumption>> consumptions;
+    private final HashMap<String, ArrayList<Consumption>> restorations;
+
+    State(long nextId, ArrayList<LotRecord> lots,
+        HashMap<String, ArrayList<Consumption>> consumptions,
+        HashMap<String, ArrayList<Consumption>> restorations) {
+      this.nextId = nextId;
+      this.lots = lots;
+      this.consumptions = consumptions;
+      this.restorations = restorations;
+    }
+  }
+
+  /**
+   * Выполняет добавление продукта так, что новая партия получит указанные даты.
+   */
+  public void purchasing(LocalDate purchased, LocalDate expires, Runnable action) {
+    synchronized (this) {
+      pendingPurchased = purchased;
+      pendingExpires = expires;
+    }
+    try {
+      action.run();
+    } finally {
+      synchronized (this) {
+        pendingPurchased = null;
+        pendingExpires = null;
+      }
+    }
+  }
+
+  /**
+   * Выполняет возврат продуктов: увеличение количества восстанавливает партии,
+   * из которых продукт был списан последним.
+   */
+  public void returning(Runnable action) {
+    withMode(false, action);
+  }
+
+  /**
+   * Выполняет отмену изменения: увеличение восстанавливает списанные партии, а уменьшение
+   * сначала забирает возвращённое в партии, затем убирает последние добавленные партии.
+   */
+  public void reverting(Runnable action) {
+    withMode(true, action);
+  }
+
+  /**
+   * Выполняет повтор отменённого изменения. Купленный изменением продукт снова
+   * добавляется партией с датами исходной покупки. Остальные увеличения возвращают
+   * количество в партии, из которых его забрала отмена, а уменьшения забирают
+   * возвращённое отменой и списывают остаток по сроку годности.
+   */
+  public void replaying(MenuEdit edit, Runnable action) {
+    synchronized (this) {
+      replayed = edit.getPurchases();
+    }
+    try {
+      action.run();
+    } finally {
+      synchronized (this) {
+        replayed = null;
+      }
+    }
+  }
+
+  /**
+   * Возвращает партии продукта в порядке списания.
+   */
+  public synchronized List<Lot> getLots(String product) {
+    PriorityQueue<LotRecord> queue = lots.get(repository.findProductName(product));
+    List<Lot> result = new ArrayList<>();
+    if (queue != null) {
+      List<LotRecord> ordered = new ArrayList<>(queue);
+      ordered.sort(FEFO);
+      for (LotRecord lot : ordered) {
+        result.add(lot.toLot());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Возвращает ближайший срок годности продукта или {@code null}, если он неизвестен.
+   */
+  public synchronized LocalDate getNextExpiry(String product) {
+    PriorityQueue<LotRecord> queue = lots.get(repository.findProductName(product));
+    return queue != null && !queue.isEmpty() ? queue.peek().expires : null;
+  }
+
+  /**
+   * Возвращает партии, срок годности которых истекает не позже чем через {@code days}
+   * дней, включая уже просроченные, в порядке срока.
+   */
+  public synchronized List<Lot> expiringWithin(int days) {
+    return expiringBefore(LocalDate.now().plusDays(days));
+  }
+
+  /**
+   * Возвращает партии со сроком годности не позже указанной даты в порядке срока.
+   */
+  public synchronized List<Lot> expiringBefore(LocalDate date) {
+    LotRecord bound = new LotRecord(Long.MAX_VALUE, "", ProductUnit.GRAMS, date, date);
+    List<Lot> result = new ArrayList<>();
+    for (LotRecord lot : expiring.headSet(bound, true)) {
+      result.add(lot.toLot());
+    }
+    return result;
+  }
+
+  public synchronized int getLotCount() {
+    int count = 0;
+    for (PriorityQueue<LotRecord> queue : lots.values()) {
+      count += queue.size();
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized void productChanged(String product, ProductQuantity before,
+      ProductQuantity after) {
+    double delta = base(after) - base(before);
+    if (delta > EPSILON) {
+      MenuEdit.Purchase purchase = replayed != null ? replayed.get(product) : null;
+      if ((returning || reverting || replayed != null) && purchase == null) {
+        delta = transfer(product, delta, consumptions, restorations, 1);
+      }
+      if (delta > EPSILON) {
+        LocalDate purchased = purchase != null ? purchase.purchased : pendingPurchased;
+        LocalDate expires = purchase != null ? purchase.expires : pendingExpires;
+        addLot(product, delta, after.getUnit(), purchased != null ? purchased
+            : LocalDate.now(), expires);
+        if (pendingPurchased != null) {
+          repository.purchasedInEdit(product, pendingPurchased, pendingExpires);
+        }
+      }
+    } else if (delta < -EPSILON) {
+      if (reverting) {
+        removeNewest(product, transfer(product, -delta, restorations, consumptions, -1));
+      } else if (replayed != null) {
+        consume(product, transfer(product, -delta, restorations, consumptions, -1), true);
+      } else {
+        consume(product, -delta, true);
+      }
+    }
+    if (after == null) {
+      dropLots(product);
+    }
+    repository.markSegmentDirty(SEGMENT);
+  }
+
+  @Override
+  public void dataLoaded() {
+    reconcile();
+  }
+
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (!(data instanceof State)) {
+      return;
+    }
+    State state = (State) data;
+    lots.clear();
+    expiring.clear();
+    nextId = state.nextId;
+    for (LotRecord lot : state.lots) {
+      activate(lot);
+    }
+    loadLogs(state.consumptions, consumptions);
+    loadLogs(state.restorations, restorations);
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    ArrayList<LotRecord> active = new ArrayList<>();
+    for (PriorityQueue<LotRecord> queue : lots.values()) {
+      active.addAll(queue);
+    }
+    return store.write(SEGMENT,
+        new State(nextId, active, toLists(consumptions), toLists(restorations)));
+  }
+
+  /**
+   * Приводит партии в соответствие с количеством продуктов в репозитории: недостающее
+   * количество добавляется партией без срока, лишнее списывается.
+   */
+  public synchronized void reconcile() {
+    Map<String, ProductQuantity> products = repository.getProducts();
+    for (String product : new ArrayList<>(lots.keySet())) {
+      if (!products.containsKey(product)) {
+        dropLots(product);
+      }
+    }
+    boolean changed = false;
+    for (Map.Entry<String, ProductQuantity> entry : products.entrySet()) {
+      double delta = base(entry.getValue()) - total(entry.getKey());
+      if (delta > EPSILON) {
+        addLot(entry.getKey(), delta, entry.getValue().getUnit(), LocalDate.now(), null);
+        changed = true;
+      } else if (delta < -EPSILON) {
+        consume(entry.getKey(), -delta, false);
+        changed = true;
+      }
+    }
+    if (changed) {
+      repository.markSegmentDirty(SEGMENT);
+    }
+  }
+
+  private void withMode(boolean revert, Runnable action) {
+    synchronized (this) {
+      returning = !revert;
+      reverting = revert;
+    }
+    try {
+      action.run();
+    } finally {
+      synchronized (this) {
+        returning = false;
+        reverting = false;
+      }
+    }
+  }
+
+  private void addLot(String product, double amount, ProductUnit unit, LocalDate purchased,
+      LocalDate expires) {
+    LotRecord lot = new LotRecord(nextId++, product, unit, purchased, expires);
+    lot.amount = amount;
+    activate(lot);
+  }
+
+  private void activate(LotRecord lot) {
+    lot.active = true;
+    lots.computeIfAbsent(lot.product, p -> new PriorityQueue<>(FEFO)).add(lot);
+    if (lot.expires != null) {
+      expiring.add(lot);
+    }
+  }
+
+  private void deactivate(LotRecord lot) {
+    lot.active = false;
+    PriorityQueue<LotRecord> queue = lots.get(lot.product);
+    if (queue != null) {
+      queue.remove(lot);
+      if (queue.isEmpty()) {
+        lots.remove(lot.product);
+      }
+    }
+    if (lot.expires != null) {
+      expiring.remove(lot);
+    }
+  }
+
+  /**
+   * Списывает количество с партий в порядке срока годности и при необходимости
+   * запоминает списание для возврата.
+   */
+  private void consume(String product, double amount, boolean logged) {
+    PriorityQueue<LotRecord> queue = lots.get(product);
+    while (amount > EPSILON && queue != null && !queue.isEmpty()) {
+      LotRecord lot = queue.peek();
+      double taken = Math.min(lot.amount, amount);
+      lot.amount -= taken;
+      amount -= taken;
+      if (logged) {
+        log(consumptions, product, lot, taken);
+      }
+      if (lot.amount <= EPSILON) {
+        deactivate(lot);
+        queue = lots.get(product);
+      }
+    }
+  }
+
+  /**
+   * Проходит журнал {@code from} с конца и возвращает количество в его партии
+   * ({@code sign} = 1) или забирает из них ({@code sign} = -1), записывая перенос
+   * в журнал {@code to}. Возвращает остаток, для которого записей не нашлось.
+   */
+  private double transfer(String product, double amount, Map<String, Deque<Consumption>> from,
+      Map<String, Deque<Consumption>> to, int sign) {
+    Deque<Consumption> log = from.get(product);
+    while (amount > EPSILON && log != null && !log.isEmpty()) {
+      Consumption last = log.peekLast();
+      LotRecord lot = last.lot;
+      double moved = sign > 0 ? Math.min(last.amount, amount)
+          : Math.min(last.amount, Math.min(amount, lot.active ? lot.amount : 0));
+      if (lot.active) {
+        PriorityQueue<LotRecord> queue = lots.get(product);
+        queue.remove(lot);
+        lot.amount += sign * moved;
+        if (lot.amount > EPSILON) {
+          queue.add(lot);
+        } else {
+          deactivate(lot);
+        }
+      } else if (sign > 0) {
+        lot.amount = moved;
+        activate(lot);
+      }
+      last.amount -= moved;
+      amount -= moved;
+      if (moved > EPSILON) {
+        log(to, product, lot, moved);
+      }
+      if (last.amount <= EPSILON || moved <= EPSILON) {
+        log.pollLast();
+      }
+    }
+    return amount;
+  }
+
+  /**
+   * Убирает количество из последних добавленных партий, отменяя добавление продукта.
+   */
+  private void removeNewest(String product, double amount) {
+    PriorityQueue<LotRecord> queue = lots.get(product);
+    if (queue == null) {
+      return;
+    }
+    List<LotRecord> newest = new ArrayList<>(queue);
+    newest.sort(Comparator.comparingLong((LotRecord lot) -> lot.id).reversed());
+    for (LotRecord lot : newest) {
+      if (amount <= EPSILON) {
+        break;
+      }
+      double taken = Math.min(lot.amount, amount);
+      lot.amount -= taken;
+      amount -= taken;
+      if (lot.amount <= EPSILON) {
+        deactivate(lot);
+      }
+    }
+  }
+
+  private static void log(Map<String, Deque<Consumption>> target, String product,
+      LotRecord lot, double amount) {
+    Deque<Consumption> log = target.computeIfAbsent(product, p -> new ArrayDeque<>());
+    Consumption last = log.peekLast();
+    if (last != null && last.lot == lot) {
+      last.amount += amount;
+      return;
+    }
+    log.addLast(new Consumption(lot, amount));
+    if (log.size() > LOG_LIMIT) {
+      log.pollFirst();
+    }
+  }
+
+  private static HashMap<String, ArrayList<Consumption>> toLists(
+      Map<String, Deque<Consumption>> logs) {
+    HashMap<String, ArrayList<Consumption>> result = new HashMap<>();
+    for (Map.Entry<String, Deque<Consumption>> entry : logs.entrySet()) {
+      result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+    return result;
+  }
+
+  private static void loadLogs(Map<String, ArrayList<Consumption>> source,
+      Map<String, Deque<Consumption>> target) {
+    target.clear();
+    for (Map.Entry<String, ArrayList<Consumption>> entry : source.entrySet()) {
+      target.put(entry.getKey(), new ArrayDeque<>(entry.getValue()));
+    }
+  }
+
+  private void dropLots(String product) {
+    PriorityQueue<LotRecord> queue = lots.remove(product);
+    if (queue != null) {
+      for (LotRecord lot : queue) {
+        lot.active = false;
+        if (lot.expires != null) {
+          expiring.remove(lot);
+        }
+      }
+    }
+  }
+
+  private double total(String product) {
+    PriorityQueue<LotRecord> queue = lots.get(product);
+    double total = 0;
+    if (queue != null) {
+      for (LotRecord lot : queue) {
+        total += lot.amount;
+      }
+    }
+    return total;
+  }
+
+  private static double base(ProductQuantity quantity) {
+    return quantity != null ? quantity.getUnit().convertToBaseUnit(quantity.getAmount()) : 0;
+  }
+}
@@ -1,11 +1,15 @@
 package planner;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
-import javax.swing.JOptionPane;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Контроллер для управления меню и продуктами.
+ * Длительность и ошибки каждой операции учитываются в реестре {@link Metrics},
+ * изменяющие операции записываются в {@link EditHistory} для отмены и повтора.
  */
 public class MenuController {
   private final MenuRepository repository;
@@ -13,6 +17,15 @@ public class MenuController {
   private final MenuPlanningService menuPlanningService;
   private final ProductInventoryService productInventoryService;
   private final ExportService exportService;
+  private final Map<String, Metrics.Timer> operationTimers = new ConcurrentHashMap<>();
+  private final EditHistory history = new EditHistory();
+  private final ChangeJournal changeJournal;
+  private final NutritionTracker nutritionTracker;
+  private final PriceLedger priceLedger;
+  private final TemplateLibrary templateLibrary;
+  private final InventoryProjection inventoryProjection;
+  private final StockThresholds stockThresholds;
+  private final Diagnostics diagnostics;
 
   /**
    * Конструктор контроллера меню.
@@ -23,68 +36,157 @@ public class MenuController {
     this.productInventoryService = new ProductInventoryService(repository);
     this.menuPlanningService = new MenuPlanningService(repository, productInventoryService);
     this.exportService = new ExportService(repository);
+    this.changeJournal = new ChangeJournal(repository);
+    this.nutritionTracker = new NutritionTracker(repository, NutritionTable.load());
+    this.priceLedger = new PriceLedger(repository);
+    this.templateLibrary = new TemplateLibrary(repository);
+    this.inventoryProjection = new InventoryProjection(repository,
+        productInventoryService.getConsumptionStats());
+    this.stockThresholds = new StockThresholds(repository);
+    this.diagnostics = new Diagnostics(repository, this);
   }
 
   public void addDish(Dish dish) {
-    dishService.addDish(dish);
+    edited("addDish", "добавление блюда", () -> dishService.addDish(dish));
   }
 
   public void updateDish(String oldName, Dish updatedDish) {
-    dishService.updateDish(oldName, updatedDish);
+    edited("updateDish", "изменение блюда",
+        () -> dishService.updateDish(oldName, updatedDish));
   }
 
   public Dish findDishByName(String name) {
-    return dishService.findDishByName(name);
+    return timed("findDishByName", () -> dishService.findDishByName(name));
   }
 
   public void removeDish(String dishName) {
-    dishService.removeDish(dishName);
+    edited("removeDish", "удаление блюда", () -> dishService.removeDish(dishName));
   }
 
   public List<Dish> getAllDishes() {
-    return dishService.getAllDishes();
+    return timed("getAllDishes", dishService::getAllDishes);
+  }
+
+  public List<Dish> searchDishes(String query, int limit) {
+    return timed("searchDishes", () -> dishService.searchDishes(query, limit));
   }
 
   public void setMenuForDay(String day, String mealType, Dish dish) {
-    menuPlanningService.setMenuForDay(day, mealType, dish);
+    edited("setMenuForDay", "изменение меню",
+        () -> menuPlanningService.setMenuForDay(day, mealType, dish));
   }
 
   public Dish getMenuForDay(String day, String mealType) {
-    return menuPlanningService.getMenuForDay(day, mealType);
+    return timed("getMenuForDay", () -> menuPlanningService.getMenuForDay(day, mealType));
   }
 
   /**
    * Добавляет блюдо в меню дня с проверкой доступности продуктов.
-   * 
+   * Возвращает {@code false}, если продуктов не хватает.
    */
   public boolean addMealToDay(String day, String mealType, Dish dish) {
-    boolean success = menuPlanningService.addMealToDay(day, mealType, dish);
-    if (!success) {
-      JOptionPane.showMessageDialog(null,
-          "Недостаточно продуктов для приготовления этого блюда",
-          "Ошибка", JOptionPane.ERROR_MESSAGE);
-    }
-    return success;
+    return edited("addMealToDay", "добавление блюда в меню",
+        () -> menuPlanningService.addMealToDay(day, mealType, dish));
   }
 
   public boolean removeMealFromDay(String day, String mealType) {
-    return menuPlanningService.removeMealFromDay(day, mealType);
+    return edited("removeMealFromDay", "удаление блюда из меню",
+        () -> menuPlanningService.removeMealFromDay(day, mealType));
   }
 
   /**
    * Очищает меню на определенный день без возврата продуктов.
    */
   public void clearDayMenu(String day) {
-    menuPlanningService.clearDayMenu(day);
+    edited("clearDayMenu", "очистка дня", () -> menuPlanningService.clearDayMenu(day));
   }
 
-  public void addProduct(String product, double quantity) {
+  /**
+   * Применяет план приёмов пищи целиком с одной проверкой продуктов и одним сохранением.
+   * Возвращает {@code false}, если продуктов не хватает.
+   */
+  public boolean applyPlan(Map<String, Map<String, Dish>> plan) {
+    return edited("applyPlan", "применение плана", () -> menuPlanningService.applyPlan(plan));
+  }
+
+  /**
+   * Возвращает продукты, которых не хватит на план, с недостающим количеством.
+   */
+  public Map<String, ProductQuantity> findPlanShortages(Map<String, Map<String, Dish>> plan) {
+    return timed("findPlanShortages", () -> menuPlanningService.findShortages(plan));
+  }
+
+  /**
+   * Очищает дни с {@code fromDay} по {@code toDay} одним сохранением.
+   */
+  public void clearRange(String fromDay, String toDay, boolean returnProducts) {
+    edited("clearRange", "очистка дней",
+        () -> menuPlanningService.clearRange(fromDay, toDay, returnProducts));
+  }
+
+  /**
+   * Копирует меню дней с {@code fromDay} по {@code toDay} начиная с {@code targetDay}.
+   * Возвращает {@code false}, если продуктов не хватает.
+   */
+  public boolean copyRange(String fromDay, String toDay, String targetDay) {
+    return edited("copyRange", "копирование меню",
+        () -> menuPlanningService.copyRange(fromDay, toDay, targetDay));
+  }
+
+  /**
+   * Сохраняет текущее недельное меню как шаблон.
+   */
+  public void saveTemplate(String name) {
+    timed("saveTemplate", () -> templateLibrary.saveCurrentWeek(name));
+  }
+
+  /**
+   * Применяет шаблон к неделе одной проверкой и списанием продуктов.
+   * Возвращает {@code false}, если продуктов не хватает.
+   */
+  public boolean applyTemplate(String name) {
+    return edited("applyTemplate", "применение шаблона",
+        () -> menuPlanningService.applyPlan(templateLibrary.toPlan(name)));
+  }
 
-    productInventoryService.addProduct(product, new ProductQuantity(quantity, ProductUnit.GRAMS));
+  /**
+   * Возвращает приёмы пищи, которые изменятся при применении шаблона.
+   */
+  public List<TemplateLibrary.SlotDiff> diffTemplate(String name) {
+    return timed("diffTemplate", () -> templateLibrary.diff(name));
+  }
+
+  public void addProduct(String product, double quantity) {
+    addProduct(product, quantity, ProductUnit.GRAMS);
   }
 
   public void addProduct(String product, double quantity, ProductUnit unit) {
-    productInventoryService.addProduct(product, new ProductQuantity(quantity, unit));
+    edited("addProduct", "добавление продукта",
+        () -> productInventoryService.addProduct(product, new ProductQuantity(quantity, unit)));
+  }
+
+  /**
+   * Докупает продукт партией с указанным сроком годности; {@code null} — срок неизвестен.
+   * Количество прибавляется к запасу.
+   */
+  public void addProduct(String product, double quantity, ProductUnit unit, LocalDate expires) {
+    edited("addProduct", "добавление продукта", () -> productInventoryService.addProduct(
+        product, new ProductQuantity(quantity, unit), expires));
+  }
+
+  /**
+   * Возвращает партии, срок годности которых истекает в ближайшие {@code days} дней.
+   */
+  public List<LotInventory.Lot> getExpiringLots(int days) {
+    return timed("getExpiringLots", () -> productInventoryService.getExpiringLots(days));
+  }
+
+  /**
+   * Возвращает расход и прогноз окончания запаса для всех продуктов с историей списаний.
+   */
+  public List<ConsumptionStats.Forecast> getConsumptionForecasts() {
+    return timed("getConsumptionForecasts",
+        () -> productInventoryService.getConsumptionStats().getForecasts());
   }
 
   /**
@@ -92,26 +194,63 @@ public class MenuController {
    * 
    */
   public void updateProduct(String product, double newQuantity) {
-
-    ProductQuantity existing = productInventoryService.getProduct(product);
-    ProductUnit unit = (existing != null) ? existing.getUnit() : ProductUnit.GRAMS;
-    productInventoryService.updateProduct(product, new ProductQuantity(newQuantity, unit));
+    edited("updateProduct", "изменение продукта", () -> {
+      ProductQuantity existing = productInventoryService.getProduct(product);
+      ProductUnit unit = (existing != null) ? existing.getUnit() : ProductUnit.GRAMS;
+      productInventoryService.updateProduct(product, new ProductQuantity(newQuantity, unit));
+    });
   }
 
   public void updateProduct(String product, double quantity, ProductUnit unit) {
-    productInventoryService.updateProduct(product, new ProductQuantity(quantity, unit));
+    edited("updateProduct", "изменение продукта", () -> productInventoryService.updateProduct(
+        product, new ProductQuantity(quantity, unit)));
   }
 
   public void removeProduct(String product) {
-    productInventoryService.removeProduct(product);
+    edited("removeProduct", "удаление продукта",
+        () -> productInventoryService.removeProduct(product));
   }
 
   public Map<String, ProductQuantity> getAllProducts() {
-    return productInventoryService.getAllProducts();
+    return timed("getAllProducts", productInventoryService::getAllProducts);
+  }
+
+  public List<String> suggestProductNames(String input, int limit) {
+    return timed("suggestProductNames",
+        () -> productInventoryService.suggestProductNames(input, limit));
+  }
+
+  /**
+   * Возвращает словарное название известного продукта или {@code null}.
+   */
+  public String findProductName(String product) {
+    return productInventoryService.findProductName(product);
+  }
+
+  /**
+   * Задаёт цену продукта за одну единицу измерения.
+   */
+  public void setProductPrice(String product, double price, ProductUnit unit) {
+    timed("setProductPrice", () -> priceLedger.setPrice(product, price, unit));
+  }
+
+  /**
+   * Задаёт минимальный остаток продукта, ниже которого продукт попадает в список закупок.
+   */
+  public void setMinimumStock(String product, double amount, ProductUnit unit) {
+    timed("setMinimumStock", () -> stockThresholds.setMinimum(product, amount, unit));
+  }
+
+  /**
+   * Возвращает продукты ниже минимального остатка с недостающим до минимума количеством.
+   */
+  public Map<String, ProductQuantity> getReorderList() {
+    return timed("getReorderList", stockThresholds::getReorderList);
   }
 
   public boolean checkProductsAvailability(Dish dish) {
-    return productInventoryService.checkProductsAvailability(dish);
+    return timed("checkProductsAvailability",
+        () -> productInventoryService.checkProductsAvailability(dish));
   }
 
   /**
@@ -119,22 +258,33 @@ public class MenuController {
    * 
    */
   public void exportMenuToFile(String filename) {
-    try {
-      exportService.exportMenuToFile(filename);
-    } catch (Exception ex) {
-      throw new RuntimeException("Ошибка при экспорте меню: " + ex.getMessage(), ex);
-    }
+    timed("exportMenuToFile", () -> {
+      try {
+        exportService.exportMenuToFile(filename);
+      } catch (Exception ex) {
+        throw new RuntimeException("Ошибка при экспорте меню: " + ex.getMessage(), ex);
+      }
+    });
   }
 
   /**
    * Экспортирует список продуктов в файл.
    */
   public void exportProductsToFile(String filename) {
-    try {
-      exportService.exportProductsToFile(filename);
-    } catch (Exception ex) {
-      throw new RuntimeException("Ошибка при экспорте продуктов: " + ex.getMessage(), ex);
-    }
+    timed("exportProductsToFile", () -> {
+      try {
+        exportService.exportProductsToFile(filename);
+      } catch (Exception ex) {
+        throw new RuntimeException("Ошибка при экспорте продуктов: " + ex.getMessage(), ex);
+      }
+    });
+  }
+
+  /**
+   * Удаляет все сохранённые данные с диска.
+   */
+  public boolean clearSavedData() {
+    return timed("clearSavedData", repository::deleteSavedData);
   }
 
   public DishService getDishService() {
@@ -152,4 +302,161 @@ public class MenuController {
   public ExportService getExportService() {
     return exportService;
   }
-}
\ No newline at end of file
+
+  /**
+   * Отменяет последнее изменение. Возвращает {@code false}, если отменять нечего.
+   */
+  public boolean undo() {
+    MenuEdit edit = history.undo();
+    if (edit == null) {
+      return false;
+    }
+    timed("undo", () -> applyEdit(edit, true));
+    return true;
+  }
+
+  /**
+   * Повторяет последнее отменённое изменение. Возвращает {@code false}, если повторять нечего.
+   */
+  public boolean redo() {
+    MenuEdit edit = history.redo();
+    if (edit == null) {
+      return false;
+    }
+    timed("redo", () -> applyEdit(edit, false));
+    return true;
+  }
+
+  /**
+   * Отменяет или повторяет изменение вместе с партиями и статистикой расхода
+   * одним сохранением.
+   */
+  private void applyEdit(MenuEdit edit, boolean undo) {
+    repository.beginBatch();
+    try {
+      if (undo) {
+        productInventoryService.getLotInventory()
+            .reverting(() -> repository.applyEdit(edit, true));
+      } else {
+        productInventoryService.getLotInventory()
+            .replaying(edit, () -> repository.applyEdit(edit, false));
+      }
+      productInventoryService.getConsumptionStats().replay(edit, undo);
+    } finally {
+      repository.endBatch();
+    }
+  }
+
+  public EditHistory getEditHistory() {
+    return history;
+  }
+
+  /**
+   * Возвращает журнал изменений запаса и меню для просмотра прошлых состояний.
+   */
+  public ChangeJournal getChangeJournal() {
+    return changeJournal;
+  }
+
+  /**
+   * Возвращает итоги пищевой ценности меню по приёмам пищи, дням и неделе.
+   */
+  public NutritionTracker getNutritionTracker() {
+    return nutritionTracker;
+  }
+
+  /**
+   * Возвращает цены продуктов, стоимость меню по дням и неделе и стоимость запаса.
+   */
+  public PriceLedger getPriceLedger() {
+    return priceLedger;
+  }
+
+  /**
+   * Возвращает прогноз запаса по дням недели с первым днём нехватки продуктов.
+   */
+  public InventoryProjection getInventoryProjection() {
+    return inventoryProjection;
+  }
+
+  /**
+   * Возвращает минимальные остатки продуктов для подписки на уведомления о нехватке.
+   */
+  public StockThresholds getStockThresholds() {
+    return stockThresholds;
+  }
+
+  /**
+   * Возвращает библиотеку шаблонов недельного меню.
+   */
+  public TemplateLibrary getTemplateLibrary() {
+    return templateLibrary;
+  }
+
+  /**
+   * Возвращает сводку производительности для вкладки диагностики и отчётов.
+   */
+  public Diagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * Выполняет изменяющую операцию одним сохранением и записывает её в историю для отмены.
+   */
+  private <T> T edited(String operation, String label, Supplier<T> action) {
+    repository.beginBatch();
+    repository.beginEdit(label);
+    try {
+      return timed(operation, action);
+    } finally {
+      recordEdit();
+      repository.endBatch();
+    }
+  }
+
+  private void edited(String operation, String label, Runnable action) {
+    repository.beginBatch();
+    repository.beginEdit(label);
+    try {
+      timed(operation, action);
+    } finally {
+      recordEdit();
+      repository.endBatch();
+    }
+  }
+
+  private void recordEdit() {
+    MenuEdit edit = repository.endEdit();
+    if (edit != null) {
+      history.record(edit);
+    }
+  }
+
+  private <T> T timed(String operation, Supplier<T> action) {
+    try {
+      return operationTimer(operation).time(action);
+    } catch (RuntimeException ex) {
+      countError(operation);
+      throw ex;
+    }
+  }
+
+  private void timed(String operation, Runnable action) {
+    try {
+      operationTimer(operation).time(action);
+    } catch (RuntimeException ex) {
+      countError(operation);
+      throw ex;
+    }
+  }
+
+  private Metrics.Timer operationTimer(String operation) {
+    return operationTimers.computeIfAbsent(operation, op -> Metrics.registry().timer(
+        "planner_operation_seconds", "Длительность операций контроллера", "operation", op));
+  }
+
+  private static void countError(String operation) {
+    Metrics.registry().counter("planner_operation_errors_total",
+        "Операции контроллера, завершившиеся исключением", "operation", operation).increment();
+  }
+}
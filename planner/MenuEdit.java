@@ -0,0 +1,198 @@
+package planner;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Одно отменяемое изменение данных: значения затронутых приёмов пищи, продуктов
+ * и блюд до и после операции. Хранятся только затронутые ключи, а сами объекты
+ * {@link Dish} и {@link ProductQuantity} разделяются с репозиторием, а не копируются.
+ * Отсутствующее значение записывается как {@code null}. Вместе с ключами хранятся
+ * расход продуктов, учтённый статистикой за операцию, чтобы отмена вернула и его,
+ * и даты купленных партий, чтобы повтор восстановил их.
+ */
+public final class MenuEdit {
+  private final String label;
+  private final long timestamp;
+  private final Map<String, Map<String, Dish>> slotsBefore;
+  private final Map<String, Map<String, Dish>> slotsAfter;
+  private final Map<String, ProductQuantity> productsBefore;
+  private final Map<String, ProductQuantity> productsAfter;
+  private final Map<String, Dish> dishesBefore;
+  private final Map<String, Dish> dishesAfter;
+  private final Map<String, Double> consumed;
+  private final Map<String, Purchase> purchases;
+
+  private MenuEdit(Builder builder, Map<String, Map<String, Dish>> slotsAfter,
+      Map<String, ProductQuantity> productsAfter, Map<String, Dish> dishesAfter) {
+    this.label = builder.label;
+    this.timestamp = builder.timestamp;
+    this.slotsBefore = builder.slots;
+    this.productsBefore = builder.products;
+    this.dishesBefore = builder.dishes;
+    this.slotsAfter = slotsAfter;
+    this.productsAfter = productsAfter;
+    this.dishesAfter = dishesAfter;
+    this.consumed = builder.consumed;
+    this.purchases = builder.purchases;
+  }
+
+  /**
+   * Даты партии, купленной за изменение.
+   */
+  static final class Purchase {
+    final LocalDate purchased;
+    final LocalDate expires;
+
+    Purchase(LocalDate purchased, LocalDate expires) {
+      this.purchased = purchased;
+      this.expires = expires;
+    }
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Возвращает приёмы пищи по дням в состоянии до или после изменения.
+   */
+  public Map<String, Map<String, Dish>> getSlots(boolean before) {
+    return Collections.unmodifiableMap(before ? slotsBefore : slotsAfter);
+  }
+
+  public Map<String, ProductQuantity> getProducts(boolean before) {
+    return Collections.unmodifiableMap(before ? productsBefore : productsAfter);
+  }
+
+  public Map<String, Dish> getDishes(boolean before) {
+    return Collections.unmodifiableMap(before ? dishesBefore : dishesAfter);
+  }
+
+  /**
+   * Расход продуктов за изменение в базовых единицах; отрицательное значение — возврат.
+   */
+  public Map<String, Double> getConsumed() {
+    return Collections.unmodifiableMap(consumed);
+  }
+
+  /**
+   * Даты партий, купленных за изменение, по продуктам.
+   */
+  Map<String, Purchase> getPurchases() {
+    return Collections.unmodifiableMap(purchases);
+  }
+
+  /**
+   * Количество затронутых ключей.
+   */
+  public int size() {
+    int slots = 0;
+    for (Map<String, Dish> day : slotsBefore.values()) {
+      slots += day.size();
+    }
+    return slots + productsBefore.size() + dishesBefore.size();
+  }
+
+  /**
+   * Собирает изменение: запоминает значение ключа до первого изменения в рамках операции.
+   */
+  static final class Builder {
+    private final String label;
+    private final long timestamp = System.currentTimeMillis();
+    private final Map<String, Map<String, Dish>> slots = new HashMap<>();
+    private final Map<String, ProductQuantity> products = new HashMap<>();
+    private final Map<String, Dish> dishes = new HashMap<>();
+    private final Map<String, Double> consumed = new HashMap<>();
+    private final Map<String, Purchase> purchases = new HashMap<>();
+
+    Builder(String label) {
+      this.label = label;
+    }
+
+    void slot(String day, String mealType, Dish before) {
+      Map<String, Dish> dayMenu = slots.computeIfAbsent(day, k -> new HashMap<>());
+      if (!dayMenu.containsKey(mealType)) {
+        dayMenu.put(mealType, before);
+      }
+    }
+
+    void product(String product, ProductQuantity before) {
+      if (!products.containsKey(product)) {
+        products.put(product, before);
+      }
+    }
+
+    void dish(String name, Dish before) {
+      if (!dishes.containsKey(name)) {
+        dishes.put(name, before);
+      }
+    }
+
+    void consumed(String product, double baseAmount) {
+      consumed.merge(product, baseAmount, Double::sum);
+    }
+
+    void purchased(String product, LocalDate purchased, LocalDate expires) {
+      purchases.put(product, new Purchase(purchased, expires));
+    }
+
+    /**
+     * Завершает изменение, беря текущие значения затронутых ключей из репозитория.
+     * Ключи, значение которых в итоге не изменилось, отбрасываются.
+     * Возвращает {@code null}, если ничего не изменилось.
+     */
+    MenuEdit build(MenuRepository repository) {
+      Map<String, Map<String, Dish>> slotsAfter = new HashMap<>();
+      for (Map.Entry<String, Map<String, Dish>> day : slots.entrySet()) {
+        Map<String, Dish> dayAfter = new HashMap<>();
+        day.getValue().entrySet().removeIf(meal -> {
+          Dish after = repository.getMenuForDay(day.getKey(), meal.getKey());
+          if (Objects.equals(after, meal.getValue())) {
+            return true;
+          }
+          dayAfter.put(meal.getKey(), after);
+          return false;
+        });
+        if (!dayAfter.isEmpty()) {
+          slotsAfter.put(day.getKey(), dayAfter);
+        }
+      }
+      slots.values().removeIf(Map::isEmpty);
+
+      Map<String, ProductQuantity> productsAfter = new HashMap<>();
+      products.entrySet().removeIf(entry -> {
+        ProductQuantity after = repository.peekProduct(entry.getKey());
+        if (Objects.equals(after, entry.getValue())) {
+          return true;
+        }
+        productsAfter.put(entry.getKey(), after);
+        return false;
+      });
+
+      Map<String, Dish> dishesAfter = new HashMap<>();
+      Map<String, Dish> current = repository.peekDishes(dishes.keySet());
+      dishes.entrySet().removeIf(entry -> {
+        Dish after = current.get(entry.getKey());
+        if (Objects.equals(after, entry.getValue())) {
+          return true;
+        }
+        dishesAfter.put(entry.getKey(), after);
+        return false;
+      });
+
+      if (slots.isEmpty() && products.isEmpty() && dishes.isEmpty()) {
+        return null;
+      }
+      consumed.values().removeIf(amount -> amount == 0);
+      return new MenuEdit(this, slotsAfter, productsAfter, dishesAfter);
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package planner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Сервис для планирования меню.
@@ -19,28 +23,29 @@ public class MenuPlanningService {
    * Устанавливает блюдо для определённого дня и приёма пищи.
    */
   public void setMenuForDay(String day, String mealType, Dish dish) {
-    Map<String, Map<String, Dish>> weeklyMenu = repository.getWeeklyMenu();
-    weeklyMenu.computeIfAbsent(day, k -> new HashMap<>()).put(mealType, dish);
-    repository.setWeeklyMenu(weeklyMenu);
+    repository.setMenuForDay(day, mealType, dish);
   }
 
   public Dish getMenuForDay(String day, String mealType) {
-    Map<String, Dish> dayMenu = repository.getWeeklyMenu().get(day);
-    return dayMenu != null ? dayMenu.get(mealType) : null;
+    return repository.getMenuForDay(day, mealType);
   }
 
   /**
    * Добавляет блюдо в меню дня с проверкой доступности продуктов.
    */
   public boolean addMealToDay(String day, String mealType, Dish newDish) {
+    PlannerEvents.AddMealEvent event = new PlannerEvents.AddMealEvent();
+    event.begin();
     Dish currentDish = getMenuForDay(day, mealType);
 
-    if (currentDish != null && currentDish.equals(newDish)) {
+    if (repository.isPlanned(day, mealType, newDish)) {
       setMenuForDay(day, mealType, newDish);
+      commitAddMealEvent(event, day, mealType, newDish, true, "same-dish");
       return true;
     }
 
     if (!productService.checkProductsAvailability(newDish)) {
+      commitAddMealEvent(event, day, mealType, newDish, false, "insufficient-products");
       return false;
     }
 
@@ -50,9 +55,24 @@ public class MenuPlanningService {
 
     productService.deductProducts(newDish);
     setMenuForDay(day, mealType, newDish);
+    commitAddMealEvent(event, day, mealType, newDish, true,
+        currentDish != null ? "replaced" : "added");
     return true;
   }
 
+  private static void commitAddMealEvent(PlannerEvents.AddMealEvent event, String day,
+      String mealType, Dish dish, boolean added, String reason) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.day = day;
+      event.mealType = mealType;
+      event.dish = dish.getName();
+      event.added = added;
+      event.reason = reason;
+      event.commit();
+    }
+  }
+
   /**
    * Удаляет блюдо из меню дня и возвращает продукты обратно в инвентарь.
    */
@@ -70,17 +90,167 @@ public class MenuPlanningService {
    * Очищает меню на определенный день без возврата продуктов.
    */
   public void clearDayMenu(String day) {
-    Map<String, Map<String, Dish>> weeklyMenu = repository.getWeeklyMenu();
-    if (weeklyMenu.containsKey(day)) {
-      Map<String, Dish> dayMenu = weeklyMenu.get(day);
-      dayMenu.put("Завтрак", null);
-      dayMenu.put("Обед", null);
-      dayMenu.put("Ужин", null);
-      repository.setWeeklyMenu(weeklyMenu);
+    if (dayIndex(day) >= 0) {
+      clearRange(day, day, false);
+    }
+  }
+
+  /**
+   * Находит продукты, которых не хватит на весь план. Продукты блюд, которые план
+   * заменяет, считаются возвращёнными. Возвращает недостающее количество по продуктам;
+   * пустой результат означает, что план можно применить.
+   *
+   * @throws IllegalArgumentException если в плане есть неизвестный день или приём пищи
+   */
+  public Map<String, ProductQuantity> findShortages(Map<String, Map<String, Dish>> plan) {
+    Map<String, Double> required = new HashMap<>();
+    Map<String, ProductUnit> units = new HashMap<>();
+    forEachChange(plan, (current, planned) -> {
+      if (planned != null) {
+        planned.forEachIngredient((product, amount, unit) -> {
+          required.merge(product, unit.convertToBaseUnit(amount), Double::sum);
+          units.putIfAbsent(product, unit);
+        });
+      }
+      if (current != null) {
+        current.forEachIngredient((product, amount, unit) ->
+            required.merge(product, -unit.convertToBaseUnit(amount), Double::sum));
+      }
+    });
+
+    Map<String, ProductQuantity> shortages = new HashMap<>();
+    for (Map.Entry<String, Double> entry : required.entrySet()) {
+      ProductQuantity available = repository.getProduct(entry.getKey());
+      double availableBase = available != null
+          ? available.getUnit().convertToBaseUnit(available.getAmount()) : 0;
+      if (entry.getValue() > availableBase) {
+        ProductUnit unit = available != null ? available.getUnit() : units.get(entry.getKey());
+        shortages.put(entry.getKey(), new ProductQuantity(
+            unit.convertFromBaseUnit(entry.getValue() - availableBase), unit));
+      }
+    }
+    return shortages;
+  }
+
+  /**
+   * Применяет план целиком: проверяет продукты на все блюда сразу, возвращает продукты
+   * заменяемых блюд, списывает продукты новых и сохраняет результат одной записью.
+   * Приёмы пищи со значением {@code null} очищаются с возвратом продуктов.
+   * Возвращает {@code false} и ничего не меняет, если продуктов не хватает.
+   *
+   * @throws IllegalArgumentException если в плане есть неизвестный день или приём пищи
+   */
+  public boolean applyPlan(Map<String, Map<String, Dish>> plan) {
+    if (!findShortages(plan).isEmpty()) {
+      return false;
+    }
+    List<Dish> deducted = new ArrayList<>();
+    List<Dish> returned = new ArrayList<>();
+    forEachChange(plan, (current, planned) -> {
+      if (current != null) {
+        returned.add(current);
+      }
+      if (planned != null) {
+        deducted.add(planned);
+      }
+    });
+    repository.beginBatch();
+    try {
+      productService.adjustProducts(deducted, returned);
+      repository.applyPlan(plan);
+    } finally {
+      repository.endBatch();
+    }
+    return true;
+  }
+
+  /**
+   * Очищает все приёмы пищи с {@code fromDay} по {@code toDay} включительно одним
+   * сохранением, при необходимости возвращая продукты.
+   *
+   * @throws IllegalArgumentException если день неизвестен или диапазон пуст
+   */
+  public void clearRange(String fromDay, String toDay, boolean returnProducts) {
+    int from = requireDay(fromDay);
+    int to = requireDay(toDay);
+    if (from > to) {
+      throw new IllegalArgumentException("Пустой диапазон дней: " + fromDay + " — " + toDay);
+    }
+    Map<String, Map<String, Dish>> plan = new HashMap<>();
+    for (int day = from; day <= to; day++) {
+      Map<String, Dish> meals = new HashMap<>();
+      for (String mealType : MenuRepository.MEAL_TYPES) {
+        meals.put(mealType, null);
+      }
+      plan.put(MenuRepository.DAYS[day], meals);
+    }
+    if (returnProducts) {
+      applyPlan(plan);
+    } else {
+      repository.applyPlan(plan);
+    }
+  }
+
+  /**
+   * Копирует меню дней с {@code fromDay} по {@code toDay} на дни, начиная с
+   * {@code targetDay}, как один план со списанием продуктов.
+   * Возвращает {@code false}, если продуктов не хватает.
+   *
+   * @throws IllegalArgumentException если день неизвестен или копия выходит за неделю
+   */
+  public boolean copyRange(String fromDay, String toDay, String targetDay) {
+    int from = requireDay(fromDay);
+    int to = requireDay(toDay);
+    int target = requireDay(targetDay);
+    if (from > to || target + (to - from) >= MenuRepository.DAYS.length) {
+      throw new IllegalArgumentException("Нельзя скопировать " + fromDay + " — " + toDay
+          + " на " + targetDay);
+    }
+    Map<String, Map<String, Dish>> menu = repository.getWeeklyMenu();
+    Map<String, Map<String, Dish>> plan = new HashMap<>();
+    for (int day = from; day <= to; day++) {
+      plan.put(MenuRepository.DAYS[target + day - from],
+          new HashMap<>(menu.get(MenuRepository.DAYS[day])));
     }
+    return applyPlan(plan);
   }
 
   public Map<String, Map<String, Dish>> getWeeklyMenu() {
     return repository.getWeeklyMenu();
   }
+
+  /**
+   * Передаёт текущее и запланированное блюдо каждого приёма пищи плана,
+   * в котором блюдо меняется.
+   */
+  private void forEachChange(Map<String, Map<String, Dish>> plan,
+      BiConsumer<Dish, Dish> consumer) {
+    for (Map.Entry<String, Map<String, Dish>> day : plan.entrySet()) {
+      for (Map.Entry<String, Dish> meal : day.getValue().entrySet()) {
+        if (MenuRepository.slotIndex(day.getKey(), meal.getKey()) < 0) {
+          throw new IllegalArgumentException("Неизвестный день или приём пищи: "
+              + day.getKey() + ", " + meal.getKey());
+        }
+        Dish planned = meal.getValue();
+        Dish current = repository.getMenuForDay(day.getKey(), meal.getKey());
+        boolean unchanged = planned == null ? current == null
+            : repository.isPlanned(day.getKey(), meal.getKey(), planned);
+        if (!unchanged) {
+          consumer.accept(current, planned);
+        }
+      }
+    }
+  }
+
+  private static int dayIndex(String day) {
+    return Arrays.asList(MenuRepository.DAYS).indexOf(day);
+  }
+
+  private static int requireDay(String day) {
+    int index = dayIndex(day);
+    if (index < 0) {
+      throw new IllegalArgumentException("Неизвестный день: " + day);
+    }
+    return index;
+  }
 }
\ No newline at end of file
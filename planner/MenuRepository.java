@@ -1,18 +1,25 @@
 package planner;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Репозиторий для хранения данных о меню и продуктами.
@@ -20,87 +27,569 @@ import java.util.Map;
 public class MenuRepository implements Serializable {
   private static final long serialVersionUID = 1L;
   private static final String AUTO_SAVE_FILE = "auto_save/menu_data.dat";
+  private static final String LEGACY_FORMAT_VERSION = "menu-data-v2";
+  private static final String MENU_SEGMENT = StorageEngine.MENU_SEGMENT;
+  private static final String INVENTORY_SEGMENT = StorageEngine.INVENTORY_SEGMENT;
+  private static final String CATALOG_SEGMENT = StorageEngine.CATALOG_SEGMENT;
+  /**
+   * Сегменты в порядке загрузки: сначала меню и запас, затем большой каталог блюд.
+   */
+  private static final String[] SEGMENTS = { MENU_SEGMENT, INVENTORY_SEGMENT, CATALOG_SEGMENT };
+  static final String[] DAYS = { "Понедельник", "Вторник", "Среда", "Четверг",
+      "Пятница", "Суббота", "Воскресенье" };
+  static final String[] MEAL_TYPES = { "Завтрак", "Обед", "Ужин" };
+  static final int SLOT_COUNT = DAYS.length * MEAL_TYPES.length;
+
+  private static final Metrics.Timer SAVE_TIMER = Metrics.registry().timer(
+      "planner_save_seconds", "Длительность автосохранения");
+  private static final Metrics.Counter SAVE_BYTES = Metrics.registry().counter(
+      "planner_save_bytes_total", "Объём данных, записанных автосохранением");
+  private static final Metrics.Counter SAVE_ERRORS = Metrics.registry().counter(
+      "planner_save_errors_total", "Ошибки автосохранения");
+  private static final Metrics.Timer LOAD_TIMER = Metrics.registry().timer(
+      "planner_load_seconds", "Длительность загрузки данных");
 
   private List<Dish> dishes = new ArrayList<>();
-  private Map<String, Map<String, Dish>> weeklyMenu = new HashMap<>();
+  /**
+   * Идентификаторы блюд по приёмам пищи: день * 3 + приём пищи, {@link DishCatalog#NONE} — пусто.
+   */
+  private int[] slots = new int[SLOT_COUNT];
+  private DishCatalog catalog = new DishCatalog();
   private Map<String, ProductQuantity> products = new HashMap<>();
+  private final String saveFile;
+  private transient DishSearchIndex searchIndex = new DishSearchIndex();
+  private transient ProductDictionary productNames = ProductDictionary.getInstance();
+  private transient volatile boolean loading = false;
+  private transient volatile boolean segmentsLoaded = false;
+  private transient volatile boolean loaded = false;
+  private transient Map<String, SegmentHandler> extraSegments = new ConcurrentHashMap<>();
+  private transient volatile boolean pendingSave = false;
+  private transient volatile long lastSaveBytes = 0;
+  private transient StorageEngine storage;
+  private transient Set<String> dirtySegments = ConcurrentHashMap.newKeySet();
+  private transient Set<String> wholeSegments = ConcurrentHashMap.newKeySet();
+  private transient Map<String, Set<String>> dirtyKeys = new ConcurrentHashMap<>();
+  /**
+   * Сохранённые сегменты, которые не удалось прочитать. Они не перезаписываются,
+   * чтобы данные в хранилище можно было восстановить.
+   */
+  private transient Set<String> unreadableSegments = ConcurrentHashMap.newKeySet();
+  private transient MenuEdit.Builder currentEdit;
+  private transient List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+  private transient int editDepth;
+  private transient int batchDepth;
 
   public MenuRepository() {
+    this(true);
+  }
+
+  /**
+   * Создает репозиторий. Если загрузка отложена, данные загружаются позже
+   * вызовом {@link #autoLoad(Consumer)}, например в фоновом потоке.
+   */
+  public MenuRepository(boolean loadImmediately) {
+    this(AUTO_SAVE_FILE, loadImmediately);
+  }
+
+  /**
+   * Создает репозиторий с указанным файлом автосохранения.
+   * Используется для замеров и проверок, которые не должны трогать данные пользователя.
+   */
+  public MenuRepository(String saveFile, boolean loadImmediately) {
+    this(saveFile, StorageEngine.open(basePath(saveFile)), loadImmediately);
+  }
+
+  /**
+   * Создает репозиторий с указанным механизмом хранения. Файл автосохранения
+   * прежнего формата используется только для переноса старых данных.
+   */
+  public MenuRepository(String saveFile, StorageEngine storage, boolean loadImmediately) {
+    this.saveFile = saveFile;
+    this.storage = storage;
     initializeDays();
-    autoLoad();
+    registerGauges();
+    if (loadImmediately) {
+      autoLoad();
+    }
   }
 
-  private void initializeDays() {
-    String[] days = { "Понедельник", "Вторник", "Среда", "Четверг",
-        "Пятница", "Суббота", "Воскресенье" };
-    for (String day : days) {
-      weeklyMenu.putIfAbsent(day, new HashMap<>());
+  private static String basePath(String saveFile) {
+    return saveFile.endsWith(".dat") ? saveFile.substring(0, saveFile.length() - 4) : saveFile;
+  }
+
+  public StorageEngine getStorage() {
+    return storage;
+  }
+
+  /**
+   * Оценивает объём меню в памяти в байтах без учёта блюд: приёмы пищи
+   * и справочник идентификаторов блюд. Вызывается в потоке, который изменяет репозиторий.
+   */
+  long estimatedMenuBytes() {
+    return 16 + (long) slots.length * Integer.BYTES + catalog.estimatedBytes();
+  }
+
+  int countMeals() {
+    int meals = 0;
+    for (int id : slots) {
+      if (id != DishCatalog.NONE) {
+        meals++;
+      }
     }
+    return meals;
+  }
+
+  private void registerGauges() {
+    Metrics metrics = Metrics.registry();
+    metrics.gauge("planner_dishes", "Количество блюд в каталоге", () -> dishes.size());
+    metrics.gauge("planner_products", "Количество продуктов в запасе", () -> products.size());
+    metrics.gauge("planner_save_last_bytes", "Объём последнего сохранения",
+        () -> lastSaveBytes);
+    metrics.gauge("planner_dish_ids", "Занятые идентификаторы блюд", () -> catalog.size());
+  }
+
+  /**
+   * Очищает меню и справочник блюд перед загрузкой.
+   */
+  private void initializeDays() {
+    catalog = new DishCatalog();
+    Arrays.fill(slots, DishCatalog.NONE);
   }
 
   /**
-   * Автоматически сохраняет данные в файл.
+   * Возвращает номер приёма пищи в неделе или -1 для неизвестного дня или приёма пищи.
+   */
+  static int slotIndex(String day, String mealType) {
+    int dayIndex = Arrays.asList(DAYS).indexOf(day);
+    int mealIndex = Arrays.asList(MEAL_TYPES).indexOf(mealType);
+    return dayIndex >= 0 && mealIndex >= 0 ? dayIndex * MEAL_TYPES.length + mealIndex : -1;
+  }
+
+  /**
+   * Автоматически сохраняет изменённые сегменты данных.
+   * Во время фоновой загрузки и пакетного изменения запись откладывается до их завершения.
    */
   public void autoSave() {
-    try {
-      new File("auto_save").mkdirs();
-      try (ObjectOutputStream oos = new ObjectOutputStream(
-          new FileOutputStream(AUTO_SAVE_FILE))) {
-
-        oos.writeObject(dishes);
-        oos.writeObject(weeklyMenu);
-        oos.writeObject(products);
-        System.out.println("Данные автоматически сохранены");
+    if (loading || batchDepth > 0) {
+      pendingSave = true;
+      return;
+    }
+    if (dirtySegments.isEmpty()) {
+      return;
+    }
+    PlannerEvents.SaveEvent event = new PlannerEvents.SaveEvent();
+    event.begin();
+    long start = System.nanoTime();
+    long written = 0;
+    StringBuilder saved = new StringBuilder();
+    boolean success = true;
+    for (String segment : SEGMENTS) {
+      if (!dirtySegments.contains(segment) || unreadableSegments.contains(segment)) {
+        continue;
+      }
+      dirtySegments.remove(segment);
+      Set<String> keys = wholeSegments.remove(segment) ? null : takeDirtyKeys(segment);
+      try {
+        long bytes = storage.write(segment, segmentData(segment), keys);
+        written += bytes;
+        Metrics.registry().counter("planner_segment_bytes_total",
+            "Объём записанных сегментов", "segment", segment).add(bytes);
+        saved.append(saved.length() == 0 ? "" : ",").append(segment);
+      } catch (IOException e) {
+        markDirty(segment);
+        success = false;
+        SAVE_ERRORS.increment();
+        System.err.println("Ошибка автосохранения сегмента " + segment + ": " + e.getMessage());
+      }
+    }
+    for (Map.Entry<String, SegmentHandler> extra : extraSegments.entrySet()) {
+      String segment = extra.getKey();
+      if (!dirtySegments.remove(segment)) {
+        continue;
+      }
+      try {
+        long bytes = extra.getValue().save(storage);
+        written += bytes;
+        Metrics.registry().counter("planner_segment_bytes_total",
+            "Объём записанных сегментов", "segment", segment).add(bytes);
+        saved.append(saved.length() == 0 ? "" : ",").append(segment);
+      } catch (IOException e) {
+        dirtySegments.add(segment);
+        success = false;
+        SAVE_ERRORS.increment();
+        System.err.println("Ошибка автосохранения сегмента " + segment + ": " + e.getMessage());
       }
-    } catch (IOException e) {
-      System.err.println("Ошибка автосохранения: " + e.getMessage());
+    }
+    SAVE_TIMER.record(System.nanoTime() - start);
+    SAVE_BYTES.add(written);
+    lastSaveBytes = written;
+    if (success) {
+      System.out.println("Данные автоматически сохранены");
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.file = saveFile;
+      event.segments = saved.toString();
+      event.bytes = written;
+      event.dishes = dishes.size();
+      event.products = products.size();
+      event.success = success;
+      event.commit();
     }
   }
 
   /**
-   * Автоматически загружает данные из файла автосохранения.
+   * Сохраняет все сегменты независимо от того, менялись ли они.
+   */
+  public void saveAll() {
+    markDirty(SEGMENTS);
+    autoSave();
+  }
+
+  /**
+   * Отмечает сегменты для записи целиком.
    */
+  private void markDirty(String... segments) {
+    for (String segment : segments) {
+      wholeSegments.add(segment);
+      dirtySegments.add(segment);
+    }
+  }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Отмечает изменённый ключ сегмента, чтобы механизм хранения мог обновить только его.
+   */
+  private void markChanged(String segment, String key) {
+    dirtyKeys.computeIfAbsent(segment, k -> ConcurrentHashMap.newKeySet()).add(key);
+    dirtySegments.add(segment);
+  }
+
+  private Set<String> takeDirtyKeys(String segment) {
+    Set<String> keys = dirtyKeys.remove(segment);
+    return keys != null ? keys : new HashSet<>();
+  }
+
+  private Object segmentData(String segment) {
+    switch (segment) {
+      case CATALOG_SEGMENT:
+        return dishes;
+      case MENU_SEGMENT:
+        return getWeeklyMenu();
+      case INVENTORY_SEGMENT:
+        return products;
+      default:
+        throw new IllegalArgumentException("Неизвестный сегмент: " + segment);
+    }
+  }
+
+  /**
+   * Автоматически загружает данные из файла автосохранения.
+   */
   public void autoLoad() {
-    File saveFile = new File(AUTO_SAVE_FILE);
-    if (!saveFile.exists()) {
-      System.out.println("Файл автосохранения не найден, используются начальные данные");
+    autoLoad(null);
+    completeLoad();
+  }
+
+  /**
+   * Загружает данные по разделам, сообщая слушателю о каждом загруженном разделе.
+   * Повреждённый сегмент заменяется резервной копией; если не прочиталась и она,
+   * раздел остаётся пустым, а сегмент не перезаписывается. Отсутствующие сегменты
+   * берутся из файла прежнего формата. Может вызываться из фонового потока: раздел не изменяется
+   * загрузчиком после того, как о нём сообщено слушателю. После загрузки
+   * нужно вызвать {@link #completeLoad()} в потоке, который работает с репозиторием.
+   */
+  public void autoLoad(Consumer<DataSection> sectionListener) {
+    loadSections(sectionListener);
+    synchronized (extraSegments) {
+      for (SegmentHandler handler : extraSegments.values()) {
+        handler.load(storage);
+      }
+      segmentsLoaded = true;
+    }
+  }
+
+  /**
+   * Завершает загрузку: вносит загруженный каталог в справочник блюд, сообщает
+   * слушателям о загруженных данных и записывает изменения, накопленные во время загрузки.
+   */
+  public void completeLoad() {
+    if (loaded) {
       return;
     }
+    loaded = true;
+    for (Dish dish : dishes) {
+      catalog.list(dish);
+    }
+    for (RepositoryListener listener : listeners) {
+      listener.dataLoaded();
+    }
+    pendingSave = false;
+    autoSave();
+  }
 
-    try (ObjectInputStream ois = new ObjectInputStream(
-        new FileInputStream(AUTO_SAVE_FILE))) {
+  /**
+   * Завершена ли загрузка данных.
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
 
-      dishes = (List<Dish>) ois.readObject();
-      weeklyMenu = (Map<String, Map<String, Dish>>) ois.readObject();
+  /**
+   * Регистрирует дополнительный раздел данных. Если данные уже загружены,
+   * раздел загружается сразу, иначе — вместе с остальными данными.
+   */
+  public void registerSegment(String segment, SegmentHandler handler) {
+    synchronized (extraSegments) {
+      extraSegments.put(segment, handler);
+      if (segmentsLoaded) {
+        handler.load(storage);
+      }
+    }
+  }
+
+  /**
+   * Отмечает дополнительный раздел как изменённый; он будет записан при следующем сохранении.
+   */
+  public void markSegmentDirty(String segment) {
+    dirtySegments.add(segment);
+  }
 
-      Object productsData = ois.readObject();
-      if (productsData instanceof Map) {
-        Map<?, ?> rawProducts = (Map<?, ?>) productsData;
-        products = new HashMap<>();
+  @SuppressWarnings("unchecked")
+  private void loadSections(Consumer<DataSection> sectionListener) {
+    File legacyFile = new File(saveFile);
+    SnapshotStore files = storage instanceof SnapshotStore
+        ? null : new SnapshotStore(basePath(saveFile));
+    boolean anySegment = false;
+    for (String segment : SEGMENTS) {
+      anySegment |= isStored(segment) || files != null && files.exists(segment);
+    }
+    if (!anySegment && !legacyFile.exists()) {
+      System.out.println("Файл автосохранения не найден, используются начальные данные");
+      notifyAllSections(sectionListener);
+      return;
+    }
 
-        for (Map.Entry<?, ?> entry : rawProducts.entrySet()) {
-          if (entry.getKey() instanceof String) {
-            String productName = (String) entry.getKey();
-            if (entry.getValue() instanceof Double) {
-              double amount = (Double) entry.getValue();
-              products.put(productName, new ProductQuantity(amount, ProductUnit.GRAMS));
-            } else if (entry.getValue() instanceof ProductQuantity) {
-              products.put(productName, (ProductQuantity) entry.getValue());
-            }
+    loading = true;
+    long start = System.nanoTime();
+    PlannerEvents.LoadEvent event = new PlannerEvents.LoadEvent();
+    event.begin();
+    boolean success = true;
+    long bytes = 0;
+    Object[] legacy = null;
+    try {
+      Object[] sections = new Object[SEGMENTS.length];
+      for (int i = 0; i < SEGMENTS.length; i++) {
+        String segment = SEGMENTS[i];
+        sections[i] = loadSegment(segment);
+        if (sections[i] == null && files != null && files.exists(segment)) {
+          System.out.println("Сегмент " + segment + " переносится из файлов снимков");
+          sections[i] = files.readOrBackup(segment);
+          markDirty(segment);
+        }
+        if (sections[i] == null && isStored(segment)) {
+          unreadableSegments.add(segment);
+          success = false;
+          System.err.println("Сегмент " + segment + " не прочитан и не будет перезаписан");
+        } else if (sections[i] == null) {
+          if (legacy == null) {
+            legacy = readLegacy(legacyFile);
           }
+          sections[i] = legacy[i];
+          markDirty(segment);
         }
-      }
+        bytes += storage.sizeOf(segment);
 
+        switch (segment) {
+          case MENU_SEGMENT:
+            initializeDays();
+            if (sections[i] != null) {
+              loadMenu((Map<String, Map<String, Dish>>) sections[i]);
+            }
+            notifySection(sectionListener, DataSection.MENU);
+            break;
+          case INVENTORY_SEGMENT:
+            products = readProducts(sections[i]);
+            notifySection(sectionListener, DataSection.INVENTORY);
+            break;
+          default:
+            dishes = sections[i] != null
+                ? new ArrayList<>((List<Dish>) sections[i]) : new ArrayList<>();
+            searchIndex.rebuild(dishes);
+            notifySection(sectionListener, DataSection.CATALOG);
+            break;
+        }
+      }
+      if (!dirtySegments.isEmpty()) {
+        pendingSave = true;
+      }
       System.out.println("Данные автоматически загружены");
-
-    } catch (IOException | ClassNotFoundException e) {
+    } catch (ClassCastException e) {
+      success = false;
       System.err.println("Ошибка загрузки данных: " + e.getMessage());
       dishes = new ArrayList<>();
-      weeklyMenu = new HashMap<>();
       products = new HashMap<>();
+      searchIndex.rebuild(dishes);
       initializeDays();
+      notifyAllSections(sectionListener);
+    } finally {
+      loading = false;
+      LOAD_TIMER.record(System.nanoTime() - start);
+      event.end();
+      if (event.shouldCommit()) {
+        event.file = saveFile;
+        event.bytes = bytes;
+        event.dishes = dishes.size();
+        event.products = products.size();
+        event.meals = countMeals();
+        event.success = success;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Проверяет, сохранён ли сегмент. Если хранилище не ответило, сегмент считается
+   * сохранённым, чтобы не заменить его данные пустыми.
+   */
+  private boolean isStored(String segment) {
+    try {
+      return storage.exists(segment);
+    } catch (IOException e) {
+      System.err.println("Хранилище недоступно: " + e.getMessage());
+      return true;
+    }
+  }
+
+  /**
+   * Читает сегмент, при ошибке — его резервную копию.
+   * Возвращает {@code null}, если ни одна из копий не прочиталась.
+   */
+  private Object loadSegment(String segment) {
+    try {
+      Object data = storage.read(segment);
+      if (data != null) {
+        return data;
+      }
+    } catch (IOException e) {
+      System.err.println("Сегмент " + segment + " повреждён: " + e.getMessage());
+    }
+    try {
+      Object data = storage.readBackup(segment);
+      if (data != null) {
+        System.err.println("Сегмент " + segment + " восстановлен из резервной копии");
+        markDirty(segment);
+      }
+      return data;
+    } catch (IOException e) {
+      System.err.println("Резервная копия сегмента " + segment + " повреждена: "
+          + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Читает файл автосохранения прежнего формата, где все разделы записаны подряд.
+   * Возвращает разделы в порядке {@link #SEGMENTS}; при ошибке разделы пустые.
+   */
+  @SuppressWarnings("unchecked")
+  private static Object[] readLegacy(File file) {
+    Object[] sections = new Object[SEGMENTS.length];
+    if (!file.exists()) {
+      return sections;
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(
+        new FileInputStream(file)))) {
+      Object first = ois.readObject();
+      if (LEGACY_FORMAT_VERSION.equals(first)) {
+        sections[0] = ois.readObject();
+        sections[1] = ois.readObject();
+        sections[2] = ois.readObject();
+      } else {
+        sections[2] = first;
+        sections[0] = ois.readObject();
+        sections[1] = ois.readObject();
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      System.err.println("Ошибка загрузки данных: " + e.getMessage());
+      return new Object[SEGMENTS.length];
+    }
+    return sections;
+  }
+
+  /**
+   * Удаляет все сохранённые данные: сегменты, включая дополнительные разделы,
+   * резервные копии и файл прежнего формата.
+   * Возвращает {@code true}, если был удалён хотя бы один файл.
+   */
+  public boolean deleteSavedData() {
+    boolean deleted = storage.deleteAll();
+    if (!(storage instanceof SnapshotStore)) {
+      deleted |= new SnapshotStore(basePath(saveFile)).deleteAll();
+    }
+    deleted |= new File(saveFile).delete();
+    return deleted;
+  }
+
+  /**
+   * Выполняет сохранение, отложенное во время фоновой загрузки.
+   * Вызывается в потоке, который работает с репозиторием после загрузки.
+   */
+  public void flushPendingSave() {
+    if (pendingSave) {
+      pendingSave = false;
+      autoSave();
+    }
+  }
+
+  /**
+   * Начинает пакетное изменение: сохранения откладываются до {@link #endBatch()}.
+   * Вложенные вызовы входят во внешний пакет.
+   */
+  public void beginBatch() {
+    batchDepth++;
+  }
+
+  /**
+   * Завершает пакетное изменение и сохраняет накопленные изменения одной записью.
+   */
+  public void endBatch() {
+    if (batchDepth > 0 && --batchDepth == 0) {
+      flushPendingSave();
+    }
+  }
+
+  private Map<String, ProductQuantity> readProducts(Object productsData) {
+    Map<String, ProductQuantity> result = new HashMap<>();
+    if (productsData instanceof Map) {
+      Map<?, ?> rawProducts = (Map<?, ?>) productsData;
+
+      for (Map.Entry<?, ?> entry : rawProducts.entrySet()) {
+        if (entry.getKey() instanceof String) {
+          String productName = (String) entry.getKey();
+          if (entry.getValue() instanceof Double) {
+            double amount = (Double) entry.getValue();
+            mergeQuantity(result, productNames.canonicalName(productName),
+                new ProductQuantity(amount, ProductUnit.GRAMS));
+          } else if (entry.getValue() instanceof ProductQuantity) {
+            mergeQuantity(result, productNames.canonicalName(productName),
+                (ProductQuantity) entry.getValue());
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void notifySection(Consumer<DataSection> listener, DataSection section) {
+    if (listener != null) {
+      listener.accept(section);
+    }
+  }
+
+  private static void notifyAllSections(Consumer<DataSection> listener) {
+    for (DataSection section : DataSection.values()) {
+      notifySection(listener, section);
     }
   }
 
@@ -109,17 +598,48 @@ public class MenuRepository implements Serializable {
   }
 
   public void setDishes(List<Dish> dishes) {
+    List<Dish> previous = this.dishes;
     this.dishes = new ArrayList<>(dishes);
+    searchIndex.rebuild(this.dishes);
+    for (Dish dish : previous) {
+      catalog.unlist(dish.getName());
+    }
+    for (Dish dish : this.dishes) {
+      catalog.list(dish);
+    }
+    if (tracking()) {
+      Map<String, Dish> before = dishesByName(previous);
+      Map<String, Dish> after = dishesByName(this.dishes);
+      for (Map.Entry<String, Dish> entry : before.entrySet()) {
+        if (!Objects.equals(entry.getValue(), after.get(entry.getKey()))) {
+          changedDish(entry.getKey(), entry.getValue(), after.get(entry.getKey()));
+        }
+      }
+      for (Map.Entry<String, Dish> entry : after.entrySet()) {
+        if (!before.containsKey(entry.getKey())) {
+          changedDish(entry.getKey(), null, entry.getValue());
+        }
+      }
+    }
+    markDirty(CATALOG_SEGMENT);
     autoSave();
   }
 
   public void addDish(Dish dish) {
+    Dish before = tracking() ? peekDish(dish.getName()) : null;
     dishes.add(dish);
+    searchIndex.add(dish);
+    catalog.list(dish);
+    changedDish(dish.getName(), before, dish);
     autoSave();
   }
 
   public void removeDish(String dishName) {
+    Dish before = tracking() ? peekDish(dishName) : null;
     dishes.removeIf(d -> d.getName().equals(dishName));
+    searchIndex.remove(dishName);
+    catalog.unlist(dishName);
+    changedDish(dishName, before, null);
     autoSave();
   }
 
@@ -127,87 +647,491 @@ public class MenuRepository implements Serializable {
     return new ArrayList<>(dishes);
   }
 
+  /**
+   * Ищет блюда по фрагментам названия, описания или ингредиентов.
+   */
+  public List<Dish> searchDishes(String query, int limit) {
+    return searchIndex.search(query, limit);
+  }
+
+  /**
+   * Собирает недельное меню из идентификаторов блюд. Меню каждого дня содержит
+   * все приёмы пищи; пустой приём пищи имеет значение {@code null}.
+   */
   public Map<String, Map<String, Dish>> getWeeklyMenu() {
-    return new HashMap<>(weeklyMenu);
+    Map<String, Map<String, Dish>> menu = new HashMap<>();
+    for (int day = 0; day < DAYS.length; day++) {
+      Map<String, Dish> dayMenu = new HashMap<>();
+      for (int meal = 0; meal < MEAL_TYPES.length; meal++) {
+        dayMenu.put(MEAL_TYPES[meal], catalog.get(slots[day * MEAL_TYPES.length + meal]));
+      }
+      menu.put(DAYS[day], dayMenu);
+    }
+    return menu;
   }
 
+  /**
+   * Заменяет всё недельное меню. Отсутствующие дни и приёмы пищи очищаются.
+   */
   public void setWeeklyMenu(Map<String, Map<String, Dish>> weeklyMenu) {
-    this.weeklyMenu = new HashMap<>(weeklyMenu);
+    for (int slot = 0; slot < SLOT_COUNT; slot++) {
+      Map<String, Dish> dayMenu = weeklyMenu.get(DAYS[slot / MEAL_TYPES.length]);
+      assignSlot(slot, dayMenu != null ? dayMenu.get(MEAL_TYPES[slot % MEAL_TYPES.length]) : null);
+    }
+    autoSave();
+  }
+
+  /**
+   * Ставит блюда в указанные приёмы пищи одним сохранением; остальные приёмы пищи
+   * не меняются, {@code null} очищает приём пищи. Если хотя бы один день или приём
+   * пищи неизвестен, меню не меняется.
+   */
+  public void applyPlan(Map<String, Map<String, Dish>> plan) {
+    int count = 0;
+    for (Map<String, Dish> meals : plan.values()) {
+      count += meals.size();
+    }
+    int[] targets = new int[count];
+    Dish[] planned = new Dish[count];
+    int index = 0;
+    for (Map.Entry<String, Map<String, Dish>> day : plan.entrySet()) {
+      for (Map.Entry<String, Dish> meal : day.getValue().entrySet()) {
+        int slot = slotIndex(day.getKey(), meal.getKey());
+        if (slot < 0) {
+          throw new IllegalArgumentException("Неизвестный день или приём пищи: "
+              + day.getKey() + ", " + meal.getKey());
+        }
+        targets[index] = slot;
+        planned[index++] = meal.getValue();
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      assignSlot(targets[i], planned[i]);
+    }
     autoSave();
   }
 
   public void setMenuForDay(String day, String mealType, Dish dish) {
-    weeklyMenu.computeIfAbsent(day, k -> new HashMap<>()).put(mealType, dish);
+    int slot = slotIndex(day, mealType);
+    if (slot < 0) {
+      throw new IllegalArgumentException("Неизвестный день или приём пищи: " + day + ", "
+          + mealType);
+    }
+    assignSlot(slot, dish);
     autoSave();
   }
 
   public Dish getMenuForDay(String day, String mealType) {
-    Map<String, Dish> dayMenu = weeklyMenu.get(day);
-    return dayMenu != null ? dayMenu.get(mealType) : null;
+    int slot = slotIndex(day, mealType);
+    return slot >= 0 ? catalog.get(slots[slot]) : null;
+  }
+
+  /**
+   * Проверяет, стоит ли блюдо в приёме пищи, сравнивая идентификаторы.
+   * Названия ингредиентов блюда должны быть приведены к словарным.
+   */
+  public boolean isPlanned(String day, String mealType, Dish dish) {
+    int slot = slotIndex(day, mealType);
+    return slot >= 0 && dish != null && slots[slot] != DishCatalog.NONE
+        && slots[slot] == catalog.find(dish);
   }
 
   public Map<String, ProductQuantity> getProducts() {
     return new HashMap<>(products);
   }
 
+  /**
+   * Возвращает количество продукта без копирования запаса или {@code null}.
+   */
+  public ProductQuantity getProduct(String product) {
+    return products.get(findProductName(product));
+  }
+
+  /**
+   * Число продуктов в запасе без копирования.
+   */
+  public int getProductCount() {
+    return products.size();
+  }
+
   public Map<String, ProductQuantity> getAllProducts() {
     return new HashMap<>(products);
   }
 
   public void setProducts(Map<String, ProductQuantity> products) {
-    this.products = new HashMap<>(products);
+    Map<String, ProductQuantity> previous = this.products;
+    this.products = canonicalProducts(products);
+    if (tracking()) {
+      for (Map.Entry<String, ProductQuantity> entry : previous.entrySet()) {
+        ProductQuantity after = this.products.get(entry.getKey());
+        if (!entry.getValue().equals(after)) {
+          changedProduct(entry.getKey(), entry.getValue(), after);
+        }
+      }
+      for (Map.Entry<String, ProductQuantity> entry : this.products.entrySet()) {
+        if (!previous.containsKey(entry.getKey())) {
+          changedProduct(entry.getKey(), null, entry.getValue());
+        }
+      }
+    }
+    markDirty(INVENTORY_SEGMENT);
     autoSave();
   }
 
   public void addProduct(String product, ProductQuantity quantity) {
-    products.put(product, quantity);
+    product = productNames.canonicalName(product);
+    changedProduct(product, products.put(product, quantity), quantity);
     autoSave();
   }
 
   /**
-   * Обновляет продукты в системе.
+   * Обновляет продукты в системе. Нулевое количество удаляет продукт; неизвестное
+   * название при этом не попадает в словарь.
    */
   public void updateProduct(String product, ProductQuantity newQuantity) {
     if (newQuantity.getAmount() <= 0) {
-      products.remove(product);
-    } else {
-      products.put(product, newQuantity);
+      removeProduct(product);
+      return;
     }
+    product = productNames.canonicalName(product);
+    changedProduct(product, products.put(product, newQuantity), newQuantity);
     autoSave();
   }
 
   /**
-   * Обновляет блюдо в системе.
+   * Обновляет блюдо в системе. Приёмы пищи ссылаются на блюдо по идентификатору,
+   * поэтому новое содержимое сразу видно в меню.
    */
   public void updateDish(String oldName, Dish updatedDish) {
+    Dish before = tracking() ? peekDish(oldName) : null;
+    Dish replaced = tracking() && !oldName.equals(updatedDish.getName())
+        ? peekDish(updatedDish.getName()) : null;
     dishes.removeIf(d -> d.getName().equals(oldName));
     dishes.add(updatedDish);
+    searchIndex.remove(oldName);
+    searchIndex.add(updatedDish);
 
-    for (Map<String, Dish> dayMenu : weeklyMenu.values()) {
-      for (Map.Entry<String, Dish> entry : dayMenu.entrySet()) {
-        if (entry.getValue() != null && entry.getValue().getName().equals(oldName)) {
-          dayMenu.put(entry.getKey(), updatedDish);
-        }
+    int id = catalog.find(oldName);
+    if (id != DishCatalog.NONE) {
+      replaceDish(id, updatedDish, true);
+    } else {
+      id = catalog.list(updatedDish);
+    }
+    for (int slot = 0; slot < SLOT_COUNT; slot++) {
+      Dish current = catalog.get(slots[slot]);
+      if (slots[slot] != id && current != null && current.getName().equals(oldName)) {
+        assignSlot(slot, updatedDish);
       }
     }
+    if (oldName.equals(updatedDish.getName())) {
+      changedDish(oldName, before, updatedDish);
+    } else {
+      changedDish(oldName, before, null);
+      changedDish(updatedDish.getName(), replaced, updatedDish);
+    }
     autoSave();
   }
 
+  /**
+   * Удаляет продукт из запаса. Неизвестное название ничего не меняет и не попадает в словарь.
+   */
   public void removeProduct(String product) {
-    products.remove(product);
+    product = findProductName(product);
+    if (product == null) {
+      return;
+    }
+    changedProduct(product, products.remove(product), null);
+    autoSave();
+  }
+
+  /**
+   * Подписывает слушателя на изменения данных.
+   */
+  public void addListener(RepositoryListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(RepositoryListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Начинает запись отменяемого изменения. Вложенные вызовы входят в внешнее изменение.
+   */
+  public void beginEdit(String label) {
+    if (editDepth++ == 0) {
+      currentEdit = new MenuEdit.Builder(label);
+    }
+  }
+
+  /**
+   * Завершает запись изменения. Возвращает {@code null} для вложенного вызова
+   * или если данные не изменились.
+   */
+  public MenuEdit endEdit() {
+    if (editDepth == 0 || --editDepth > 0) {
+      return null;
+    }
+    MenuEdit.Builder builder = currentEdit;
+    currentEdit = null;
+    return builder.build(this);
+  }
+
+  /**
+   * Запоминает расход продукта в записываемом изменении, чтобы отмена вернула его
+   * в статистику расхода.
+   */
+  void consumedInEdit(String product, double baseAmount) {
+    if (currentEdit != null) {
+      currentEdit.consumed(product, baseAmount);
+    }
+  }
+
+  /**
+   * Запоминает даты купленной партии в записываемом изменении, чтобы повтор
+   * создал партию с теми же датами.
+   */
+  void purchasedInEdit(String product, LocalDate purchased, LocalDate expires) {
+    if (currentEdit != null) {
+      currentEdit.purchased(product, purchased, expires);
+    }
+  }
+
+  /**
+   * Применяет состояние изменения до или после операции одним сохранением.
+   * Меню и запас продуктов восстанавливаются вместе, поэтому отмена добавления
+   * блюда возвращает и продукты.
+   */
+  public void applyEdit(MenuEdit edit, boolean before) {
+    for (Map.Entry<String, Dish> entry : edit.getDishes(before).entrySet()) {
+      String name = entry.getKey();
+      Dish dish = entry.getValue();
+      int index = indexOfDish(name);
+      Dish previous = index >= 0 ? dishes.get(index) : null;
+      searchIndex.remove(name);
+      if (dish == null) {
+        if (index >= 0) {
+          dishes.remove(index);
+        }
+        catalog.unlist(name);
+      } else {
+        if (index >= 0) {
+          dishes.set(index, dish);
+        } else {
+          dishes.add(dish);
+        }
+        searchIndex.add(dish);
+        int id = catalog.find(name);
+        if (id != DishCatalog.NONE) {
+          replaceDish(id, dish, true);
+        } else {
+          catalog.list(dish);
+        }
+      }
+      changedDish(name, previous, dish);
+    }
+
+    for (Map.Entry<String, Map<String, Dish>> day : edit.getSlots(before).entrySet()) {
+      for (Map.Entry<String, Dish> meal : day.getValue().entrySet()) {
+        int slot = slotIndex(day.getKey(), meal.getKey());
+        if (slot >= 0) {
+          assignSlot(slot, meal.getValue());
+        }
+      }
+    }
+
+    for (Map.Entry<String, ProductQuantity> entry : edit.getProducts(before).entrySet()) {
+      ProductQuantity previous = entry.getValue() == null
+          ? products.remove(entry.getKey()) : products.put(entry.getKey(), entry.getValue());
+      changedProduct(entry.getKey(), previous, entry.getValue());
+    }
     autoSave();
   }
 
+  ProductQuantity peekProduct(String product) {
+    return products.get(product);
+  }
+
+  Dish peekDish(String name) {
+    int index = indexOfDish(name);
+    return index >= 0 ? dishes.get(index) : null;
+  }
+
+  /**
+   * Возвращает блюда с указанными названиями за один проход по каталогу.
+   */
+  Map<String, Dish> peekDishes(Set<String> names) {
+    Map<String, Dish> result = new HashMap<>();
+    if (names.isEmpty()) {
+      return result;
+    }
+    for (Dish dish : dishes) {
+      if (names.contains(dish.getName())) {
+        result.putIfAbsent(dish.getName(), dish);
+      }
+    }
+    return result;
+  }
+
+  private int indexOfDish(String name) {
+    for (int i = 0; i < dishes.size(); i++) {
+      if (dishes.get(i).getName().equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Map<String, Dish> dishesByName(List<Dish> source) {
+    Map<String, Dish> result = new HashMap<>();
+    for (Dish dish : source) {
+      result.putIfAbsent(dish.getName(), dish);
+    }
+    return result;
+  }
+
+  /**
+   * Нужно ли сообщать об изменениях: идёт запись отменяемого изменения или есть слушатели.
+   */
+  private boolean tracking() {
+    return currentEdit != null || !listeners.isEmpty();
+  }
+
+  private void changedSlot(String day, String mealType, Dish before, Dish after) {
+    markChanged(MENU_SEGMENT, StorageEngine.slotKey(day, mealType));
+    if (currentEdit != null) {
+      currentEdit.slot(day, mealType, before);
+    }
+    for (RepositoryListener listener : listeners) {
+      listener.slotChanged(day, mealType, before, after);
+    }
+  }
+
+  private void changedProduct(String product, ProductQuantity before, ProductQuantity after) {
+    markChanged(INVENTORY_SEGMENT, product);
+    if (currentEdit != null) {
+      currentEdit.product(product, before);
+    }
+    for (RepositoryListener listener : listeners) {
+      listener.productChanged(product, before, after);
+    }
+  }
+
+  private void changedDish(String name, Dish before, Dish after) {
+    markChanged(CATALOG_SEGMENT, name);
+    if (currentEdit != null) {
+      currentEdit.dish(name, before);
+    }
+    for (RepositoryListener listener : listeners) {
+      listener.dishChanged(name, before, after);
+    }
+  }
+
+  /**
+   * Ставит блюдо в приём пищи, перенося ссылку со старого идентификатора на новый.
+   */
+  private void assignSlot(int slot, Dish dish) {
+    int id = dish != null ? catalog.idFor(dish) : DishCatalog.NONE;
+    int previous = slots[slot];
+    if (id == previous) {
+      return;
+    }
+    Dish before = catalog.get(previous);
+    if (id != DishCatalog.NONE) {
+      catalog.retain(id);
+    }
+    slots[slot] = id;
+    if (previous != DishCatalog.NONE) {
+      catalog.release(previous);
+    }
+    changedSlot(DAYS[slot / MEAL_TYPES.length], MEAL_TYPES[slot % MEAL_TYPES.length],
+        before, dish);
+  }
+
+  /**
+   * Заменяет блюдо под идентификатором и сообщает об изменении всех приёмов пищи с ним.
+   */
+  private void replaceDish(int id, Dish dish, boolean inCatalog) {
+    Dish before = catalog.get(id);
+    catalog.replace(id, dish, inCatalog);
+    if (before.equals(dish)) {
+      return;
+    }
+    for (int slot = 0; slot < SLOT_COUNT; slot++) {
+      if (slots[slot] == id) {
+        changedSlot(DAYS[slot / MEAL_TYPES.length], MEAL_TYPES[slot % MEAL_TYPES.length],
+            before, dish);
+      }
+    }
+  }
+
+  /**
+   * Заполняет приёмы пищи загруженным меню. Приёмы пищи с неизвестными
+   * названиями дня или приёма пропускаются.
+   */
+  private void loadMenu(Map<String, Map<String, Dish>> menu) {
+    for (Map.Entry<String, Map<String, Dish>> day : menu.entrySet()) {
+      for (Map.Entry<String, Dish> meal : day.getValue().entrySet()) {
+        int slot = slotIndex(day.getKey(), meal.getKey());
+        if (slot >= 0 && meal.getValue() != null) {
+          slots[slot] = catalog.idFor(meal.getValue());
+          catalog.retain(slots[slot]);
+        } else if (slot < 0 && meal.getValue() != null) {
+          System.err.println("Пропущен приём пищи " + day.getKey() + ", " + meal.getKey());
+        }
+      }
+    }
+  }
+
+  public ProductDictionary getProductDictionary() {
+    return productNames;
+  }
+
+  /**
+   * Возвращает единственный экземпляр названия продукта из общего словаря,
+   * регистрируя новое название. Вызывается только при сохранении данных о продукте.
+   */
+  public String canonicalProductName(String product) {
+    return productNames.isCanonical(product) ? product : productNames.canonicalName(product);
+  }
+
+  /**
+   * Возвращает словарное название известного продукта или {@code null}, не регистрируя
+   * новое: запрос неизвестного продукта не должен попадать в автодополнение.
+   */
+  public String findProductName(String product) {
+    return productNames.isCanonical(product) ? product : productNames.findName(product);
+  }
+
+  private Map<String, ProductQuantity> canonicalProducts(Map<String, ProductQuantity> source) {
+    Map<String, ProductQuantity> result = new HashMap<>();
+    for (Map.Entry<String, ProductQuantity> entry : source.entrySet()) {
+      mergeQuantity(result, canonicalProductName(entry.getKey()), entry.getValue());
+    }
+    return result;
+  }
+
+  private static void mergeQuantity(Map<String, ProductQuantity> target, String product,
+      ProductQuantity quantity) {
+    ProductQuantity existing = target.get(product);
+    if (existing == null) {
+      target.put(product, quantity);
+      return;
+    }
+    double totalBase = existing.getUnit().convertToBaseUnit(existing.getAmount())
+        + quantity.getUnit().convertToBaseUnit(quantity.getAmount());
+    target.put(product, new ProductQuantity(
+        existing.getUnit().convertFromBaseUnit(totalBase), existing.getUnit()));
+  }
+
   /**
    * Проверяет доступность продуктов для приготовления блюда.
    */
   public boolean checkProductsAvailability(Dish dish) {
-    for (Map.Entry<String, ProductQuantity> ingredient : dish.getIngredients().entrySet()) {
-      String product = ingredient.getKey();
-      ProductQuantity pq = ingredient.getValue();
-      double requiredAmount = pq.getUnit().convertToBaseUnit(pq.getAmount());
+    for (int i = 0; i < dish.getIngredientCount(); i++) {
+      double requiredAmount = dish.getUnit(i).convertToBaseUnit(dish.getAmount(i));
 
-      ProductQuantity available = products.get(product);
+      ProductQuantity available = products.get(dish.getProduct(i));
       if (available == null) {
         return false;
       }
@@ -240,17 +1164,14 @@ public class MenuRepository implements Serializable {
    */
   public void exportMenuToFile(String filename) {
     try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-      String[] daysOrder = { "Понедельник", "Вторник", "Среда", "Четверг",
-          "Пятница", "Суббота", "Воскресенье" };
-
-      for (String day : daysOrder) {
+      Map<String, Map<String, Dish>> weeklyMenu = getWeeklyMenu();
+      for (String day : DAYS) {
         if (weeklyMenu.containsKey(day)) {
           writer.write(day + ":");
           writer.newLine();
 
           Map<String, Dish> dayMenu = weeklyMenu.get(day);
-          String[] mealTypes = { "Завтрак", "Обед", "Ужин" };
-          for (String mealType : mealTypes) {
+          for (String mealType : MEAL_TYPES) {
             Dish dish = dayMenu.get(mealType);
             writer.write("  " + mealType + ": " + (dish != null ? dish.getName() : "Не выбрано"));
             writer.newLine();
@@ -260,14 +1181,12 @@ public class MenuRepository implements Serializable {
               writer.newLine();
             }
 
-            if (dish != null && !dish.getIngredients().isEmpty()) {
+            if (dish != null && dish.getIngredientCount() > 0) {
               writer.write("    Ингредиенты:");
               writer.newLine();
-              for (Map.Entry<String, ProductQuantity> ingredient : dish.getIngredients()
-                  .entrySet()) {
-                ProductQuantity pq = ingredient.getValue();
-                writer.write("      - " + ingredient.getKey() + ": "
-                    + pq.getAmount() + " " + pq.getUnit());
+              for (int i = 0; i < dish.getIngredientCount(); i++) {
+                writer.write("      - " + dish.getProduct(i) + ": "
+                    + dish.getAmount(i) + " " + dish.getUnit(i));
                 writer.newLine();
               }
             }
@@ -0,0 +1,326 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Реестр метрик приложения: счётчики, таймеры с гистограммой и датчики.
+ * Счётчики построены на {@link LongAdder}, поэтому запись не берёт блокировок
+ * и почти не конкурирует между потоками. Измерения таймеров дольше
+ * {@value #SLOW_MILLIS} мс дополнительно попадают в кольцевой журнал медленных операций.
+ */
+public final class Metrics {
+  private static final Metrics REGISTRY = new Metrics();
+
+  /**
+   * Границы корзин гистограммы в секундах.
+   */
+  static final double[] BUCKETS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01,
+      0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+  public static final long SLOW_MILLIS = 100;
+  static final int SLOW_CAPACITY = 32;
+  private static final long SLOW_NANOS = SLOW_MILLIS * 1_000_000;
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+  private final SlowOperation[] slow = new SlowOperation[SLOW_CAPACITY];
+  private int slowNext;
+
+  /**
+   * Возвращает общий реестр метрик.
+   */
+  public static Metrics registry() {
+    return REGISTRY;
+  }
+
+  /**
+   * Возвращает счётчик с указанным именем и метками, создавая его при первом обращении.
+   * Метки передаются парами: имя, значение.
+   */
+  public Counter counter(String name, String help, String... labels) {
+    String labelText = formatLabels(labels);
+    return counters.computeIfAbsent(name + labelText, k -> new Counter(name, help, labelText));
+  }
+
+  /**
+   * Возвращает таймер с указанным именем и метками.
+   */
+  public Timer timer(String name, String help, String... labels) {
+    String labelText = formatLabels(labels);
+    return timers.computeIfAbsent(name + labelText, k -> new Timer(this, name, help, labelText));
+  }
+
+  /**
+   * Регистрирует датчик, значение которого вычисляется при выгрузке.
+   * Повторная регистрация с тем же именем заменяет прежний источник значения.
+   */
+  public void gauge(String name, String help, DoubleSupplier value) {
+    gauges.put(name, new Gauge(name, help, value));
+  }
+
+  public List<Counter> getCounters() {
+    return sorted(counters);
+  }
+
+  public List<Timer> getTimers() {
+    return sorted(timers);
+  }
+
+  public List<Gauge> getGauges() {
+    return sorted(gauges);
+  }
+
+  /**
+   * Возвращает последние медленные измерения таймеров, начиная с самого нового.
+   */
+  public List<SlowOperation> getSlowOperations() {
+    List<SlowOperation> result = new ArrayList<>(SLOW_CAPACITY);
+    synchronized (slow) {
+      for (int i = 1; i <= SLOW_CAPACITY; i++) {
+        SlowOperation operation = slow[Math.floorMod(slowNext - i, SLOW_CAPACITY)];
+        if (operation == null) {
+          break;
+        }
+        result.add(operation);
+      }
+    }
+    return result;
+  }
+
+  private void recordSlow(Timer timer, long nanos) {
+    SlowOperation operation = new SlowOperation(timer, nanos, System.currentTimeMillis());
+    synchronized (slow) {
+      slow[slowNext] = operation;
+      slowNext = (slowNext + 1) % SLOW_CAPACITY;
+    }
+  }
+
+  private static <T> List<T> sorted(Map<String, T> metrics) {
+    List<String> keys = new ArrayList<>(metrics.keySet());
+    Collections.sort(keys);
+    List<T> result = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      result.add(metrics.get(key));
+    }
+    return result;
+  }
+
+  private static String formatLabels(String... labels) {
+    if (labels.length == 0) {
+      return "";
+    }
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Метки задаются парами имя-значение");
+    }
+    StringBuilder text = new StringBuilder("{");
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        text.append(',');
+      }
+      text.append(labels[i]).append("=\"")
+          .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+    return text.append('}').toString();
+  }
+
+  /**
+   * Общие сведения метрики: имя, описание и метки в текстовом формате Prometheus.
+   */
+  public abstract static class Metric {
+    private final String name;
+    private final String help;
+    private final String labels;
+
+    Metric(String name, String help, String labels) {
+      this.name = name;
+      this.help = help;
+      this.labels = labels;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getHelp() {
+      return help;
+    }
+
+    public String getLabels() {
+      return labels;
+    }
+  }
+
+  /**
+   * Монотонно растущий счётчик.
+   */
+  public static final class Counter extends Metric {
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help, String labels) {
+      super(name, help, labels);
+    }
+
+    public void increment() {
+      value.increment();
+    }
+
+    public void add(long amount) {
+      value.add(amount);
+    }
+
+    public long get() {
+      return value.sum();
+    }
+  }
+
+  /**
+   * Таймер с гистограммой длительностей по фиксированным корзинам.
+   */
+  public static final class Timer extends Metric {
+    private final Metrics registry;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    Timer(Metrics registry, String name, String help, String labels) {
+      super(name, help, labels);
+      this.registry = registry;
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Учитывает одно измерение длительности в наносекундах.
+     */
+    public void record(long nanos) {
+      double seconds = nanos / 1e9;
+      int bucket = 0;
+      while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+        bucket++;
+      }
+      buckets[bucket].increment();
+      count.increment();
+      totalNanos.add(nanos);
+      if (nanos >= SLOW_NANOS) {
+        registry.recordSlow(this, nanos);
+      }
+    }
+
+    /**
+     * Выполняет действие и учитывает его длительность.
+     */
+    public <T> T time(Supplier<T> action) {
+      long start = System.nanoTime();
+      try {
+        return action.get();
+      } finally {
+        record(System.nanoTime() - start);
+      }
+    }
+
+    /**
+     * Выполняет действие без результата и учитывает его длительность.
+     */
+    public void time(Runnable action) {
+      long start = System.nanoTime();
+      try {
+        action.run();
+      } finally {
+        record(System.nanoTime() - start);
+      }
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public double getSumSeconds() {
+      return totalNanos.sum() / 1e9;
+    }
+
+    /**
+     * Возвращает накопленные количества по корзинам; последний элемент — без верхней границы.
+     */
+    public long[] getCumulativeBuckets() {
+      long[] result = new long[buckets.length];
+      long total = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        total += buckets[i].sum();
+        result[i] = total;
+      }
+      return result;
+    }
+
+    /**
+     * Оценивает квантиль по гистограмме как верхнюю границу соответствующей корзины.
+     */
+    public double quantileSeconds(double quantile) {
+      long[] cumulative = getCumulativeBuckets();
+      long total = cumulative[cumulative.length - 1];
+      if (total == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(quantile * total);
+      for (int i = 0; i < BUCKETS.length; i++) {
+        if (cumulative[i] >= rank) {
+          return BUCKETS[i];
+        }
+      }
+      return Double.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Датчик с вычисляемым значением.
+   */
+  public static final class Gauge extends Metric {
+    private final DoubleSupplier value;
+
+    Gauge(String name, String help, DoubleSupplier value) {
+      super(name, help, "");
+      this.value = value;
+    }
+
+    public double get() {
+      return value.getAsDouble();
+    }
+  }
+
+  /**
+   * Одно измерение таймера дольше {@value Metrics#SLOW_MILLIS} мс.
+   */
+  public static final class SlowOperation {
+    private final Timer timer;
+    private final long nanos;
+    private final long time;
+
+    SlowOperation(Timer timer, long nanos, long time) {
+      this.timer = timer;
+      this.nanos = nanos;
+      this.time = time;
+    }
+
+    public Timer getTimer() {
+      return timer;
+    }
+
+    public double getMillis() {
+      return nanos / 1e6;
+    }
+
+    /**
+     * Время завершения операции в миллисекундах от начала эпохи.
+     */
+    public long getTime() {
+      return time;
+    }
+  }
+}
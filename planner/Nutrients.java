@@ -0,0 +1,73 @@
+package planner;
+
+/**
+ * Пищевая ценность: калории, белки, жиры и углеводы. Дополнительно учитывается,
+ * для скольких ингредиентов не нашлось данных, чтобы интерфейс мог пометить
+ * итог как неполный.
+ */
+public final class Nutrients {
+  public static final Nutrients ZERO = new Nutrients(0, 0, 0, 0, 0);
+
+  private final double calories;
+  private final double protein;
+  private final double fat;
+  private final double carbs;
+  private final int missing;
+
+  /**
+   * Создает пищевую ценность; {@code missing} — число ингредиентов без данных.
+   */
+  public Nutrients(double calories, double protein, double fat, double carbs, int missing) {
+    this.calories = calories;
+    this.protein = protein;
+    this.fat = fat;
+    this.carbs = carbs;
+    this.missing = missing;
+  }
+
+  public double getCalories() {
+    return calories;
+  }
+
+  public double getProtein() {
+    return protein;
+  }
+
+  public double getFat() {
+    return fat;
+  }
+
+  public double getCarbs() {
+    return carbs;
+  }
+
+  /**
+   * Возвращает число ингредиентов, для которых нет данных о пищевой ценности.
+   */
+  public int getMissing() {
+    return missing;
+  }
+
+  public boolean isComplete() {
+    return missing == 0;
+  }
+
+  /**
+   * Возвращает сумму с другой пищевой ценностью.
+   */
+  public Nutrients plus(Nutrients other) {
+    if (other == ZERO) {
+      return this;
+    }
+    if (this == ZERO) {
+      return other;
+    }
+    return new Nutrients(calories + other.calories, protein + other.protein,
+        fat + other.fat, carbs + other.carbs, missing + other.missing);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%.0f ккал, Б %.1f, Ж %.1f, У %.1f", calories, protein, fat, carbs);
+  }
+}
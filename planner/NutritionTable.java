@@ -0,0 +1,167 @@
+package planner;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Таблица пищевой ценности продуктов. Загружается из CSV с разделителем ";":
+ * продукт, единица ("гр", "мл" или "шт"), калории, белки, жиры, углеводы.
+ * Значения для граммов и миллилитров указываются на 100 единиц, для штук — на одну.
+ * Граммы и миллилитры считаются взаимозаменяемыми, штуки сопоставляются только со штуками.
+ *
+ * <p>По умолчанию используется таблица {@code nutrition.csv} из пакета; свойство
+ * {@code planner.nutrition} задаёт путь к собственному файлу.
+ */
+public final class NutritionTable {
+  public static final String RESOURCE = "nutrition.csv";
+
+  private static final int CALORIES = 0;
+  private static final int PROTEIN = 1;
+  private static final int FAT = 2;
+  private static final int CARBS = 3;
+  /**
+   * Признак продукта, для которого нет данных, в кэше по идентификатору.
+   */
+  private static final Entry UNKNOWN = new Entry(false, new double[4]);
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final ProductDictionary dictionary = ProductDictionary.getInstance();
+  private Entry[] byProductId = new Entry[64];
+
+  /**
+   * Данные продукта на одну базовую единицу.
+   */
+  private static final class Entry {
+    private final boolean pieces;
+    private final double[] perUnit;
+
+    Entry(boolean pieces, double[] perUnit) {
+      this.pieces = pieces;
+      this.perUnit = perUnit;
+    }
+  }
+
+  /**
+   * Загружает таблицу из файла, указанного в {@code planner.nutrition}, или из пакета.
+   * При ошибке чтения возвращает пустую таблицу.
+   */
+  public static NutritionTable load() {
+    String path = System.getProperty("planner.nutrition");
+    try (InputStream in = path != null
+        ? new FileInputStream(path) : NutritionTable.class.getResourceAsStream(RESOURCE)) {
+      if (in == null) {
+        System.err.println("Таблица пищевой ценности не найдена");
+        return new NutritionTable();
+      }
+      return read(new InputStreamReader(in, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      System.err.println("Ошибка загрузки таблицы пищевой ценности: " + e.getMessage());
+      return new NutritionTable();
+    }
+  }
+
+  /**
+   * Читает таблицу из CSV. Пустые строки, комментарии с "#" и строки с ошибками
+   * пропускаются.
+   */
+  public static NutritionTable read(Reader source) throws IOException {
+    NutritionTable table = new NutritionTable();
+    BufferedReader reader = new BufferedReader(source);
+    String line;
+    int number = 0;
+    while ((line = reader.readLine()) != null) {
+      number++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(";");
+      if (fields.length < 6) {
+        System.err.println("Строка " + number + " таблицы пищевой ценности пропущена: " + line);
+        continue;
+      }
+      try {
+        table.put(fields[0], ProductUnit.fromString(fields[1].trim()),
+            NumberParser.parse(fields[2]), NumberParser.parse(fields[3]),
+            NumberParser.parse(fields[4]), NumberParser.parse(fields[5]));
+      } catch (ParseException e) {
+        System.err.println("Строка " + number + " таблицы пищевой ценности пропущена: "
+            + e.getMessage());
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Добавляет или заменяет данные продукта; значения указаны на 100 гр или мл либо на 1 шт.
+   */
+  public synchronized void put(String product, ProductUnit unit, double calories,
+      double protein, double fat, double carbs) {
+    boolean pieces = unit == ProductUnit.PIECES;
+    double scale = pieces ? 1 : 100;
+    double[] perUnit = new double[4];
+    perUnit[CALORIES] = calories / scale;
+    perUnit[PROTEIN] = protein / scale;
+    perUnit[FAT] = fat / scale;
+    perUnit[CARBS] = carbs / scale;
+    entries.put(ProductDictionary.canonicalKey(product), new Entry(pieces, perUnit));
+    Arrays.fill(byProductId, null);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized boolean contains(String product) {
+    return entries.containsKey(ProductDictionary.canonicalKey(product));
+  }
+
+  /**
+   * Вычисляет пищевую ценность блюда. Ингредиенты без данных или с несовместимой
+   * единицей не учитываются и подсчитываются в {@link Nutrients#getMissing()}.
+   */
+  public synchronized Nutrients of(Dish dish) {
+    double[] total = new double[4];
+    int missing = 0;
+    for (int i = 0; i < dish.getIngredientCount(); i++) {
+      Entry entry = entry(dish.getProductId(i));
+      ProductUnit unit = dish.getUnit(i);
+      if (entry == UNKNOWN || entry.pieces != (unit == ProductUnit.PIECES)) {
+        missing++;
+        continue;
+      }
+      double amount = unit.convertToBaseUnit(dish.getAmount(i));
+      for (int n = 0; n < total.length; n++) {
+        total[n] += amount * entry.perUnit[n];
+      }
+    }
+    return new Nutrients(total[CALORIES], total[PROTEIN], total[FAT], total[CARBS], missing);
+  }
+
+  /**
+   * Возвращает данные продукта по идентификатору словаря, запоминая результат поиска.
+   */
+  private Entry entry(int productId) {
+    if (productId >= byProductId.length) {
+      byProductId = Arrays.copyOf(byProductId, Math.max(productId + 1, byProductId.length * 2));
+    }
+    Entry entry = byProductId[productId];
+    if (entry == null) {
+      entry = entries.get(ProductDictionary.canonicalKey(dictionary.nameOf(productId)));
+      if (entry == null) {
+        entry = UNKNOWN;
+      }
+      byProductId[productId] = entry;
+    }
+    return entry;
+  }
+}
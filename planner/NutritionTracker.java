@@ -0,0 +1,140 @@
+package planner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Итоги пищевой ценности меню по приёмам пищи, дням и неделе. Пищевая ценность
+ * блюда вычисляется один раз и запоминается; при изменении приёма пищи
+ * пересчитываются только его день и неделя, поэтому чтение итогов ничего не вычисляет.
+ */
+public class NutritionTracker implements RepositoryListener {
+  static final int CACHE_LIMIT = 4096;
+
+  private static final String[] DAYS = MenuRepository.DAYS;
+  private static final int MEALS = MenuRepository.MEAL_TYPES.length;
+  private static final Metrics.Counter CACHE_HITS = Metrics.registry().counter(
+      "planner_nutrition_cache_total", "Обращения к кэшу пищевой ценности блюд",
+      "result", "hit");
+  private static final Metrics.Counter CACHE_MISSES = Metrics.registry().counter(
+      "planner_nutrition_cache_total", "Обращения к кэшу пищевой ценности блюд",
+      "result", "miss");
+
+  private final MenuRepository repository;
+  private final NutritionTable table;
+  private final Map<Dish, Nutrients> dishes = new HashMap<>();
+  private final Nutrients[] slots = new Nutrients[MenuRepository.SLOT_COUNT];
+  private final Nutrients[] days = new Nutrients[DAYS.length];
+  private Nutrients week = Nutrients.ZERO;
+
+  /**
+   * Создает итоги для меню репозитория и подписывается на его изменения.
+   */
+  public NutritionTracker(MenuRepository repository, NutritionTable table) {
+    this.repository = repository;
+    this.table = table;
+    Arrays.fill(slots, Nutrients.ZERO);
+    Arrays.fill(days, Nutrients.ZERO);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      recalculate();
+    }
+  }
+
+  public NutritionTable getTable() {
+    return table;
+  }
+
+  /**
+   * Возвращает пищевую ценность блюда из кэша, вычисляя её при первом обращении.
+   */
+  public synchronized Nutrients getDish(Dish dish) {
+    if (dish == null) {
+      return Nutrients.ZERO;
+    }
+    Nutrients nutrients = dishes.get(dish);
+    if (nutrients != null) {
+      CACHE_HITS.increment();
+      return nutrients;
+    }
+    CACHE_MISSES.increment();
+    if (dishes.size() >= CACHE_LIMIT) {
+      dishes.clear();
+    }
+    nutrients = table.of(dish);
+    dishes.put(dish, nutrients);
+    return nutrients;
+  }
+
+  public synchronized Nutrients getMeal(String day, String mealType) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    return slot >= 0 ? slots[slot] : Nutrients.ZERO;
+  }
+
+  public synchronized Nutrients getDay(String day) {
+    int index = Arrays.asList(DAYS).indexOf(day);
+    return index >= 0 ? days[index] : Nutrients.ZERO;
+  }
+
+  public synchronized Nutrients getWeek() {
+    return week;
+  }
+
+  /**
+   * Число блюд в кэше.
+   */
+  public synchronized int getCachedDishCount() {
+    return dishes.size();
+  }
+
+  @Override
+  public synchronized void slotChanged(String day, String mealType, Dish before, Dish after) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (slot < 0) {
+      return;
+    }
+    slots[slot] = getDish(after);
+    updateDay(slot / MEALS);
+  }
+
+  @Override
+  public synchronized void dishChanged(String name, Dish before, Dish after) {
+    if (before != null) {
+      dishes.remove(before);
+    }
+  }
+
+  @Override
+  public void dataLoaded() {
+    recalculate();
+  }
+
+  /**
+   * Пересчитывает все итоги по текущему меню репозитория.
+   */
+  public synchronized void recalculate() {
+    Map<String, Map<String, Dish>> menu = repository.getWeeklyMenu();
+    for (int slot = 0; slot < slots.length; slot++) {
+      Map<String, Dish> dayMenu = menu.get(DAYS[slot / MEALS]);
+      Dish dish = dayMenu != null ? dayMenu.get(MenuRepository.MEAL_TYPES[slot % MEALS]) : null;
+      slots[slot] = getDish(dish);
+    }
+    for (int day = 0; day < days.length; day++) {
+      updateDay(day);
+    }
+  }
+
+  private void updateDay(int day) {
+    Nutrients total = Nutrients.ZERO;
+    for (int slot = day * MEALS; slot < (day + 1) * MEALS; slot++) {
+      total = total.plus(slots[slot]);
+    }
+    days[day] = total;
+    Nutrients weekTotal = Nutrients.ZERO;
+    for (Nutrients dayTotal : days) {
+      weekTotal = weekTotal.plus(dayTotal);
+    }
+    week = weekTotal;
+  }
+}
@@ -0,0 +1,145 @@
+package planner;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * События JDK Flight Recorder для сохранения, загрузки, списания продуктов,
+ * планирования меню и экспорта. Пока запись не включена, события почти ничего
+ * не стоят: поля заполняются только после проверки {@code shouldCommit()}.
+ *
+ * <p>Запись с настройками планировщика: {@code java
+ * -XX:StartFlightRecording:settings=default,planner/planner.jfc,filename=planner.jfr Main}.
+ */
+public final class PlannerEvents {
+  private PlannerEvents() {
+  }
+
+  /**
+   * Автосохранение изменённых сегментов данных.
+   */
+  @Name("planner.Save")
+  @Label("Сохранение данных")
+  @Category({ "Planner", "Persistence" })
+  @Threshold("10 ms")
+  @StackTrace(false)
+  public static final class SaveEvent extends Event {
+    @Label("Файл")
+    String file;
+
+    @Label("Сегменты")
+    String segments;
+
+    @Label("Размер")
+    @DataAmount
+    long bytes;
+
+    @Label("Блюд")
+    int dishes;
+
+    @Label("Продуктов")
+    int products;
+
+    @Label("Успешно")
+    boolean success;
+  }
+
+  /**
+   * Загрузка данных из файла автосохранения.
+   */
+  @Name("planner.Load")
+  @Label("Загрузка данных")
+  @Category({ "Planner", "Persistence" })
+  @Threshold("10 ms")
+  @StackTrace(false)
+  public static final class LoadEvent extends Event {
+    @Label("Файл")
+    String file;
+
+    @Label("Размер")
+    @DataAmount
+    long bytes;
+
+    @Label("Блюд")
+    int dishes;
+
+    @Label("Продуктов")
+    int products;
+
+    @Label("Заполненных приёмов пищи")
+    int meals;
+
+    @Label("Успешно")
+    boolean success;
+  }
+
+  /**
+   * Списание или возврат продуктов блюда.
+   */
+  @Name("planner.Inventory")
+  @Label("Изменение запаса")
+  @Category({ "Planner", "Inventory" })
+  @Threshold("1 ms")
+  @StackTrace(false)
+  public static final class InventoryEvent extends Event {
+    @Label("Операция")
+    @Description("deduct или return")
+    String operation;
+
+    @Label("Блюдо")
+    String dish;
+
+    @Label("Затронуто ингредиентов")
+    int ingredients;
+  }
+
+  /**
+   * Добавление блюда в меню дня.
+   */
+  @Name("planner.AddMeal")
+  @Label("Добавление блюда в меню")
+  @Category({ "Planner", "Planning" })
+  @Threshold("1 ms")
+  public static final class AddMealEvent extends Event {
+    @Label("День")
+    String day;
+
+    @Label("Приём пищи")
+    String mealType;
+
+    @Label("Блюдо")
+    String dish;
+
+    @Label("Добавлено")
+    boolean added;
+
+    @Label("Причина")
+    @Description("same-dish, insufficient-products, replaced или added")
+    String reason;
+  }
+
+  /**
+   * Экспорт меню или продуктов в текстовый файл.
+   */
+  @Name("planner.Export")
+  @Label("Экспорт")
+  @Category({ "Planner", "Export" })
+  @Threshold("5 ms")
+  @StackTrace(false)
+  public static final class ExportEvent extends Event {
+    @Label("Что экспортируется")
+    String kind;
+
+    @Label("Файл")
+    String file;
+
+    @Label("Записей")
+    int entries;
+  }
+}
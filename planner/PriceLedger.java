@@ -0,0 +1,453 @@
+package planner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Цены продуктов с историей изменений и стоимость меню. Цена хранится за базовую
+ * единицу продукта; стоимость блюда вычисляется один раз и запоминается, а смена
+ * цены сбрасывает только стоимость блюд с этим продуктом.
+ * Стоимость приёмов пищи, дней и недели, а также стоимость запаса обновляются
+ * по изменениям репозитория и цен без обхода всего меню.
+ */
+public class PriceLedger implements RepositoryListener, SegmentHandler {
+  public static final String SEGMENT = "prices";
+
+  private static final String[] DAYS = MenuRepository.DAYS;
+  private static final int MEALS = MenuRepository.MEAL_TYPES.length;
+  private static final int SLOTS = MenuRepository.SLOT_COUNT;
+
+  private final MenuRepository repository;
+  private final ProductDictionary dictionary = ProductDictionary.getInstance();
+  private Map<String, History> histories = new HashMap<>();
+  /**
+   * Текущая цена за базовую единицу по идентификатору продукта; NaN — цена не задана.
+   */
+  private double[] prices = new double[64];
+  private final Map<Dish, Cost> dishCosts = new HashMap<>();
+  /**
+   * Блюда из кэша стоимости по идентификатору продукта.
+   */
+  private final Map<Integer, Set<Dish>> costDishes = new HashMap<>();
+  private final Dish[] slotDishes = new Dish[SLOTS];
+  private final Cost[] slotCosts = new Cost[SLOTS];
+  private final Cost[] dayCosts = new Cost[DAYS.length];
+  private Cost weekCost = Cost.ZERO;
+  private final Map<String, Double> inventory = new HashMap<>();
+  private double inventoryValue;
+
+  /**
+   * Создает книгу цен и подключает её к репозиторию.
+   */
+  public PriceLedger(MenuRepository repository) {
+    this.repository = repository;
+    Arrays.fill(prices, Double.NaN);
+    Arrays.fill(slotCosts, Cost.ZERO);
+    Arrays.fill(dayCosts, Cost.ZERO);
+    repository.registerSegment(SEGMENT, this);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      recalculate();
+    }
+  }
+
+  /**
+   * Стоимость и число ингредиентов или продуктов без цены.
+   */
+  public static final class Cost {
+    public static final Cost ZERO = new Cost(0, 0);
+
+    private final double amount;
+    private final int unpriced;
+
+    Cost(double amount, int unpriced) {
+      this.amount = amount;
+      this.unpriced = unpriced;
+    }
+
+    public double getAmount() {
+      return amount;
+    }
+
+    /**
+     * Возвращает число ингредиентов, для которых цена не задана.
+     */
+    public int getUnpriced() {
+      return unpriced;
+    }
+
+    public boolean isComplete() {
+      return unpriced == 0;
+    }
+
+    Cost plus(Cost other) {
+      if (other == ZERO) {
+        return this;
+      }
+      return this == ZERO ? other : new Cost(amount + other.amount, unpriced + other.unpriced);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.2f", amount);
+    }
+  }
+
+  /**
+   * Изменение цены продукта: цена за единицу, в которой она была задана.
+   */
+  public static final class PriceRecord {
+    private final long time;
+    private final double price;
+    private final ProductUnit unit;
+
+    PriceRecord(long time, double price, ProductUnit unit) {
+      this.time = time;
+      this.price = price;
+      this.unit = unit;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public double getPrice() {
+      return price;
+    }
+
+    public ProductUnit getUnit() {
+      return unit;
+    }
+  }
+
+  /**
+   * История цен одного продукта: время и цена за базовую единицу.
+   */
+  private static final class History implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long[] times = new long[4];
+    private double[] perBase = new double[4];
+    private byte[] units = new byte[4];
+    private int size;
+
+    void add(long time, double pricePerBase, ProductUnit unit) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        perBase = Arrays.copyOf(perBase, size * 2);
+        units = Arrays.copyOf(units, size * 2);
+      }
+      times[size] = time;
+      perBase[size] = pricePerBase;
+      units[size] = (byte) unit.ordinal();
+      size++;
+    }
+
+    double current() {
+      return perBase[size - 1];
+    }
+
+    /**
+     * Цена за базовую единицу на момент времени или NaN, если цены ещё не было.
+     */
+    double at(long time) {
+      int index = Arrays.binarySearch(times, 0, size, time);
+      if (index < 0) {
+        index = -index - 2;
+      } else {
+        while (index + 1 < size && times[index + 1] == time) {
+          index++;
+        }
+      }
+      return index >= 0 ? perBase[index] : Double.NaN;
+    }
+
+    PriceRecord record(int index) {
+      ProductUnit unit = ProductUnit.ofOrdinal(units[index]);
+      return new PriceRecord(times[index], perBase[index] * unit.convertToBaseUnit(1), unit);
+    }
+  }
+
+  /**
+   * Задаёт цену продукта за одну единицу {@code unit}; прежние цены остаются в истории.
+   */
+  public synchronized void setPrice(String product, double price, ProductUnit unit) {
+    if (price < 0 || Double.isNaN(price) || Double.isInfinite(price)) {
+      throw new IllegalArgumentException("Некорректная цена: " + price);
+    }
+    product = repository.canonicalProductName(product);
+    double perBase = price / unit.convertToBaseUnit(1);
+    double old = price(product);
+    histories.computeIfAbsent(product, p -> new History())
+        .add(System.currentTimeMillis(), perBase, unit);
+    int id = dictionary.intern(product);
+    ensureCapacity(id);
+    prices[id] = perBase;
+    repository.markSegmentDirty(SEGMENT);
+
+    Double amount = inventory.get(product);
+    if (amount != null) {
+      inventoryValue += amount * (perBase - (Double.isNaN(old) ? 0 : old));
+    }
+    priceChanged(id);
+    boolean changed = false;
+    for (int slot = 0; slot < SLOTS; slot++) {
+      if (slotDishes[slot] != null && slotDishes[slot].containsProduct(id)) {
+        slotCosts[slot] = getDishCost(slotDishes[slot]);
+        updateDay(slot / MEALS);
+        changed = true;
+      }
+    }
+    if (changed) {
+      updateWeek();
+    }
+    repository.autoSave();
+  }
+
+  /**
+   * Возвращает текущую цену продукта за одну единицу {@code unit} или {@code null}.
+   */
+  public synchronized Double getPrice(String product, ProductUnit unit) {
+    double perBase = price(repository.findProductName(product));
+    return Double.isNaN(perBase) ? null : perBase * unit.convertToBaseUnit(1);
+  }
+
+  /**
+   * Возвращает цену продукта за одну единицу {@code unit} на момент времени или {@code null}.
+   */
+  public synchronized Double getPriceAt(String product, long time, ProductUnit unit) {
+    History history = histories.get(repository.findProductName(product));
+    double perBase = history != null ? history.at(time) : Double.NaN;
+    return Double.isNaN(perBase) ? null : perBase * unit.convertToBaseUnit(1);
+  }
+
+  /**
+   * Возвращает все изменения цены продукта по времени.
+   */
+  public synchronized List<PriceRecord> getPriceHistory(String product) {
+    History history = histories.get(repository.findProductName(product));
+    List<PriceRecord> result = new ArrayList<>();
+    if (history != null) {
+      for (int i = 0; i < history.size; i++) {
+        result.add(history.record(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Возвращает стоимость блюда из кэша, вычисляя её при первом обращении.
+   */
+  public synchronized Cost getDishCost(Dish dish) {
+    if (dish == null) {
+      return Cost.ZERO;
+    }
+    Cost cost = dishCosts.get(dish);
+    if (cost == null) {
+      double amount = 0;
+      int unpriced = 0;
+      for (int i = 0; i < dish.getIngredientCount(); i++) {
+        int id = dish.getProductId(i);
+        double perBase = id < prices.length ? prices[id] : Double.NaN;
+        if (Double.isNaN(perBase)) {
+          unpriced++;
+        } else {
+          amount += dish.getUnit(i).convertToBaseUnit(dish.getAmount(i)) * perBase;
+        }
+      }
+      cost = new Cost(amount, unpriced);
+      dishCosts.put(dish, cost);
+      for (int i = 0; i < dish.getIngredientCount(); i++) {
+        costDishes.computeIfAbsent(dish.getProductId(i), k -> new HashSet<>()).add(dish);
+      }
+    }
+    return cost;
+  }
+
+  public synchronized Cost getDayCost(String day) {
+    int index = Arrays.asList(DAYS).indexOf(day);
+    return index >= 0 ? dayCosts[index] : Cost.ZERO;
+  }
+
+  public synchronized Cost getWeekCost() {
+    return weekCost;
+  }
+
+  /**
+   * Возвращает стоимость оставшегося запаса по текущим ценам.
+   */
+  public synchronized double getInventoryValue() {
+    return inventoryValue;
+  }
+
+  /**
+   * Возвращает число продуктов в запасе, для которых не задана цена.
+   */
+  public synchronized int getUnpricedProductCount() {
+    int count = 0;
+    for (String product : inventory.keySet()) {
+      if (Double.isNaN(price(product))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized void slotChanged(String day, String mealType, Dish before, Dish after) {
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (slot < 0) {
+      return;
+    }
+    slotDishes[slot] = after;
+    slotCosts[slot] = getDishCost(after);
+    updateDay(slot / MEALS);
+    updateWeek();
+  }
+
+  @Override
+  public synchronized void productChanged(String product, ProductQuantity before,
+      ProductQuantity after) {
+    double perBase = price(product);
+    double oldAmount = base(before);
+    double newAmount = base(after);
+    if (after != null) {
+      inventory.put(product, newAmount);
+    } else {
+      inventory.remove(product);
+    }
+    if (!Double.isNaN(perBase)) {
+      inventoryValue += (newAmount - oldAmount) * perBase;
+    }
+  }
+
+  @Override
+  public synchronized void dishChanged(String name, Dish before, Dish after) {
+    if (before != null) {
+      forgetCost(before);
+    }
+  }
+
+  @Override
+  public void dataLoaded() {
+    recalculate();
+  }
+
+  /**
+   * Пересчитывает стоимость меню и запаса по текущим данным репозитория.
+   */
+  public synchronized void recalculate() {
+    Map<String, Map<String, Dish>> menu = repository.getWeeklyMenu();
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Map<String, Dish> dayMenu = menu.get(DAYS[slot / MEALS]);
+      slotDishes[slot] = dayMenu != null
+          ? dayMenu.get(MenuRepository.MEAL_TYPES[slot % MEALS]) : null;
+      slotCosts[slot] = getDishCost(slotDishes[slot]);
+    }
+    for (int day = 0; day < DAYS.length; day++) {
+      updateDay(day);
+    }
+    updateWeek();
+
+    inventory.clear();
+    inventoryValue = 0;
+    for (Map.Entry<String, ProductQuantity> entry : repository.getProducts().entrySet()) {
+      productChanged(entry.getKey(), null, entry.getValue());
+    }
+  }
+
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (!(data instanceof Map)) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, History> loaded = (Map<String, History>) data;
+    histories = new HashMap<>(loaded);
+    double[] previous = prices.clone();
+    Arrays.fill(prices, Double.NaN);
+    for (Map.Entry<String, History> entry : histories.entrySet()) {
+      int id = dictionary.intern(entry.getKey());
+      ensureCapacity(id);
+      prices[id] = entry.getValue().current();
+    }
+    for (int id = 0; id < prices.length; id++) {
+      if (Double.compare(id < previous.length ? previous[id] : Double.NaN, prices[id]) != 0) {
+        priceChanged(id);
+      }
+    }
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    return store.write(SEGMENT, new HashMap<>(histories));
+  }
+
+  private double price(String product) {
+    History history = histories.get(product);
+    return history != null ? history.current() : Double.NaN;
+  }
+
+  /**
+   * Сбрасывает запомненную стоимость блюд с продуктом, цена которого изменилась.
+   */
+  private void priceChanged(int id) {
+    Set<Dish> affected = costDishes.remove(id);
+    if (affected != null) {
+      for (Dish dish : affected) {
+        forgetCost(dish);
+      }
+    }
+  }
+
+  private void forgetCost(Dish dish) {
+    if (dishCosts.remove(dish) == null) {
+      return;
+    }
+    for (int i = 0; i < dish.getIngredientCount(); i++) {
+      Set<Dish> cached = costDishes.get(dish.getProductId(i));
+      if (cached != null) {
+        cached.remove(dish);
+        if (cached.isEmpty()) {
+          costDishes.remove(dish.getProductId(i));
+        }
+      }
+    }
+  }
+
+  private void ensureCapacity(int id) {
+    if (id >= prices.length) {
+      int length = prices.length;
+      prices = Arrays.copyOf(prices, Math.max(id + 1, length * 2));
+      Arrays.fill(prices, length, prices.length, Double.NaN);
+    }
+  }
+
+  private void updateDay(int day) {
+    Cost total = Cost.ZERO;
+    for (int slot = day * MEALS; slot < (day + 1) * MEALS; slot++) {
+      total = total.plus(slotCosts[slot]);
+    }
+    dayCosts[day] = total;
+  }
+
+  private void updateWeek() {
+    Cost total = Cost.ZERO;
+    for (Cost day : dayCosts) {
+      total = total.plus(day);
+    }
+    weekCost = total;
+  }
+
+  private static double base(ProductQuantity quantity) {
+    return quantity != null ? quantity.getUnit().convertToBaseUnit(quantity.getAmount()) : 0;
+  }
+}
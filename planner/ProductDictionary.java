@@ -0,0 +1,222 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Словарь названий продуктов.
+ * Приводит названия к каноническому виду, присваивает им постоянные
+ * идентификаторы и хранит единственный экземпляр строки для каждого продукта.
+ * Поддерживает автодополнение по префиксу и нечёткий поиск по BK-дереву.
+ */
+public final class ProductDictionary {
+  private static final ProductDictionary SHARED = new ProductDictionary();
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+  private static final Metrics.Counter HITS = Metrics.registry().counter(
+      "planner_product_dictionary_total", "Обращения к словарю продуктов", "result", "hit");
+  private static final Metrics.Counter MISSES = Metrics.registry().counter(
+      "planner_product_dictionary_total", "Обращения к словарю продуктов", "result", "miss");
+
+  private final Map<String, Integer> idsByKey = new HashMap<>();
+  private final List<String> names = new ArrayList<>();
+  private final NavigableMap<String, Integer> sortedKeys = new TreeMap<>();
+  private final Set<String> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+  private BkNode bkRoot;
+
+  /**
+   * Возвращает словарь, общий для репозитория и интерфейса.
+   */
+  public static ProductDictionary getInstance() {
+    return SHARED;
+  }
+
+  /**
+   * Приводит название к ключу сравнения: обрезка и схлопывание пробелов,
+   * нижний регистр, замена "ё" на "е".
+   */
+  public static String canonicalKey(String name) {
+    return DishSearchIndex.fold(SPACES.matcher(name.trim()).replaceAll(" "));
+  }
+
+  /**
+   * Возвращает идентификатор продукта, регистрируя новое название при необходимости.
+   */
+  public synchronized int intern(String name) {
+    String key = canonicalKey(name);
+    Integer id = idsByKey.get(key);
+    if (id != null) {
+      HITS.increment();
+      return id;
+    }
+
+    MISSES.increment();
+    id = names.size();
+    String displayName = SPACES.matcher(name.trim()).replaceAll(" ");
+    names.add(displayName);
+    instances.add(displayName);
+    idsByKey.put(key, id);
+    sortedKeys.put(key, id);
+    insertIntoBkTree(key, id);
+    return id;
+  }
+
+  /**
+   * Возвращает единственный экземпляр названия продукта.
+   * Для новых продуктов сохраняется написание, встреченное первым.
+   */
+  public synchronized String canonicalName(String name) {
+    return names.get(intern(name));
+  }
+
+  /**
+   * Возвращает единственный экземпляр названия известного продукта или {@code null},
+   * не регистрируя новое название. Используется для чтения данных.
+   */
+  public synchronized String findName(String name) {
+    int id = idOf(name);
+    return id >= 0 ? names.get(id) : null;
+  }
+
+  /**
+   * Проверяет, является ли строка экземпляром, выданным словарём.
+   * Сравнение по ссылке позволяет не пересчитывать ключ для уже обработанных названий.
+   */
+  public synchronized boolean isCanonical(String name) {
+    return instances.contains(name);
+  }
+
+  /**
+   * Возвращает идентификатор известного продукта или -1.
+   */
+  public synchronized int idOf(String name) {
+    Integer id = idsByKey.get(canonicalKey(name));
+    return id != null ? id : -1;
+  }
+
+  public synchronized String nameOf(int id) {
+    return names.get(id);
+  }
+
+  public synchronized int size() {
+    return names.size();
+  }
+
+  /**
+   * Предлагает названия продуктов для введённого текста.
+   * Сначала идут совпадения по префиксу, затем близкие по расстоянию
+   * редактирования названия.
+   */
+  public synchronized List<String> suggest(String input, int limit) {
+    String key = canonicalKey(input);
+    Set<String> result = new LinkedHashSet<>();
+    if (key.isEmpty() || limit <= 0) {
+      return new ArrayList<>(result);
+    }
+
+    for (Integer id : sortedKeys.subMap(key, true, key + Character.MAX_VALUE, true).values()) {
+      if (result.size() >= limit) {
+        return new ArrayList<>(result);
+      }
+      result.add(names.get(id));
+    }
+
+    int maxDistance = key.length() <= 3 ? 1 : key.length() <= 7 ? 2 : 3;
+    List<List<Integer>> byDistance = new ArrayList<>();
+    for (int d = 0; d <= maxDistance; d++) {
+      byDistance.add(new ArrayList<>());
+    }
+    collectSimilar(bkRoot, key, maxDistance, byDistance);
+    for (List<Integer> ids : byDistance) {
+      for (Integer id : ids) {
+        if (result.size() >= limit) {
+          return new ArrayList<>(result);
+        }
+        result.add(names.get(id));
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
+  private void insertIntoBkTree(String key, int id) {
+    if (bkRoot == null) {
+      bkRoot = new BkNode(key, id);
+      return;
+    }
+    BkNode node = bkRoot;
+    while (true) {
+      int distance = editDistance(key, node.key, Integer.MAX_VALUE);
+      BkNode child = node.children.get(distance);
+      if (child == null) {
+        node.children.put(distance, new BkNode(key, id));
+        return;
+      }
+      node = child;
+    }
+  }
+
+  private void collectSimilar(BkNode node, String key, int maxDistance,
+      List<List<Integer>> byDistance) {
+    if (node == null) {
+      return;
+    }
+    int distance = editDistance(key, node.key, Integer.MAX_VALUE);
+    if (distance <= maxDistance) {
+      byDistance.get(distance).add(node.id);
+    }
+    for (Map.Entry<Integer, BkNode> child : node.children
+        .subMap(distance - maxDistance, true, distance + maxDistance, true).entrySet()) {
+      collectSimilar(child.getValue(), key, maxDistance, byDistance);
+    }
+  }
+
+  /**
+   * Расстояние Левенштейна с ранним выходом при превышении порога.
+   */
+  static int editDistance(String a, String b, int bound) {
+    if (Math.abs(a.length() - b.length()) > bound) {
+      return bound + 1;
+    }
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = current[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+            previous[j - 1] + cost);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > bound) {
+        return bound + 1;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+
+  private static final class BkNode {
+    private final String key;
+    private final int id;
+    private final NavigableMap<Integer, BkNode> children = new TreeMap<>();
+
+    private BkNode(String key, int id) {
+      this.key = key;
+      this.id = id;
+    }
+  }
+}
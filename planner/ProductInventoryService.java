@@ -1,21 +1,49 @@
 package planner;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Сервис для управления инвентарем продуктов.
  */
 public class ProductInventoryService {
+  private static final Metrics.Counter CHECKS_AVAILABLE = Metrics.registry().counter(
+      "planner_inventory_checks_total", "Проверки наличия продуктов", "result", "available");
+  private static final Metrics.Counter CHECKS_INSUFFICIENT = Metrics.registry().counter(
+      "planner_inventory_checks_total", "Проверки наличия продуктов", "result", "insufficient");
+
   private final MenuRepository repository;
+  private final LotInventory lots;
+  private final ConsumptionStats consumption;
 
   public ProductInventoryService(MenuRepository repository) {
     this.repository = repository;
+    this.lots = new LotInventory(repository);
+    this.consumption = new ConsumptionStats(repository);
   }
 
   public void addProduct(String product, ProductQuantity quantity) {
     repository.addProduct(product, quantity);
   }
 
+  /**
+   * Докупает продукт: количество прибавляется к запасу в его единице, а купленное
+   * становится одной партией, купленной сегодня, с указанным сроком годности.
+   */
+  public void addProduct(String product, ProductQuantity quantity, LocalDate expires) {
+    ProductQuantity available = repository.getProduct(product);
+    ProductQuantity total = quantity;
+    if (available != null) {
+      double availableBase = available.getUnit().convertToBaseUnit(available.getAmount());
+      double purchasedBase = quantity.getUnit().convertToBaseUnit(quantity.getAmount());
+      total = new ProductQuantity(available.getUnit().convertFromBaseUnit(
+          availableBase + purchasedBase), available.getUnit());
+    }
+    ProductQuantity stock = total;
+    lots.purchasing(LocalDate.now(), expires, () -> repository.addProduct(product, stock));
+  }
+
   public void updateProduct(String product, ProductQuantity newQuantity) {
     repository.updateProduct(product, newQuantity);
   }
@@ -28,33 +56,42 @@ public class ProductInventoryService {
     return repository.getProducts();
   }
 
+  /**
+   * Предлагает известные названия продуктов для автодополнения.
+   */
+  public List<String> suggestProductNames(String input, int limit) {
+    return repository.getProductDictionary().suggest(input, limit);
+  }
+
+  /**
+   * Возвращает словарное название известного продукта или {@code null}, не регистрируя новое.
+   */
+  public String findProductName(String product) {
+    return repository.findProductName(product);
+  }
+
+  /**
+   * Проверяет наличие продуктов для блюда и учитывает результат проверки в метриках.
+   */
   public boolean checkProductsAvailability(Dish dish) {
-    return repository.checkProductsAvailability(dish);
+    boolean available = repository.checkProductsAvailability(dish);
+    (available ? CHECKS_AVAILABLE : CHECKS_INSUFFICIENT).increment();
+    return available;
   }
 
   /**
    * Списывает продукты, необходимые для приготовления блюда.
    */
   public void deductProducts(Dish dish) {
-    Map<String, ProductQuantity> products = repository.getProducts();
-
-    dish.getIngredients().forEach((product, required) -> {
-      ProductQuantity available = products.get(product);
-      if (available != null) {
-        double requiredBase = required.getUnit().convertToBaseUnit(required.getAmount());
-        double availableBase = available.getUnit().convertToBaseUnit(available.getAmount());
-        double newBase = availableBase - requiredBase;
-
-        if (newBase <= 0) {
-          products.remove(product);
-        } else {
-          double convertedAmount = available.getUnit().convertFromBaseUnit(newBase);
-          products.put(product, new ProductQuantity(convertedAmount, available.getUnit()));
-        }
-      }
-    });
-
-    repository.setProducts(products);
+    PlannerEvents.InventoryEvent event = new PlannerEvents.InventoryEvent();
+    event.begin();
+    repository.beginBatch();
+    try {
+      deduct(dish);
+    } finally {
+      repository.endBatch();
+    }
+    commitInventoryEvent(event, "deduct", dish);
   }
 
   /**
@@ -62,26 +99,98 @@ public class ProductInventoryService {
    * 
    */
   public void returnProducts(Dish dish) {
-    Map<String, ProductQuantity> products = repository.getProducts();
+    PlannerEvents.InventoryEvent event = new PlannerEvents.InventoryEvent();
+    event.begin();
+    repository.beginBatch();
+    try {
+      lots.returning(() -> restore(dish));
+    } finally {
+      repository.endBatch();
+    }
+    commitInventoryEvent(event, "return", dish);
+  }
+
+  /**
+   * Возвращает продукты заменяемых блюд и списывает продукты новых одним сохранением.
+   */
+  public void adjustProducts(List<Dish> deducted, List<Dish> returned) {
+    repository.beginBatch();
+    try {
+      lots.returning(() -> {
+        for (Dish dish : returned) {
+          restore(dish);
+        }
+      });
+      for (Dish dish : deducted) {
+        deduct(dish);
+      }
+    } finally {
+      repository.endBatch();
+    }
+  }
 
-    dish.getIngredients().forEach((product, returned) -> {
-      ProductQuantity available = products.get(product);
-      double returnedBase = returned.getUnit().convertToBaseUnit(returned.getAmount());
+  private void deduct(Dish dish) {
+    dish.forEachIngredient((product, amount, unit) -> {
+      ProductQuantity available = repository.getProduct(product);
+      if (available != null) {
+        double requiredBase = unit.convertToBaseUnit(amount);
+        double availableBase = available.getUnit().convertToBaseUnit(available.getAmount());
+        double newBase = availableBase - requiredBase;
+        consumption.record(product, Math.min(requiredBase, availableBase));
+        double convertedAmount = available.getUnit().convertFromBaseUnit(Math.max(newBase, 0));
+        repository.updateProduct(product, new ProductQuantity(convertedAmount,
+            available.getUnit()));
+      }
+    });
+  }
 
+  private void restore(Dish dish) {
+    dish.forEachIngredient((product, amount, unit) -> {
+      ProductQuantity available = repository.getProduct(product);
       if (available != null) {
+        double returnedBase = unit.convertToBaseUnit(amount);
         double availableBase = available.getUnit().convertToBaseUnit(available.getAmount());
-        double newBase = availableBase + returnedBase;
-        double convertedAmount = available.getUnit().convertFromBaseUnit(newBase);
-        products.put(product, new ProductQuantity(convertedAmount, available.getUnit()));
+        consumption.record(product, -returnedBase);
+        double convertedAmount = available.getUnit().convertFromBaseUnit(
+            availableBase + returnedBase);
+        repository.addProduct(product, new ProductQuantity(convertedAmount, available.getUnit()));
       } else {
-        products.put(product, returned);
+        consumption.record(product, -unit.convertToBaseUnit(amount));
+        repository.addProduct(product, new ProductQuantity(amount, unit));
       }
     });
+  }
+
+  private static void commitInventoryEvent(PlannerEvents.InventoryEvent event,
+      String operation, Dish dish) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.dish = dish.getName();
+      event.ingredients = dish.getIngredientCount();
+      event.commit();
+    }
+  }
+
+  /**
+   * Возвращает партии, срок годности которых истекает в ближайшие {@code days} дней.
+   */
+  public List<LotInventory.Lot> getExpiringLots(int days) {
+    return lots.expiringWithin(days);
+  }
+
+  public LotInventory getLotInventory() {
+    return lots;
+  }
 
-    repository.setProducts(products);
+  /**
+   * Возвращает статистику расхода продуктов по списаниям этого сервиса.
+   */
+  public ConsumptionStats getConsumptionStats() {
+    return consumption;
   }
 
   public ProductQuantity getProduct(String productName) {
-    return repository.getProducts().get(productName);
+    return repository.getProduct(productName);
   }
 }
\ No newline at end of file
@@ -12,6 +12,11 @@ public enum ProductUnit {
   PIECES("шт"),
   TABLESPOONS("ст.л.");
 
+  /**
+   * Кэш {@link #values()}: каждый вызов {@code values()} копирует массив.
+   */
+  private static final ProductUnit[] VALUES = values();
+
   private final String displayName;
 
   ProductUnit(String displayName) {
@@ -55,11 +60,18 @@ public enum ProductUnit {
     }
   }
 
+  /**
+   * Возвращает единицу по порядковому номеру без копирования массива значений.
+   */
+  static ProductUnit ofOrdinal(int ordinal) {
+    return VALUES[ordinal];
+  }
+
   /**
    * Возвращает единицу измерения по её строковому представлению.
    */
   public static ProductUnit fromString(String text) {
-    for (ProductUnit unit : ProductUnit.values()) {
+    for (ProductUnit unit : VALUES) {
       if (unit.displayName.equalsIgnoreCase(text)) {
         return unit;
       }
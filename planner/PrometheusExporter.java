@@ -0,0 +1,174 @@
+package planner;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка метрик в текстовом формате Prometheus.
+ * Может периодически записывать файл и отдавать метрики по HTTP на локальном адресе.
+ */
+public class PrometheusExporter {
+  private final Metrics metrics;
+  private ScheduledExecutorService scheduler;
+  private HttpServer server;
+
+  public PrometheusExporter(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Настраивает выгрузку по системным свойствам {@code planner.metrics.file},
+   * {@code planner.metrics.interval} (секунды) и {@code planner.metrics.port}.
+   */
+  public static PrometheusExporter startFromSystemProperties() {
+    PrometheusExporter exporter = new PrometheusExporter(Metrics.registry());
+    String file = System.getProperty("planner.metrics.file");
+    if (file != null) {
+      long interval = Long.getLong("planner.metrics.interval", 15);
+      exporter.startFileExport(file, interval);
+    }
+    Integer port = Integer.getInteger("planner.metrics.port");
+    if (port != null) {
+      try {
+        exporter.startHttpEndpoint(port);
+      } catch (IOException e) {
+        System.err.println("Не удалось открыть порт метрик " + port + ": " + e.getMessage());
+      }
+    }
+    return exporter;
+  }
+
+  /**
+   * Периодически записывает метрики в файл через временный файл и переименование.
+   */
+  public synchronized void startFileExport(String filename, long intervalSeconds) {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "metrics-export");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(() -> writeFile(filename),
+        intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Отдаёт метрики по адресу http://127.0.0.1:порт/metrics.
+   */
+  public synchronized void startHttpEndpoint(int port) throws IOException {
+    if (server != null) {
+      return;
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", exchange -> {
+      byte[] body = format().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Останавливает периодическую выгрузку и HTTP-сервер.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+  }
+
+  /**
+   * Записывает текущие метрики в файл.
+   */
+  public void writeFile(String filename) {
+    File target = new File(filename);
+    File temp = new File(filename + ".tmp");
+    try {
+      if (target.getAbsoluteFile().getParentFile() != null) {
+        target.getAbsoluteFile().getParentFile().mkdirs();
+      }
+      Files.write(temp.toPath(), format().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.err.println("Ошибка выгрузки метрик: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Формирует текст всех метрик в формате Prometheus.
+   */
+  public String format() {
+    StringBuilder text = new StringBuilder();
+    Set<String> described = new HashSet<>();
+
+    for (Metrics.Counter counter : metrics.getCounters()) {
+      describe(text, described, counter, "counter");
+      text.append(counter.getName()).append(counter.getLabels())
+          .append(' ').append(counter.get()).append('\n');
+    }
+
+    for (Metrics.Gauge gauge : metrics.getGauges()) {
+      describe(text, described, gauge, "gauge");
+      text.append(gauge.getName()).append(' ').append(number(gauge.get())).append('\n');
+    }
+
+    for (Metrics.Timer timer : metrics.getTimers()) {
+      describe(text, described, timer, "histogram");
+      long[] cumulative = timer.getCumulativeBuckets();
+      for (int i = 0; i < cumulative.length; i++) {
+        String bound = i < Metrics.BUCKETS.length ? number(Metrics.BUCKETS[i]) : "+Inf";
+        text.append(timer.getName()).append("_bucket")
+            .append(withLabel(timer.getLabels(), "le", bound))
+            .append(' ').append(cumulative[i]).append('\n');
+      }
+      text.append(timer.getName()).append("_sum").append(timer.getLabels())
+          .append(' ').append(number(timer.getSumSeconds())).append('\n');
+      text.append(timer.getName()).append("_count").append(timer.getLabels())
+          .append(' ').append(timer.getCount()).append('\n');
+    }
+    return text.toString();
+  }
+
+  private static void describe(StringBuilder text, Set<String> described,
+      Metrics.Metric metric, String type) {
+    if (described.add(metric.getName())) {
+      text.append("# HELP ").append(metric.getName()).append(' ')
+          .append(metric.getHelp()).append('\n');
+      text.append("# TYPE ").append(metric.getName()).append(' ').append(type).append('\n');
+    }
+  }
+
+  private static String withLabel(String labels, String name, String value) {
+    String label = name + "=\"" + value + "\"";
+    if (labels.isEmpty()) {
+      return "{" + label + "}";
+    }
+    return labels.substring(0, labels.length() - 1) + "," + label + "}";
+  }
+
+  private static String number(double value) {
+    return Double.toString(value);
+  }
+}
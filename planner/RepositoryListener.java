@@ -0,0 +1,32 @@
+package planner;
+
+/**
+ * Слушатель изменений данных репозитория. Вызывается в потоке, который изменяет
+ * репозиторий, после того как изменение применено. Отсутствующее значение
+ * передаётся как {@code null}.
+ */
+public interface RepositoryListener {
+  /**
+   * Изменилось блюдо в приёме пищи.
+   */
+  default void slotChanged(String day, String mealType, Dish before, Dish after) {
+  }
+
+  /**
+   * Изменилось количество продукта в запасе.
+   */
+  default void productChanged(String product, ProductQuantity before, ProductQuantity after) {
+  }
+
+  /**
+   * Блюдо добавлено в каталог, изменено или удалено.
+   */
+  default void dishChanged(String name, Dish before, Dish after) {
+  }
+
+  /**
+   * Данные целиком загружены с диска; отдельные изменения при загрузке не сообщаются.
+   */
+  default void dataLoaded() {
+  }
+}
@@ -0,0 +1,19 @@
+package planner;
+
+import java.io.IOException;
+
+/**
+ * Дополнительный раздел данных, который репозиторий загружает и сохраняет
+ * вместе с основными сегментами. Раздел сам выбирает имена своих сегментов в хранилище.
+ */
+public interface SegmentHandler {
+  /**
+   * Загружает раздел из хранилища. Ошибки чтения раздел обрабатывает сам.
+   */
+  void load(StorageEngine store);
+
+  /**
+   * Записывает изменённые части раздела и возвращает число записанных байтов.
+   */
+  long save(StorageEngine store) throws IOException;
+}
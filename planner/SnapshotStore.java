@@ -0,0 +1,207 @@
+package planner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Хранилище снимков данных по сегментам. Каждый сегмент лежит в своём файле
+ * с заголовком и контрольной суммой и записывается через временный файл
+ * с переименованием. Предыдущая версия сегмента сохраняется как резервная копия.
+ */
+public class SnapshotStore implements StorageEngine {
+  private static final int MAGIC = 0x504C4E53;
+  private static final int VERSION = 1;
+  private static final String EXTENSION = ".seg";
+  private static final String BACKUP = ".bak";
+  private static final String TEMP = ".tmp";
+
+  private final String basePath;
+
+  /**
+   * Создает хранилище, файлы которого начинаются с указанного пути,
+   * например {@code auto_save/menu_data} даёт {@code auto_save/menu_data.catalog.seg}.
+   */
+  public SnapshotStore(String basePath) {
+    this.basePath = basePath;
+  }
+
+  @Override
+  public String getName() {
+    return "файлы снимков " + basePath;
+  }
+
+  public File segmentFile(String segment) {
+    return new File(basePath + "." + segment + EXTENSION);
+  }
+
+  public File backupFile(String segment) {
+    return new File(basePath + "." + segment + EXTENSION + BACKUP);
+  }
+
+  /**
+   * Проверяет, сохранён ли сегмент или его резервная копия.
+   */
+  @Override
+  public boolean exists(String segment) {
+    return segmentFile(segment).exists() || backupFile(segment).exists();
+  }
+
+  /**
+   * Записывает сегмент целиком независимо от списка изменённых ключей.
+   */
+  @Override
+  public long write(String segment, Object data, Set<String> changedKeys) throws IOException {
+    return write(segment, data);
+  }
+
+  /**
+   * Записывает сегмент и возвращает размер файла в байтах.
+   */
+  @Override
+  public long write(String segment, Object data) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(payload)) {
+      oos.writeObject(data);
+    }
+    byte[] bytes = payload.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+
+    File target = segmentFile(segment);
+    File temp = new File(target.getPath() + TEMP);
+    if (target.getAbsoluteFile().getParentFile() != null) {
+      target.getAbsoluteFile().getParentFile().mkdirs();
+    }
+    try (FileOutputStream file = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(file)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(segment);
+      out.writeInt(bytes.length);
+      out.writeLong(crc.getValue());
+      out.write(bytes);
+      out.flush();
+      file.getFD().sync();
+    }
+
+    if (target.exists()) {
+      Files.move(target.toPath(), backupFile(segment).toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+    try {
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return target.length();
+  }
+
+  /**
+   * Читает сегмент. Возвращает {@code null}, если файла нет.
+   *
+   * @throws IOException если файл повреждён или контрольная сумма не совпадает
+   */
+  @Override
+  public Object read(String segment) throws IOException {
+    return readFile(segmentFile(segment), segment);
+  }
+
+  /**
+   * Читает резервную копию сегмента. Возвращает {@code null}, если копии нет.
+   */
+  @Override
+  public Object readBackup(String segment) throws IOException {
+    return readFile(backupFile(segment), segment);
+  }
+
+  @Override
+  public long sizeOf(String segment) {
+    return segmentFile(segment).length();
+  }
+
+  /**
+   * Удаляет файлы сегмента вместе с резервной копией.
+   * Возвращает {@code true}, если был удалён хотя бы один файл.
+   */
+  public boolean delete(String segment) {
+    boolean deleted = segmentFile(segment).delete();
+    deleted |= backupFile(segment).delete();
+    new File(segmentFile(segment).getPath() + TEMP).delete();
+    return deleted;
+  }
+
+  /**
+   * Удаляет все сегменты хранилища, включая резервные копии и временные файлы.
+   * Возвращает {@code true}, если был удалён хотя бы один файл.
+   */
+  @Override
+  public boolean deleteAll() {
+    File base = new File(basePath).getAbsoluteFile();
+    File directory = base.getParentFile();
+    String prefix = base.getName() + ".";
+    File[] files = directory != null ? directory.listFiles() : null;
+    boolean deleted = false;
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.startsWith(prefix) && (name.endsWith(EXTENSION) || name.endsWith(BACKUP)
+            || name.endsWith(TEMP))) {
+          deleted |= file.delete();
+        }
+      }
+    }
+    return deleted;
+  }
+
+  private static Object readFile(File file, String segment) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    byte[] bytes;
+    long expectedCrc;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        Files.readAllBytes(file.toPath())))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("неизвестный формат файла " + file.getName());
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("неподдерживаемая версия сегмента " + version);
+      }
+      String name = in.readUTF();
+      if (!segment.equals(name)) {
+        throw new IOException("файл содержит сегмент " + name + " вместо " + segment);
+      }
+      int length = in.readInt();
+      expectedCrc = in.readLong();
+      if (length < 0 || length > in.available()) {
+        throw new IOException("сегмент " + segment + " обрезан");
+      }
+      bytes = new byte[length];
+      in.readFully(bytes);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    if (crc.getValue() != expectedCrc) {
+      throw new IOException("контрольная сумма сегмента " + segment + " не совпадает");
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return ois.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("не удалось прочитать сегмент " + segment + ": " + e.getMessage(), e);
+    }
+  }
+}
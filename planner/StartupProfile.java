@@ -0,0 +1,68 @@
+package planner;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Замеры фаз запуска приложения.
+ * Время каждой фазы отсчитывается от старта JVM; итог дописывается одной
+ * строкой в журнал, чтобы сравнивать запуск между версиями.
+ */
+public final class StartupProfile {
+  private static final String LOG_FILE = "auto_save/startup_profile.log";
+  private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+  private static boolean finished = false;
+
+  private StartupProfile() {
+  }
+
+  /**
+   * Отмечает завершение фазы запуска.
+   */
+  public static synchronized void mark(String phase) {
+    if (!finished) {
+      PHASES.putIfAbsent(phase, ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+  }
+
+  /**
+   * Возвращает отмеченные фазы и время их завершения в миллисекундах от старта JVM.
+   */
+  public static synchronized Map<String, Long> getPhases() {
+    return new LinkedHashMap<>(PHASES);
+  }
+
+  /**
+   * Завершает замер и дописывает строку с фазами в журнал запусков.
+   */
+  public static synchronized void finish() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+
+    String version = StartupProfile.class.getPackage().getImplementationVersion();
+    StringBuilder line = new StringBuilder()
+        .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()))
+        .append(" version=").append(version != null ? version : "dev")
+        .append(" java=").append(System.getProperty("java.version"));
+    for (Map.Entry<String, Long> phase : PHASES.entrySet()) {
+      line.append(' ').append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+    }
+
+    new File(LOG_FILE).getParentFile().mkdirs();
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE, true))) {
+      writer.write(line.toString());
+      writer.newLine();
+    } catch (IOException e) {
+      System.err.println("Ошибка записи профиля запуска: " + e.getMessage());
+    }
+  }
+}
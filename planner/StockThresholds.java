@@ -0,0 +1,249 @@
+package planner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Минимальные остатки продуктов и уведомления о нехватке. Продукты с заданным
+ * минимумом упорядочены по отношению запаса к минимуму, поэтому изменение запаса
+ * затрагивает только изменённый продукт, а список продуктов ниже минимума
+ * читается за O(k) от его длины.
+ */
+public class StockThresholds implements RepositoryListener, SegmentHandler {
+  public static final String SEGMENT = "thresholds";
+
+  /**
+   * Граница списка продуктов ниже минимума: отношение 1 и наименьшее название.
+   */
+  private static final Level LIMIT = new Level("", 0, 1);
+
+  private final MenuRepository repository;
+  private Map<String, Threshold> thresholds = new HashMap<>();
+  private final Map<String, Level> levels = new HashMap<>();
+  private final TreeSet<Level> ordered = new TreeSet<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Создает минимальные остатки и подключает их к репозиторию.
+   */
+  public StockThresholds(MenuRepository repository) {
+    this.repository = repository;
+    repository.registerSegment(SEGMENT, this);
+    repository.addListener(this);
+    if (repository.isLoaded()) {
+      recalculate();
+    }
+  }
+
+  /**
+   * Получатель уведомлений о том, что запас продукта опустился ниже минимума.
+   * Вызывается в потоке, который изменил запас.
+   */
+  public interface Listener {
+    void belowMinimum(String product, ProductQuantity stock, ProductQuantity minimum);
+  }
+
+  /**
+   * Минимальный остаток продукта в единицах, в которых он был задан.
+   */
+  private static final class Threshold implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final double amount;
+    private final ProductUnit unit;
+
+    Threshold(double amount, ProductUnit unit) {
+      this.amount = amount;
+      this.unit = unit;
+    }
+
+    double base() {
+      return unit.convertToBaseUnit(amount);
+    }
+  }
+
+  /**
+   * Отношение запаса продукта к минимуму; ключ упорядоченного индекса.
+   */
+  private static final class Level implements Comparable<Level> {
+    private final String product;
+    private final double stock;
+    private final double ratio;
+
+    Level(String product, double stock, double ratio) {
+      this.product = product;
+      this.stock = stock;
+      this.ratio = ratio;
+    }
+
+    @Override
+    public int compareTo(Level other) {
+      int result = Double.compare(ratio, other.ratio);
+      return result != 0 ? result : product.compareTo(other.product);
+    }
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Задаёт минимальный остаток продукта. Если запас уже ниже, получатели уведомляются.
+   */
+  public void setMinimum(String product, double amount, ProductUnit unit) {
+    if (amount <= 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("Минимальный остаток должен быть больше нуля: "
+          + amount);
+    }
+    product = repository.canonicalProductName(product);
+    boolean alert;
+    synchronized (this) {
+      thresholds.put(product, new Threshold(amount, unit));
+      alert = update(product, repository.getProduct(product), true);
+      repository.markSegmentDirty(SEGMENT);
+    }
+    if (alert) {
+      notifyBelow(product);
+    }
+    repository.autoSave();
+  }
+
+  /**
+   * Снимает минимальный остаток продукта. Возвращает {@code false}, если он не был задан.
+   */
+  public boolean removeMinimum(String product) {
+    product = repository.findProductName(product);
+    synchronized (this) {
+      if (thresholds.remove(product) == null) {
+        return false;
+      }
+      Level level = levels.remove(product);
+      if (level != null) {
+        ordered.remove(level);
+      }
+      repository.markSegmentDirty(SEGMENT);
+    }
+    repository.autoSave();
+    return true;
+  }
+
+  /**
+   * Возвращает минимальный остаток продукта или {@code null}, если он не задан.
+   */
+  public synchronized ProductQuantity getMinimum(String product) {
+    Threshold threshold = thresholds.get(repository.findProductName(product));
+    return threshold != null ? new ProductQuantity(threshold.amount, threshold.unit) : null;
+  }
+
+  /**
+   * Возвращает продукты, запас которых ниже минимума, начиная с самых дефицитных.
+   */
+  public synchronized List<String> getBelowMinimum() {
+    List<String> result = new ArrayList<>();
+    for (Level level : ordered.headSet(LIMIT, false)) {
+      result.add(level.product);
+    }
+    return result;
+  }
+
+  /**
+   * Возвращает список закупок: недостающее до минимума количество продуктов ниже
+   * минимума в единицах, в которых задан минимум.
+   */
+  public synchronized Map<String, ProductQuantity> getReorderList() {
+    Map<String, ProductQuantity> result = new LinkedHashMap<>();
+    for (Level level : ordered.headSet(LIMIT, false)) {
+      Threshold threshold = thresholds.get(level.product);
+      double missing = threshold.amount - threshold.unit.convertFromBaseUnit(level.stock);
+      result.put(level.product, new ProductQuantity(missing, threshold.unit));
+    }
+    return result;
+  }
+
+  @Override
+  public void productChanged(String product, ProductQuantity before, ProductQuantity after) {
+    boolean alert;
+    synchronized (this) {
+      if (!thresholds.containsKey(product)) {
+        return;
+      }
+      alert = update(product, after, false);
+    }
+    if (alert) {
+      notifyBelow(product);
+    }
+  }
+
+  @Override
+  public void dataLoaded() {
+    recalculate();
+  }
+
+  /**
+   * Перестраивает индекс по текущему запасу репозитория без уведомлений.
+   */
+  public synchronized void recalculate() {
+    levels.clear();
+    ordered.clear();
+    for (String product : thresholds.keySet()) {
+      update(product, repository.getProduct(product), false);
+    }
+  }
+
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (data instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Threshold> loaded = (Map<String, Threshold>) data;
+      thresholds = new HashMap<>(loaded);
+      levels.clear();
+      ordered.clear();
+    }
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    return store.write(SEGMENT, new HashMap<>(thresholds));
+  }
+
+  /**
+   * Переставляет продукт в индексе. Возвращает {@code true}, если запас только что
+   * опустился ниже минимума, а при {@code alertBelow} — если он вообще ниже минимума.
+   */
+  private boolean update(String product, ProductQuantity stock, boolean alertBelow) {
+    Level previous = levels.remove(product);
+    if (previous != null) {
+      ordered.remove(previous);
+    }
+    double amount = stock != null ? stock.getUnit().convertToBaseUnit(stock.getAmount()) : 0;
+    Level level = new Level(product, amount, amount / thresholds.get(product).base());
+    levels.put(product, level);
+    ordered.add(level);
+    boolean below = level.ratio < 1;
+    boolean wasBelow = previous != null && previous.ratio < 1;
+    return below && (alertBelow || (previous != null && !wasBelow));
+  }
+
+  private void notifyBelow(String product) {
+    ProductQuantity stock = repository.getProduct(product);
+    ProductQuantity minimum = getMinimum(product);
+    if (stock == null) {
+      stock = new ProductQuantity(0, minimum.getUnit());
+    }
+    for (Listener listener : listeners) {
+      listener.belowMinimum(product, stock, minimum);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package planner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Механизм хранения сегментов данных репозитория. Основные сегменты — меню,
+ * запас продуктов и каталог блюд; дополнительные разделы хранят в нём свои сегменты
+ * через {@link SegmentHandler}. Механизм выбирается при запуске свойством
+ * {@code planner.storage}: {@code file} (по умолчанию) или {@code jdbc}
+ * с адресом базы в свойстве {@code planner.jdbc.url}.
+ */
+public interface StorageEngine extends AutoCloseable {
+  String MENU_SEGMENT = "menu";
+  String INVENTORY_SEGMENT = "inventory";
+  String CATALOG_SEGMENT = "catalog";
+
+  /**
+   * Разделитель дня и приёма пищи в ключе изменённого слота меню.
+   */
+  String SLOT_SEPARATOR = "\t";
+
+  /**
+   * Возвращает описание механизма для сообщений и журналов.
+   */
+  String getName();
+
+  /**
+   * Проверяет, сохранён ли сегмент.
+   *
+   * @throws IOException если хранилище недоступно
+   */
+  boolean exists(String segment) throws IOException;
+
+  /**
+   * Читает сегмент целиком. Возвращает {@code null}, если сегмент не сохранён.
+   *
+   * @throws IOException если данные повреждены или недоступны
+   */
+  Object read(String segment) throws IOException;
+
+  /**
+   * Читает резервную копию сегмента, если механизм их хранит.
+   */
+  default Object readBackup(String segment) throws IOException {
+    return null;
+  }
+
+  /**
+   * Читает сегмент, а если он повреждён — его резервную копию.
+   * Возвращает {@code null}, если не прочиталась ни одна из копий.
+   */
+  default Object readOrBackup(String segment) {
+    try {
+      Object data = read(segment);
+      if (data != null) {
+        return data;
+      }
+    } catch (IOException e) {
+      System.err.println("Сегмент " + segment + " повреждён: " + e.getMessage());
+    }
+    try {
+      return readBackup(segment);
+    } catch (IOException e) {
+      System.err.println("Резервная копия сегмента " + segment + " повреждена: "
+          + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Записывает сегмент и возвращает объём записанных данных в байтах.
+   * {@code changedKeys} перечисляет изменённые ключи основного сегмента: названия
+   * продуктов, блюд или ключи слотов {@link #slotKey(String, String)}. Механизм может
+   * обновить только их; {@code null} означает, что сегмент записывается целиком.
+   */
+  long write(String segment, Object data, Set<String> changedKeys) throws IOException;
+
+  /**
+   * Записывает сегмент целиком.
+   */
+  default long write(String segment, Object data) throws IOException {
+    return write(segment, data, null);
+  }
+
+  /**
+   * Возвращает размер сохранённого сегмента в байтах или 0, если он неизвестен.
+   */
+  default long sizeOf(String segment) {
+    return 0;
+  }
+
+  /**
+   * Удаляет все сохранённые сегменты. Возвращает {@code true}, если что-то было удалено.
+   */
+  boolean deleteAll();
+
+  @Override
+  default void close() {
+  }
+
+  static String slotKey(String day, String mealType) {
+    return day + SLOT_SEPARATOR + mealType;
+  }
+
+  /**
+   * Открывает механизм, выбранный свойствами {@code planner.storage}
+   * и {@code planner.jdbc.url}. Выбранный механизм не подменяется другим: данные
+   * в файлах снимков разошлись бы с базой.
+   *
+   * @param basePath путь без расширения, от которого строятся имена файлов
+   * @throws IllegalArgumentException если механизм хранения неизвестен
+   * @throws IllegalStateException если база данных недоступна
+   */
+  static StorageEngine open(String basePath) {
+    String kind = System.getProperty("planner.storage", "file");
+    if ("file".equalsIgnoreCase(kind)) {
+      return new SnapshotStore(basePath);
+    }
+    if (!"jdbc".equalsIgnoreCase(kind)) {
+      throw new IllegalArgumentException("Неизвестный механизм хранения: " + kind);
+    }
+    String url = System.getProperty("planner.jdbc.url",
+        "jdbc:h2:file:" + new File(basePath).getAbsolutePath());
+    try {
+      return new JdbcStorageEngine(url);
+    } catch (IOException e) {
+      throw new IllegalStateException("Хранилище в базе данных недоступно: "
+          + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,421 @@
+package planner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Библиотека шаблонов недельного меню. Шаблон хранит блюда всех приёмов пищи недели;
+ * одинаковые блюда разных шаблонов — один общий экземпляр, а шаблоны с одинаковым
+ * меню разделяют один массив приёмов пищи. Изменение шаблона создаёт новый массив,
+ * не затрагивая остальные шаблоны.
+ *
+ * <p>Применение шаблона строит план для {@link MenuPlanningService#applyPlan(Map)},
+ * поэтому продукты проверяются и списываются одной операцией. Блюда берутся из каталога
+ * по названию, а если блюда там нет — из шаблона.
+ */
+public class TemplateLibrary implements SegmentHandler {
+  public static final String SEGMENT = "templates";
+  public static final String FILE_EXTENSION = ".template";
+
+  private static final String[] DAYS = MenuRepository.DAYS;
+  private static final String[] MEAL_TYPES = MenuRepository.MEAL_TYPES;
+  private static final int MEALS = MEAL_TYPES.length;
+  private static final int SLOTS = MenuRepository.SLOT_COUNT;
+  /**
+   * Классы, которые может содержать файл шаблона; остальные отклоняются до создания объекта.
+   */
+  private static final ObjectInputFilter IMPORT_FILTER = ObjectInputFilter.Config.createFilter(
+      "maxdepth=20;maxrefs=1000000;maxarray=100000;"
+      + "planner.TemplateLibrary$State;planner.Dish;planner.ProductQuantity;"
+      + "planner.ProductUnit;java.lang.Enum;java.lang.String;java.lang.Object;"
+      + "java.util.ArrayList;java.util.HashMap;java.util.Map$Entry;"
+      + "java.util.LinkedHashMap;!*");
+
+  private final MenuRepository repository;
+  private final Map<String, Template> templates = new LinkedHashMap<>();
+  private final Map<Dish, Dish> dishes = new HashMap<>();
+  private final Map<List<Dish>, Dish[]> menus = new HashMap<>();
+
+  /**
+   * Создает библиотеку и подключает её к сохранению репозитория.
+   */
+  public TemplateLibrary(MenuRepository repository) {
+    this.repository = repository;
+    repository.registerSegment(SEGMENT, this);
+  }
+
+  /**
+   * Неизменяемый шаблон недельного меню.
+   */
+  public static final class Template {
+    private final String name;
+    private final Dish[] slots;
+
+    Template(String name, Dish[] slots) {
+      this.name = name;
+      this.slots = slots;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Возвращает блюдо приёма пищи или {@code null}, если приём пищи пуст.
+     */
+    public Dish getDish(String day, String mealType) {
+      int slot = MenuRepository.slotIndex(day, mealType);
+      return slot >= 0 ? slots[slot] : null;
+    }
+
+    /**
+     * Число заполненных приёмов пищи.
+     */
+    public int getMealCount() {
+      int count = 0;
+      for (Dish dish : slots) {
+        if (dish != null) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Отличие приёма пищи в шаблоне от текущего меню.
+   */
+  public static final class SlotDiff {
+    private final String day;
+    private final String mealType;
+    private final Dish current;
+    private final Dish planned;
+
+    SlotDiff(String day, String mealType, Dish current, Dish planned) {
+      this.day = day;
+      this.mealType = mealType;
+      this.current = current;
+      this.planned = planned;
+    }
+
+    public String getDay() {
+      return day;
+    }
+
+    public String getMealType() {
+      return mealType;
+    }
+
+    public Dish getCurrent() {
+      return current;
+    }
+
+    public Dish getPlanned() {
+      return planned;
+    }
+
+    @Override
+    public String toString() {
+      return day + ", " + mealType + ": " + (current != null ? current.getName() : "—")
+          + " → " + (planned != null ? planned.getName() : "—");
+    }
+  }
+
+  /**
+   * Сохраняемое состояние: блюда хранятся один раз, шаблоны ссылаются на них по номеру.
+   */
+  private static final class State implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<Dish> dishes;
+    private final LinkedHashMap<String, int[]> templates;
+
+    State(ArrayList<Dish> dishes, LinkedHashMap<String, int[]> templates) {
+      this.dishes = dishes;
+      this.templates = templates;
+    }
+  }
+
+  /**
+   * Сохраняет текущее недельное меню как шаблон, заменяя шаблон с тем же названием.
+   */
+  public synchronized Template saveCurrentWeek(String name) {
+    Dish[] slots = new Dish[SLOTS];
+    for (int slot = 0; slot < SLOTS; slot++) {
+      slots[slot] = repository.getMenuForDay(DAYS[slot / MEALS], MEAL_TYPES[slot % MEALS]);
+    }
+    return put(name, slots);
+  }
+
+  /**
+   * Возвращает копию шаблона с другим блюдом в приёме пищи; исходный шаблон не меняется.
+   */
+  public synchronized Template withDish(String name, String day, String mealType, Dish dish) {
+    Template template = require(name);
+    int slot = MenuRepository.slotIndex(day, mealType);
+    if (slot < 0) {
+      throw new IllegalArgumentException("Неизвестный день или приём пищи: " + day + ", "
+          + mealType);
+    }
+    Dish[] slots = template.slots.clone();
+    slots[slot] = dish;
+    return put(name, slots);
+  }
+
+  public synchronized Template get(String name) {
+    return templates.get(name);
+  }
+
+  public synchronized List<String> getNames() {
+    return new ArrayList<>(templates.keySet());
+  }
+
+  public synchronized boolean remove(String name) {
+    if (templates.remove(name) == null) {
+      return false;
+    }
+    compact();
+    repository.markSegmentDirty(SEGMENT);
+    repository.autoSave();
+    return true;
+  }
+
+  /**
+   * Число разных блюд, на которые ссылаются шаблоны.
+   */
+  public synchronized int getDishCount() {
+    return dishes.size();
+  }
+
+  /**
+   * Строит план применения шаблона: все приёмы пищи недели, пустые приёмы пищи
+   * шаблона очищают меню.
+   */
+  public synchronized Map<String, Map<String, Dish>> toPlan(String name) {
+    Template template = require(name);
+    Map<String, Map<String, Dish>> plan = new HashMap<>();
+    for (int slot = 0; slot < SLOTS; slot++) {
+      plan.computeIfAbsent(DAYS[slot / MEALS], d -> new HashMap<>())
+          .put(MEAL_TYPES[slot % MEALS], resolve(template.slots[slot]));
+    }
+    return plan;
+  }
+
+  /**
+   * Сравнивает шаблон с текущим меню и возвращает приёмы пищи, которые изменятся.
+   */
+  public synchronized List<SlotDiff> diff(String name) {
+    Template template = require(name);
+    List<SlotDiff> result = new ArrayList<>();
+    for (int slot = 0; slot < SLOTS; slot++) {
+      String day = DAYS[slot / MEALS];
+      String mealType = MEAL_TYPES[slot % MEALS];
+      Dish planned = resolve(template.slots[slot]);
+      Dish current = repository.getMenuForDay(day, mealType);
+      boolean same = planned == null ? current == null
+          : repository.isPlanned(day, mealType, planned);
+      if (!same) {
+        result.add(new SlotDiff(day, mealType, current, planned));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Записывает шаблон в файл, чтобы передать его в другую семью.
+   */
+  public synchronized void exportTemplate(String name, File file) throws IOException {
+    Template template = require(name);
+    ArrayList<Dish> pool = new ArrayList<>();
+    LinkedHashMap<String, int[]> exported = new LinkedHashMap<>();
+    exported.put(name, indexes(template, pool, new HashMap<>()));
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+      out.writeObject(new State(pool, exported));
+    }
+  }
+
+  /**
+   * Загружает шаблоны из файла, заменяя шаблоны с теми же названиями.
+   * Файл может прийти из другой семьи, поэтому читаются только классы шаблона,
+   * а номера блюд проверяются до изменения библиотеки. Возвращает названия
+   * загруженных шаблонов.
+   */
+  public synchronized List<String> importTemplates(File file) throws IOException {
+    Object data;
+    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+      in.setObjectInputFilter(IMPORT_FILTER);
+      data = in.readObject();
+    } catch (InvalidClassException e) {
+      throw new IOException("Файл шаблона содержит недопустимые данные: " + file, e);
+    } catch (ClassNotFoundException | RuntimeException e) {
+      throw new IOException("Неизвестный формат шаблона: " + e.getMessage(), e);
+    }
+    if (!(data instanceof State)) {
+      throw new IOException("Файл не содержит шаблонов меню: " + file);
+    }
+    validate((State) data);
+    List<String> names = restore((State) data);
+    repository.markSegmentDirty(SEGMENT);
+    repository.autoSave();
+    return names;
+  }
+
+  /**
+   * Загружает шаблоны в потоке загрузчика без сохранения: данные берутся из хранилища.
+   */
+  @Override
+  public synchronized void load(StorageEngine store) {
+    Object data = store.readOrBackup(SEGMENT);
+    if (!(data instanceof State)) {
+      return;
+    }
+    try {
+      validate((State) data);
+    } catch (IOException e) {
+      System.err.println("Ошибка загрузки шаблонов меню: " + e.getMessage());
+      return;
+    }
+    templates.clear();
+    dishes.clear();
+    menus.clear();
+    restore((State) data);
+  }
+
+  @Override
+  public synchronized long save(StorageEngine store) throws IOException {
+    ArrayList<Dish> pool = new ArrayList<>();
+    Map<Dish, Integer> positions = new HashMap<>();
+    LinkedHashMap<String, int[]> saved = new LinkedHashMap<>();
+    for (Template template : templates.values()) {
+      saved.put(template.name, indexes(template, pool, positions));
+    }
+    return store.write(SEGMENT, new State(pool, saved));
+  }
+
+  private Template put(String name, Dish[] slots) {
+    Template template = store(name, slots);
+    compact();
+    repository.markSegmentDirty(SEGMENT);
+    repository.autoSave();
+    return template;
+  }
+
+  /**
+   * Вносит шаблон, разделяя блюда и меню с остальными шаблонами, без сохранения.
+   */
+  private Template store(String name, Dish[] slots) {
+    for (int slot = 0; slot < SLOTS; slot++) {
+      if (slots[slot] != null) {
+        slots[slot] = dishes.computeIfAbsent(slots[slot], dish -> dish);
+      }
+    }
+    Dish[] shared = menus.computeIfAbsent(Arrays.asList(slots), key -> slots);
+    Template template = new Template(name, shared);
+    templates.put(name, template);
+    return template;
+  }
+
+  /**
+   * Убирает блюда и меню, на которые больше не ссылается ни один шаблон.
+   */
+  private void compact() {
+    Map<Dish, Dish> used = new HashMap<>();
+    Map<List<Dish>, Dish[]> usedMenus = new HashMap<>();
+    for (Template template : templates.values()) {
+      usedMenus.put(Arrays.asList(template.slots), template.slots);
+      for (Dish dish : template.slots) {
+        if (dish != null) {
+          used.put(dish, dish);
+        }
+      }
+    }
+    dishes.keySet().retainAll(used.keySet());
+    menus.keySet().retainAll(usedMenus.keySet());
+  }
+
+  /**
+   * Проверяет, что состояние целое: названия заданы, номера блюд указывают в список блюд.
+   */
+  private static void validate(State state) throws IOException {
+    if (state.dishes == null || state.templates == null) {
+      throw new IOException("Повреждённые данные шаблонов");
+    }
+    for (Map.Entry<String, int[]> entry : state.templates.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        throw new IOException("Повреждённый шаблон: " + entry.getKey());
+      }
+      for (int index : entry.getValue()) {
+        if (index >= state.dishes.size() || index >= 0 && state.dishes.get(index) == null) {
+          throw new IOException("Неверный номер блюда " + index + " в шаблоне "
+              + entry.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * Вносит шаблоны проверенного состояния и один раз убирает неиспользуемые блюда.
+   */
+  private List<String> restore(State state) {
+    List<String> names = new ArrayList<>();
+    for (Map.Entry<String, int[]> entry : state.templates.entrySet()) {
+      Dish[] slots = new Dish[SLOTS];
+      int[] indexes = entry.getValue();
+      for (int slot = 0; slot < Math.min(SLOTS, indexes.length); slot++) {
+        slots[slot] = indexes[slot] >= 0 ? state.dishes.get(indexes[slot]) : null;
+      }
+      store(entry.getKey(), slots);
+      names.add(entry.getKey());
+    }
+    compact();
+    return names;
+  }
+
+  private static int[] indexes(Template template, List<Dish> pool, Map<Dish, Integer> positions) {
+    int[] indexes = new int[SLOTS];
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Dish dish = template.slots[slot];
+      if (dish == null) {
+        indexes[slot] = -1;
+      } else {
+        indexes[slot] = positions.computeIfAbsent(dish, d -> {
+          pool.add(d);
+          return pool.size() - 1;
+        });
+      }
+    }
+    return indexes;
+  }
+
+  /**
+   * Возвращает блюдо каталога с тем же названием, а если его нет — блюдо шаблона.
+   */
+  private Dish resolve(Dish dish) {
+    if (dish == null) {
+      return null;
+    }
+    Dish current = repository.peekDish(dish.getName());
+    return current != null ? current : dish;
+  }
+
+  private Template require(String name) {
+    Template template = templates.get(name);
+    if (template == null) {
+      throw new IllegalArgumentException("Шаблон не найден: " + name);
+    }
+    return template;
+  }
+}